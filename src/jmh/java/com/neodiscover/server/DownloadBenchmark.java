@@ -0,0 +1,87 @@
+package com.neodiscover.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara la descarga antigua (Files.readAllBytes) con el envío en streaming de FileTransfer.
+ *
+ * Ejecutar con ./gradlew jmh y mirar gc.alloc.rate.norm: con readAllBytes crece con el tamaño
+ * del archivo, con el streaming se mantiene constante.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DownloadBenchmark {
+    @Param({"16384", "1048576", "67108864"})
+    public int fileSize;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        file = Files.createTempFile("neodiscover-bench", ".jar");
+        byte[] block = new byte[64 * 1024];
+        new Random(42).nextBytes(block);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int written = 0; written < fileSize; written += block.length) {
+                out.write(block, 0, Math.min(block.length, fileSize - written));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long readAllBytes() throws IOException {
+        // Comportamiento anterior de DownloadsHandler
+        byte[] fileData = Files.readAllBytes(file);
+        CountingOutputStream out = new CountingOutputStream();
+        out.write(fileData);
+        return out.count;
+    }
+
+    @Benchmark
+    public long streamFromChannel() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            FileTransfer.transfer(channel, 0, channel.size(), out);
+        }
+        return out.count;
+    }
+
+    // Sumidero que descarta los datos, en lugar del socket de la respuesta
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.neodiscover.server;
+
+import com.google.gson.JsonObject;
+import com.neodiscover.config.ConfigManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Descargas de punta a punta: GET /downloads/mods/... contra un ProfilesHttpServer real en
+ * localhost, con archivos pequeños (16 KiB), medianos (1 MiB) y grandes (64 MiB).
+ *
+ * Incluye filtros, cabeceras, ETag y el envío por FileTransfer, a diferencia de DownloadBenchmark,
+ * que solo mide la copia del archivo. El límite de peticiones y el log de acceso se desactivan en
+ * la configuración para medir solo el camino de la descarga.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DownloadHandlerBenchmark {
+    @Param({"16384", "1048576", "67108864"})
+    public int fileSize;
+
+    private Path serverDir;
+    private String originalUserDir;
+    private FileManager fileManager;
+    private ProfilesHttpServer httpServer;
+    private HttpClient client;
+    private HttpRequest request;
+    private byte[] chunk;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        serverDir = Files.createTempDirectory("neodiscover-bench");
+        originalUserDir = System.getProperty("user.dir");
+        System.setProperty("user.dir", serverDir.toString());
+
+        JsonObject http = new JsonObject();
+        http.addProperty("downloads_requests_per_second", 0);
+        http.addProperty("access_log", false);
+        JsonObject config = new JsonObject();
+        config.addProperty("api_key", "0123456789abcdef0123456789abcdef");
+        config.addProperty("server_ip", "127.0.0.1");
+        config.add("http", http);
+        Files.writeString(serverDir.resolve("neodiscover_config.txt"), config.toString());
+
+        Path mods = Files.createDirectories(serverDir.resolve("downloads/mods"));
+        byte[] block = new byte[64 * 1024];
+        new Random(42).nextBytes(block);
+        try (OutputStream out = Files.newOutputStream(mods.resolve("bench.jar"))) {
+            for (int written = 0; written < fileSize; written += block.length) {
+                out.write(block, 0, Math.min(block.length, fileSize - written));
+            }
+        }
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        ConfigManager configManager = new ConfigManager();
+        configManager.loadConfig();
+        fileManager = new FileManager(port);
+        ServerInfoCollector collector = new ServerInfoCollector(configManager);
+        collector.setFileManager(fileManager);
+        httpServer = new ProfilesHttpServer(port, new ProfileCache(collector), configManager, fileManager);
+        httpServer.start();
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/downloads/mods/bench.jar")).build();
+        chunk = new byte[FileTransfer.CHUNK_SIZE];
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        httpServer.stop();
+        fileManager.getIndex().stop();
+        System.setProperty("user.dir", originalUserDir);
+        try (Stream<Path> paths = Files.walk(serverDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long download() throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Respuesta inesperada: " + response.statusCode());
+        }
+        long received = 0;
+        try (InputStream in = response.body()) {
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                received += read;
+            }
+        }
+        return received;
+    }
+}
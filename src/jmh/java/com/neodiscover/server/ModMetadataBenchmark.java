@@ -0,0 +1,102 @@
+package com.neodiscover.server;
+
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+/**
+ * Lectura de los metadatos de un jar (ModMetadataIndex.read) con 10, 1000 y 10000 entradas: el
+ * coste depende del directorio central, no del tamaño de las clases.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ModMetadataBenchmark {
+    private static final String TOML = """
+        modLoader="javafml"
+        loaderVersion="[4,)"
+        license="MIT"
+        [[mods]]
+        modId="benchmod"
+        version="${file.jarVersion}"
+        displayName="Benchmark Mod"
+        description='''
+        Mod sintético para el benchmark.
+        '''
+        [[dependencies.benchmod]]
+            modId="neoforge"
+            type="required"
+            versionRange="[21.1,)"
+            ordering="NONE"
+            side="BOTH"
+        [[dependencies.benchmod]]
+            modId="minecraft"
+            type="required"
+            versionRange="[1.21.1,1.22)"
+            ordering="NONE"
+            side="BOTH"
+        """;
+
+    @Param({"10", "1000", "10000"})
+    public int entryCount;
+
+    private Path dir;
+    private Path jar;
+
+    @Setup(Level.Trial)
+    public void createJar() throws IOException {
+        dir = Files.createTempDirectory("neodiscover-modmeta-bench");
+        jar = dir.resolve("benchmod.jar");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.IMPLEMENTATION_VERSION, "1.0.0");
+        byte[] classBytes = new byte[2048];
+        new Random(42).nextBytes(classBytes);
+        try (OutputStream out = Files.newOutputStream(jar);
+             JarOutputStream zip = new JarOutputStream(out, manifest)) {
+            zip.putNextEntry(new JarEntry("META-INF/neoforge.mods.toml"));
+            zip.write(TOML.getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            for (int i = 0; i < entryCount; i++) {
+                zip.putNextEntry(new JarEntry("com/example/benchmod/Class" + i + ".class"));
+                zip.write(classBytes);
+                zip.closeEntry();
+            }
+        }
+        System.out.printf("%n[modmeta] entries=%d jar=%d bytes%n", entryCount, Files.size(jar));
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public JsonObject readMetadata() throws IOException {
+        return ModMetadataIndex.read(jar);
+    }
+}
@@ -0,0 +1,105 @@
+package com.neodiscover.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parseo en streaming del cuerpo multipart de /update: campos profile_json y files_metadata más
+ * tres archivos del tamaño indicado, con boundaries como los que envían navegadores y clientes HTTP.
+ *
+ * El contenido de los archivos es aleatorio, así que aparecen con frecuencia bytes del delimitador
+ * (CR, LF, '-') que obligan a la búsqueda a comprobar coincidencias parciales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MultipartParserBenchmark {
+    private static final int FILES = 3;
+
+    @Param({"65536", "4194304", "33554432"})
+    public int fileSize;
+
+    // webkit: boundary de navegador; uuid: el de java.net.http/OkHttp con un UUID
+    @Param({"webkit", "uuid"})
+    public String boundaryStyle;
+
+    private String boundary;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void buildBody() throws IOException {
+        boundary = "webkit".equals(boundaryStyle)
+            ? "----WebKitFormBoundary7MA4YWxkTrZu0gW"
+            : UUID.nameUUIDFromBytes(new byte[] {42}).toString();
+        Random random = new Random(42);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(FILES * fileSize + 8192);
+
+        StringBuilder metadata = new StringBuilder("[");
+        for (int i = 0; i < FILES; i++) {
+            metadata.append(i > 0 ? "," : "")
+                .append("{\"field_name\":\"f").append(i).append("\",\"name\":\"mod-").append(i)
+                .append(".jar\",\"type\":\"mods\",\"size\":").append(fileSize).append('}');
+        }
+        metadata.append(']');
+        field(out, "profile_json", "{\"name\":\"Benchmark\",\"id\":\"benchmark\",\"description\":\"" + "x".repeat(1500) + "\"}");
+        field(out, "files_metadata", metadata.toString());
+
+        byte[] content = new byte[fileSize];
+        for (int i = 0; i < FILES; i++) {
+            random.nextBytes(content);
+            out.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"f" + i + "\"; filename=\"mod-" + i
+                + ".jar\"\r\nContent-Type: application/java-archive\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            out.write(content);
+            out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        out.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        body = out.toByteArray();
+    }
+
+    private void field(ByteArrayOutputStream out, String name, String value) throws IOException {
+        out.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value + "\r\n")
+            .getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public long parse() throws IOException {
+        MultipartStreamParser parser = new MultipartStreamParser(new ByteArrayInputStream(body), boundary);
+        byte[] chunk = new byte[FileTransfer.CHUNK_SIZE];
+        long total = 0;
+        MultipartStreamParser.Part part;
+        while ((part = parser.nextPart()) != null) {
+            if (part.isFile()) {
+                // Como en UpdateHandler: leer la parte por bloques (aquí sin escribir a disco)
+                total += drain(part.body, chunk);
+            } else {
+                total += MultipartStreamParser.readText(part.body, 16L * 1024 * 1024).length();
+            }
+        }
+        return total;
+    }
+
+    private static long drain(InputStream in, byte[] chunk) throws IOException {
+        long count = 0;
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            count += read;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,72 @@
+package com.neodiscover.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de comprimir profiles.json en cada petición frente a servir la variante gzip precalculada.
+ *
+ * En el setup se imprime el tamaño sin comprimir y comprimido del perfil sintético.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProfileCompressionBenchmark {
+    @Param({"10", "300", "2000"})
+    public int modCount;
+
+    private byte[] body;
+    private byte[] precomputedGzip;
+
+    @Setup(Level.Trial)
+    public void buildProfile() {
+        body = syntheticProfile(modCount).toString().getBytes(StandardCharsets.UTF_8);
+        precomputedGzip = ProfileCache.gzip(body);
+        System.out.printf("%n[profile] mods=%d identity=%d bytes gzip=%d bytes (%.1f%%)%n",
+            modCount, body.length, precomputedGzip.length, 100.0 * precomputedGzip.length / body.length);
+    }
+
+    static JsonObject syntheticProfile(int modCount) {
+        JsonObject profile = new JsonObject();
+        profile.addProperty("id", "bench-profile");
+        profile.addProperty("name", "Benchmark");
+        JsonArray mods = new JsonArray();
+        for (int i = 0; i < modCount; i++) {
+            JsonObject mod = new JsonObject();
+            String fileName = "example-mod-" + i + "-neoforge-1.21.1-" + (i % 7) + ".2." + (i % 13) + ".jar";
+            mod.addProperty("name", fileName);
+            mod.addProperty("url", "http://203.0.113.42:25080/downloads/mods/" + fileName);
+            mod.addProperty("required", true);
+            mods.add(mod);
+        }
+        profile.add("mods", mods);
+        JsonArray profiles = new JsonArray();
+        profiles.add(profile);
+        JsonObject root = new JsonObject();
+        root.addProperty("server_name", "Benchmark Server");
+        root.add("profiles", profiles);
+        return root;
+    }
+
+    @Benchmark
+    public byte[] gzipPerRequest() {
+        return ProfileCache.gzip(body);
+    }
+
+    @Benchmark
+    public byte[] precomputedVariant() {
+        return precomputedGzip;
+    }
+}
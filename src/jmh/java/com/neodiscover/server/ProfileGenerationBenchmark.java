@@ -0,0 +1,143 @@
+package com.neodiscover.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.neodiscover.config.ConfigManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Generación de profiles.json (collectServerInfo y createProfile) con configuraciones sintéticas
+ * de 10, 300 y 2000 mods en downloads/mods, frente a servir el snapshot de ProfileCache.
+ *
+ * Corre sin Minecraft: no hay MinecraftServer (server queda a null) y los valores que vendrían
+ * del servidor salen de la configuración. Los hashes se calculan en el setup, antes de medir.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProfileGenerationBenchmark {
+    @Param({"10", "300", "2000"})
+    public int modCount;
+
+    private Path serverDir;
+    private String originalUserDir;
+    private FileManager fileManager;
+    private FileHashCache fileHashCache;
+    private ServerInfoCollector collector;
+    private ProfileCache profileCache;
+
+    @Setup(Level.Trial)
+    public void createServer() throws Exception {
+        serverDir = Files.createTempDirectory("neodiscover-bench");
+        // ConfigManager y FileManager resuelven sus rutas desde user.dir
+        originalUserDir = System.getProperty("user.dir");
+        System.setProperty("user.dir", serverDir.toString());
+        Files.writeString(serverDir.resolve("neodiscover_config.txt"), syntheticConfig().toString());
+
+        Path mods = Files.createDirectories(serverDir.resolve("downloads/mods"));
+        byte[] jar = new byte[4096];
+        for (int i = 0; i < modCount; i++) {
+            jar[0] = (byte) i;
+            jar[1] = (byte) (i >> 8);
+            Files.write(mods.resolve(String.format("example-mod-%04d-1.21.1.jar", i)), jar);
+        }
+
+        ConfigManager configManager = new ConfigManager();
+        configManager.loadConfig();
+        fileManager = new FileManager(25080);
+        fileHashCache = new FileHashCache(fileManager);
+        fileManager.setFileHashCache(fileHashCache);
+        collector = new ServerInfoCollector(configManager);
+        collector.setFileManager(fileManager);
+        collector.setFileHashCache(fileHashCache);
+        profileCache = new ProfileCache(collector);
+
+        // Esperar a que estén todos los hashes para medir el perfil completo
+        fileHashCache.start();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+        while (!allHashed()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Hashes no calculados a tiempo");
+            }
+            Thread.sleep(50);
+        }
+        profileCache.get();
+    }
+
+    private boolean allHashed() {
+        for (DownloadsIndex.FileEntry file : fileManager.getIndex().list("mods")) {
+            if (fileHashCache.get(file) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteServer() throws IOException {
+        fileHashCache.stop();
+        fileManager.getIndex().stop();
+        System.setProperty("user.dir", originalUserDir);
+        try (Stream<Path> paths = Files.walk(serverDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public JsonObject collectServerInfo() {
+        return collector.collectServerInfo();
+    }
+
+    @Benchmark
+    public byte[] collectAndSerialize() {
+        // Lo que costaba cada GET /profiles.json antes de ProfileCache
+        return collector.collectServerInfo().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] cachedSnapshot() {
+        return profileCache.get().getBody();
+    }
+
+    private static JsonObject syntheticConfig() {
+        JsonObject config = new JsonObject();
+        config.addProperty("api_key", "0123456789abcdef0123456789abcdef");
+        config.addProperty("server_ip", "203.0.113.10");
+        config.addProperty("name", "Benchmark");
+        config.addProperty("id", "benchmark");
+        config.addProperty("description", "Perfil sintético para benchmarks");
+        JsonArray shaders = new JsonArray();
+        JsonArray resourcepacks = new JsonArray();
+        for (int i = 0; i < 5; i++) {
+            JsonObject shader = new JsonObject();
+            shader.addProperty("name", "shader-" + i + ".zip");
+            shaders.add(shader);
+            JsonObject pack = new JsonObject();
+            pack.addProperty("name", "pack-" + i + ".zip");
+            resourcepacks.add(pack);
+        }
+        config.add("shaders", shaders);
+        config.add("resourcepacks", resourcepacks);
+        JsonObject options = new JsonObject();
+        options.addProperty("renderDistance", 12);
+        config.add("options", options);
+        return config;
+    }
+}
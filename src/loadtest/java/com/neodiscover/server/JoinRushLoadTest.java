@@ -0,0 +1,601 @@
+package com.neodiscover.server;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.neodiscover.config.ConfigManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Prueba de carga de la "avalancha" al publicar un modpack: N launchers piden /profiles.json a la
+ * vez y después descargan todos los mods en paralelo, como el launcher real.
+ *
+ * Arranca un ProfilesHttpServer en un puerto libre sobre una carpeta downloads sintética y simula
+ * cada launcher con sus propias conexiones, pausas ("think time") y velocidad de enlace. Al final
+ * muestra throughput, latencias p50/p99/p999, tasa de errores y pico de heap, y guarda lo mismo en
+ * JSON para comparar ejecuciones.
+ *
+ * Ejecutar con ./gradlew loadTest --args="--launchers=300 --link=2m"; --help lista las opciones.
+ */
+public final class JoinRushLoadTest {
+    private static final String API_KEY = "0123456789abcdef0123456789abcdef";
+
+    private JoinRushLoadTest() {
+    }
+
+    /**
+     * Parámetros de la prueba; se leen de argumentos --clave=valor.
+     */
+    static final class Options {
+        int launchers = 200;
+        int mods = 150;
+        long modSize = 512 * 1024;
+        int parallel = 4;
+        long thinkMinMs = 50;
+        long thinkMaxMs = 500;
+        long linkBytesPerSecond = 0;
+        long rampUpMs = 5000;
+        int retries = 2;
+        JsonObject http = new JsonObject();
+        Path output = Paths.get("build", "results", "loadtest", "join-rush.json");
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                if (arg.equals("--help")) {
+                    usage();
+                    System.exit(0);
+                }
+                int eq = arg.indexOf('=');
+                if (!arg.startsWith("--") || eq < 0) {
+                    throw new IllegalArgumentException("Argumento no válido: " + arg);
+                }
+                String key = arg.substring(2, eq);
+                String value = arg.substring(eq + 1);
+                switch (key) {
+                    case "launchers" -> options.launchers = Integer.parseInt(value);
+                    case "mods" -> options.mods = Integer.parseInt(value);
+                    case "mod-size" -> options.modSize = parseBytes(value);
+                    case "parallel" -> options.parallel = Integer.parseInt(value);
+                    case "think" -> {
+                        // "200" o "50-500" (milisegundos, aleatorio en el rango)
+                        int dash = value.indexOf('-');
+                        options.thinkMinMs = Long.parseLong(dash < 0 ? value : value.substring(0, dash));
+                        options.thinkMaxMs = dash < 0 ? options.thinkMinMs : Long.parseLong(value.substring(dash + 1));
+                    }
+                    case "link" -> options.linkBytesPerSecond = parseBytes(value);
+                    case "ramp-up" -> options.rampUpMs = Long.parseLong(value);
+                    case "retries" -> options.retries = Integer.parseInt(value);
+                    case "http" -> options.http = JsonParser.parseString(value).getAsJsonObject();
+                    case "output" -> options.output = Paths.get(value);
+                    default -> throw new IllegalArgumentException("Opción desconocida: --" + key);
+                }
+            }
+            return options;
+        }
+
+        // 512k, 2m, 1g o bytes
+        private static long parseBytes(String value) {
+            String lower = value.trim().toLowerCase();
+            long unit = 1;
+            if (lower.endsWith("k")) {
+                unit = 1024;
+            } else if (lower.endsWith("m")) {
+                unit = 1024 * 1024;
+            } else if (lower.endsWith("g")) {
+                unit = 1024L * 1024 * 1024;
+            }
+            return Long.parseLong(unit == 1 ? lower : lower.substring(0, lower.length() - 1)) * unit;
+        }
+
+        private static void usage() {
+            System.out.println("""
+                Opciones (--clave=valor):
+                  --launchers=200     launchers simultáneos
+                  --mods=150          mods del perfil
+                  --mod-size=512k     tamaño medio de cada mod (entre 1/8 y 2x)
+                  --parallel=4        descargas en paralelo por launcher
+                  --think=50-500      pausa en ms tras el perfil y entre descargas
+                  --link=0            velocidad de enlace por launcher en bytes/s (2m, 512k; 0 = sin límite)
+                  --ramp-up=5000      ms en los que se reparten los arranques de los launchers
+                  --retries=2         reintentos por petición tras 429/503 o error de red
+                  --http={...}        ajustes "http" del servidor (por defecto, los de producción)
+                  --output=build/results/loadtest/join-rush.json""");
+        }
+    }
+
+    /**
+     * Latencias de un tipo de petición, en nanosegundos.
+     */
+    static final class LatencyLog {
+        private long[] values = new long[1024];
+        private int size;
+
+        synchronized void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        synchronized JsonObject summary() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            JsonObject summary = new JsonObject();
+            summary.addProperty("count", size);
+            summary.addProperty("p50_ms", millis(percentile(sorted, 0.50)));
+            summary.addProperty("p99_ms", millis(percentile(sorted, 0.99)));
+            summary.addProperty("p999_ms", millis(percentile(sorted, 0.999)));
+            summary.addProperty("max_ms", millis(size > 0 ? sorted[size - 1] : 0));
+            return summary;
+        }
+
+        private static long percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+
+        private static double millis(long nanos) {
+            return Math.round(nanos / 10_000.0) / 100.0;
+        }
+    }
+
+    /**
+     * Contadores compartidos por todos los launchers.
+     */
+    static final class Results {
+        final LatencyLog profile = new LatencyLog();
+        final LatencyLog download = new LatencyLog();
+        final LatencyLog join = new LatencyLog();
+        final LongAdder requests = new LongAdder();
+        final LongAdder failedRequests = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder completedLaunchers = new LongAdder();
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        void error(String kind) {
+            failedRequests.increment();
+            errors.computeIfAbsent(kind, k -> new LongAdder()).increment();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        Path serverDir = Files.createTempDirectory("neodiscover-loadtest");
+        String originalUserDir = System.getProperty("user.dir");
+        Path output = options.output.toAbsolutePath();
+        // ConfigManager y FileManager resuelven sus rutas desde user.dir
+        System.setProperty("user.dir", serverDir.toString());
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        writeConfig(serverDir, options);
+        long totalBytes = createMods(serverDir, options);
+
+        ConfigManager configManager = new ConfigManager();
+        configManager.loadConfig();
+        FileManager fileManager = new FileManager(port);
+        FileHashCache fileHashCache = new FileHashCache(fileManager);
+        fileManager.setFileHashCache(fileHashCache);
+        ServerInfoCollector collector = new ServerInfoCollector(configManager);
+        collector.setFileManager(fileManager);
+        collector.setFileHashCache(fileHashCache);
+        ProfileCache profileCache = new ProfileCache(collector);
+        fileHashCache.addChangeListener(profileCache::invalidate);
+        fileManager.addChangeListener(profileCache::invalidate);
+        ProfilesHttpServer httpServer = new ProfilesHttpServer(port, profileCache, configManager, fileManager);
+
+        System.out.printf("Preparando %d mods (%.1f MiB) en %s%n", options.mods, totalBytes / 1048576.0, serverDir);
+        fileHashCache.start();
+        waitForHashes(fileManager, fileHashCache);
+        httpServer.start();
+
+        Results results = new Results();
+        HeapSampler heap = new HeapSampler();
+        heap.start();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTimeMillis();
+
+        String baseUrl = "http://127.0.0.1:" + port;
+        CountDownLatch done = new CountDownLatch(options.launchers);
+        long start = System.nanoTime();
+        for (int i = 0; i < options.launchers; i++) {
+            long delay = options.launchers > 1 ? options.rampUpMs * i / (options.launchers - 1) : 0;
+            Launcher launcher = new Launcher(baseUrl, options, results, delay);
+            Thread thread = new Thread(() -> {
+                try {
+                    launcher.run();
+                } finally {
+                    done.countDown();
+                }
+            }, "Launcher-" + i);
+            thread.start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        heap.stop();
+
+        JsonObject report = report(options, results, elapsed, heap.peak(),
+            gcCount() - gcCountBefore, gcTimeMillis() - gcTimeBefore);
+
+        httpServer.stop();
+        fileHashCache.stop();
+        fileManager.getIndex().stop();
+        System.setProperty("user.dir", originalUserDir);
+        deleteRecursively(serverDir);
+
+        print(report);
+        Files.createDirectories(output.getParent());
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        Files.writeString(output, gson.toJson(report));
+        System.out.println("Resultados guardados en " + output);
+    }
+
+    private static void writeConfig(Path serverDir, Options options) throws IOException {
+        JsonObject http = new JsonObject();
+        // Todos los launchers salen de 127.0.0.1: los límites por IP cortarían la prueba entera
+        http.addProperty("profiles_requests_per_second", 0);
+        http.addProperty("downloads_requests_per_second", 0);
+        http.addProperty("max_connections_per_ip", 0);
+        http.addProperty("access_log", false);
+        for (Map.Entry<String, JsonElement> setting : options.http.entrySet()) {
+            http.add(setting.getKey(), setting.getValue());
+        }
+        JsonObject config = new JsonObject();
+        config.addProperty("api_key", API_KEY);
+        config.addProperty("server_ip", "127.0.0.1");
+        config.addProperty("name", "Load test");
+        config.addProperty("id", "loadtest");
+        config.add("http", http);
+        Files.writeString(serverDir.resolve("neodiscover_config.txt"), config.toString());
+    }
+
+    // Mods de tamaños variados (entre 1/8 y 2 veces el medio), siempre los mismos para una semilla
+    private static long createMods(Path serverDir, Options options) throws IOException {
+        Path mods = Files.createDirectories(serverDir.resolve("downloads/mods"));
+        Random random = new Random(42);
+        byte[] block = new byte[64 * 1024];
+        random.nextBytes(block);
+        long total = 0;
+        for (int i = 0; i < options.mods; i++) {
+            long min = Math.max(1, options.modSize / 8);
+            long size = min + (long) (random.nextDouble() * (options.modSize * 2 - min));
+            block[0] = (byte) i;
+            block[1] = (byte) (i >> 8);
+            try (OutputStream out = Files.newOutputStream(mods.resolve(String.format("loadtest-mod-%04d.jar", i)))) {
+                for (long written = 0; written < size; written += block.length) {
+                    out.write(block, 0, (int) Math.min(block.length, size - written));
+                }
+            }
+            total += size;
+        }
+        return total;
+    }
+
+    private static void waitForHashes(FileManager fileManager, FileHashCache fileHashCache) throws InterruptedException {
+        while (true) {
+            boolean complete = true;
+            for (DownloadsIndex.FileEntry file : fileManager.getIndex().list("mods")) {
+                if (fileHashCache.get(file) == null) {
+                    complete = false;
+                    break;
+                }
+            }
+            if (complete) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    /**
+     * Un launcher: pide el perfil y descarga todos los mods con su propio cliente HTTP y enlace.
+     */
+    private static final class Launcher {
+        private final String baseUrl;
+        private final Options options;
+        private final Results results;
+        private final long startDelayMs;
+        // Velocidad de enlace del launcher, repartida entre sus descargas en paralelo
+        private final BandwidthLimiter link = new BandwidthLimiter();
+
+        Launcher(String baseUrl, Options options, Results results, long startDelayMs) {
+            this.baseUrl = baseUrl;
+            this.options = options;
+            this.results = results;
+            this.startDelayMs = startDelayMs;
+            link.configure(options.linkBytesPerSecond, 0);
+        }
+
+        void run() {
+            try (HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+                 ExecutorService downloads = Executors.newFixedThreadPool(options.parallel)) {
+                Thread.sleep(startDelayMs);
+                long joinStart = System.nanoTime();
+
+                JsonObject profiles = fetchProfiles(client);
+                if (profiles == null) {
+                    return;
+                }
+                think();
+
+                List<Future<Boolean>> pending = new ArrayList<>();
+                for (String path : modPaths(profiles)) {
+                    pending.add(downloads.submit(() -> {
+                        boolean ok = download(client, path);
+                        think();
+                        return ok;
+                    }));
+                }
+                boolean complete = true;
+                for (Future<Boolean> future : pending) {
+                    complete &= future.get();
+                }
+                if (complete) {
+                    results.join.add(System.nanoTime() - joinStart);
+                    results.completedLaunchers.increment();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                results.error(e.getClass().getSimpleName());
+            }
+        }
+
+        private JsonObject fetchProfiles(HttpClient client) throws InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/profiles.json"))
+                .header("Accept-Encoding", "gzip")
+                .timeout(Duration.ofSeconds(60))
+                .build();
+            for (int attempt = 0; attempt <= options.retries; attempt++) {
+                long start = System.nanoTime();
+                try {
+                    results.requests.increment();
+                    HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                    if (response.statusCode() != 200) {
+                        response.body().close();
+                        results.error("status " + response.statusCode());
+                        backOff(response);
+                        continue;
+                    }
+                    InputStream body = response.body();
+                    if ("gzip".equals(response.headers().firstValue("Content-Encoding").orElse(null))) {
+                        body = new GZIPInputStream(body);
+                    }
+                    try (InputStreamReader reader = new InputStreamReader(body, StandardCharsets.UTF_8)) {
+                        JsonObject profiles = JsonParser.parseReader(reader).getAsJsonObject();
+                        results.profile.add(System.nanoTime() - start);
+                        return profiles;
+                    }
+                } catch (IOException e) {
+                    results.error(e.getClass().getSimpleName());
+                }
+            }
+            return null;
+        }
+
+        private boolean download(HttpClient client, String path) throws InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofMinutes(10))
+                .build();
+            byte[] chunk = new byte[FileTransfer.CHUNK_SIZE];
+            for (int attempt = 0; attempt <= options.retries; attempt++) {
+                long start = System.nanoTime();
+                try {
+                    results.requests.increment();
+                    HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                    if (response.statusCode() != 200) {
+                        response.body().close();
+                        results.error("status " + response.statusCode());
+                        backOff(response);
+                        continue;
+                    }
+                    try (InputStream in = response.body(); BandwidthLimiter.Transfer pacer = link.newTransfer()) {
+                        int read;
+                        while ((read = in.read(chunk, 0, pacer.chunkSize(chunk.length))) != -1) {
+                            pacer.pace(read);
+                            results.bytes.add(read);
+                        }
+                    }
+                    results.download.add(System.nanoTime() - start);
+                    return true;
+                } catch (IOException e) {
+                    results.error(e.getClass().getSimpleName());
+                }
+            }
+            return false;
+        }
+
+        // Como el launcher: esperar lo que indique Retry-After (acotado) antes de reintentar
+        private static void backOff(HttpResponse<?> response) throws InterruptedException {
+            long seconds = response.headers().firstValueAsLong("Retry-After").orElse(1);
+            Thread.sleep(TimeUnit.SECONDS.toMillis(Math.max(1, Math.min(seconds, 10))));
+        }
+
+        private void think() throws InterruptedException {
+            long pause = options.thinkMaxMs > options.thinkMinMs
+                ? ThreadLocalRandom.current().nextLong(options.thinkMinMs, options.thinkMaxMs + 1)
+                : options.thinkMinMs;
+            if (pause > 0) {
+                Thread.sleep(pause);
+            }
+        }
+
+        // Rutas de descarga de los mods; las URLs del perfil llevan el host público del servidor
+        private static List<String> modPaths(JsonObject profiles) {
+            List<String> paths = new ArrayList<>();
+            for (JsonElement element : profiles.getAsJsonArray("profiles")) {
+                JsonObject profile = element.getAsJsonObject();
+                if (!profile.has("mods")) {
+                    continue;
+                }
+                for (JsonElement mod : profile.getAsJsonArray("mods")) {
+                    paths.add(URI.create(mod.getAsJsonObject().get("url").getAsString()).getRawPath());
+                }
+            }
+            return paths;
+        }
+    }
+
+    /**
+     * Muestrea el heap usado para quedarse con el pico durante la prueba (servidor y clientes,
+     * que comparten JVM).
+     */
+    private static final class HeapSampler {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong peak = new AtomicLong();
+        private volatile boolean running = true;
+        private Thread thread;
+
+        void start() {
+            thread = new Thread(() -> {
+                while (running) {
+                    peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "LoadTest-HeapSampler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.join();
+        }
+
+        long peak() {
+            return peak.get();
+        }
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTimeMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static JsonObject report(Options options, Results results, long elapsedNanos, long peakHeap,
+                                     long gcCount, long gcMillis) {
+        double seconds = elapsedNanos / 1e9;
+        long requests = results.requests.sum();
+        long failed = results.failedRequests.sum();
+
+        JsonObject config = new JsonObject();
+        config.addProperty("launchers", options.launchers);
+        config.addProperty("mods", options.mods);
+        config.addProperty("mod_size", options.modSize);
+        config.addProperty("parallel", options.parallel);
+        config.addProperty("think_ms", options.thinkMinMs + "-" + options.thinkMaxMs);
+        config.addProperty("link_bytes_per_second", options.linkBytesPerSecond);
+        config.addProperty("ramp_up_ms", options.rampUpMs);
+        config.addProperty("retries", options.retries);
+        config.add("http", options.http);
+
+        JsonObject report = new JsonObject();
+        report.add("config", config);
+        report.addProperty("duration_seconds", Math.round(seconds * 100) / 100.0);
+        report.addProperty("launchers_completed", results.completedLaunchers.sum());
+        report.addProperty("requests", requests);
+        report.addProperty("requests_per_second", Math.round(requests / seconds * 10) / 10.0);
+        report.addProperty("bytes", results.bytes.sum());
+        report.addProperty("mib_per_second", Math.round(results.bytes.sum() / 1048576.0 / seconds * 10) / 10.0);
+        report.addProperty("error_rate", requests > 0 ? Math.round(failed * 10000.0 / requests) / 10000.0 : 0);
+        JsonObject errors = new JsonObject();
+        new TreeMap<>(results.errors).forEach((kind, count) -> errors.addProperty(kind, count.sum()));
+        report.add("errors", errors);
+        JsonObject latency = new JsonObject();
+        latency.add("profiles", results.profile.summary());
+        latency.add("download", results.download.summary());
+        latency.add("join", results.join.summary());
+        report.add("latency", latency);
+        report.addProperty("peak_heap_mib", Math.round(peakHeap / 1048576.0 * 10) / 10.0);
+        report.addProperty("gc_count", gcCount);
+        report.addProperty("gc_time_ms", gcMillis);
+        return report;
+    }
+
+    private static void print(JsonObject report) {
+        Map<String, String> lines = new LinkedHashMap<>();
+        lines.put("Duración", report.get("duration_seconds").getAsString() + " s");
+        lines.put("Launchers completos", report.get("launchers_completed").getAsString() + " / "
+            + report.getAsJsonObject("config").get("launchers").getAsString());
+        lines.put("Peticiones", report.get("requests").getAsString() + " (" + report.get("requests_per_second").getAsString() + "/s)");
+        lines.put("Throughput", report.get("mib_per_second").getAsString() + " MiB/s");
+        lines.put("Tasa de errores", report.get("error_rate").getAsString() + " " + report.get("errors"));
+        for (Map.Entry<String, JsonElement> entry : report.getAsJsonObject("latency").entrySet()) {
+            JsonObject summary = entry.getValue().getAsJsonObject();
+            lines.put("Latencia " + entry.getKey(), String.format("p50 %s ms, p99 %s ms, p999 %s ms, max %s ms (n=%s)",
+                summary.get("p50_ms").getAsString(), summary.get("p99_ms").getAsString(), summary.get("p999_ms").getAsString(),
+                summary.get("max_ms").getAsString(), summary.get("count").getAsString()));
+        }
+        lines.put("Pico de heap", report.get("peak_heap_mib").getAsString() + " MiB");
+        lines.put("GC", report.get("gc_count").getAsString() + " colecciones, " + report.get("gc_time_ms").getAsString() + " ms");
+        lines.forEach((name, value) -> System.out.printf("%-22s %s%n", name, value));
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -2,14 +2,22 @@ package com.neodiscover;
 
 import com.neodiscover.config.ConfigManager;
 import com.neodiscover.events.ServerEvents;
+import com.neodiscover.server.ContentStore;
+import com.neodiscover.server.FileHashCache;
 import com.neodiscover.server.FileManager;
+import com.neodiscover.server.Metrics;
+import com.neodiscover.server.ModMetadataIndex;
+import com.neodiscover.server.ProfileCache;
 import com.neodiscover.server.ProfilesHttpServer;
+import com.neodiscover.server.PublicIpResolver;
 import com.neodiscover.server.ServerInfoCollector;
 import net.neoforged.bus.api.IEventBus;
 import net.neoforged.fml.common.Mod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+
 @Mod(NeoDiscover.MODID)
 public class NeoDiscover {
     public static final String MODID = "neodiscover";
@@ -19,13 +27,23 @@ public class NeoDiscover {
     private ServerInfoCollector serverInfoCollector;
     private ConfigManager configManager;
     private FileManager fileManager;
+    private ProfileCache profileCache;
+    private PublicIpResolver publicIpResolver;
+    private FileHashCache fileHashCache;
+    private ContentStore contentStore;
+    private ModMetadataIndex modMetadataIndex;
+    private Metrics metrics;
 
     public NeoDiscover(IEventBus modEventBus) {
         LOGGER.info("Inicializando NeoDiscover...");
         
         try {
+            // Métricas compartidas por todos los componentes (GET /metrics)
+            metrics = new Metrics();
+            
             // Inicializar gestor de configuración
             configManager = new ConfigManager();
+            configManager.setMetrics(metrics);
             configManager.loadConfig();
             
             // Inicializar gestor de archivos
@@ -35,14 +53,55 @@ public class NeoDiscover {
             serverInfoCollector = new ServerInfoCollector(configManager);
             serverInfoCollector.setFileManager(fileManager);
             
+            // Resolver de IP pública en segundo plano (lista de proveedores configurable)
+            publicIpResolver = new PublicIpResolver(configManager.getPublicIpProviders(), Duration.ofMinutes(10), Duration.ofSeconds(3));
+            publicIpResolver.setMetrics(metrics);
+            serverInfoCollector.setPublicIpResolver(publicIpResolver);
+            
+            // Hashes de los archivos de downloads, persistidos entre reinicios
+            fileHashCache = new FileHashCache(fileManager);
+            fileManager.setFileHashCache(fileHashCache);
+            serverInfoCollector.setFileHashCache(fileHashCache);
+            
+            // Almacén por contenido opcional (blobs deduplicados y URLs inmutables)
+            contentStore = new ContentStore(fileManager, configManager, fileHashCache);
+            serverInfoCollector.setContentStore(contentStore);
+            
+            // Metadatos de los jars de downloads/mods (neoforge.mods.toml), indexados por hash
+            modMetadataIndex = new ModMetadataIndex(fileManager, fileHashCache);
+            serverInfoCollector.setModMetadataIndex(modMetadataIndex);
+            
+            // Snapshots de profiles.json y de cada perfil, invalidados solo cuando cambian sus entradas
+            // (los cambios de configuración los detecta la propia caché, perfil a perfil)
+            profileCache = new ProfileCache(serverInfoCollector);
+            fileManager.addChangeListener(profileCache::invalidate);
+            publicIpResolver.addChangeListener(profileCache::invalidate);
+            fileHashCache.addChangeListener(profileCache::invalidate);
+            contentStore.addChangeListener(profileCache::invalidate);
+            modMetadataIndex.addChangeListener(profileCache::invalidate);
+            configManager.addChangeListener(contentStore::refresh);
+            // Ediciones a mano de neodiscover_config.txt: se aplican al guardarlas
+            configManager.startWatching();
+            publicIpResolver.start();
+            fileHashCache.start();
+            contentStore.start();
+            modMetadataIndex.start();
+            
             // Registrar el recolector, config manager y file manager en los eventos del servidor
             ServerEvents.setInfoCollector(serverInfoCollector);
             ServerEvents.setConfigManager(configManager);
             ServerEvents.setFileManager(fileManager);
+            ServerEvents.setProfileCache(profileCache);
+            ServerEvents.setFileHashCache(fileHashCache);
+            ServerEvents.setContentStore(contentStore);
+            ServerEvents.setModMetadataIndex(modMetadataIndex);
             ServerEvents.register();
             
             // Inicializar servidor HTTP
-            httpServer = new ProfilesHttpServer(25080, serverInfoCollector, configManager, fileManager);
+            httpServer = new ProfilesHttpServer(25080, profileCache, configManager, fileManager);
+            httpServer.setContentStore(contentStore);
+            httpServer.setFileHashCache(fileHashCache);
+            httpServer.setMetrics(metrics);
             httpServer.start();
             
             LOGGER.info("NeoDiscover iniciado correctamente. Servidor HTTP en puerto 25080");
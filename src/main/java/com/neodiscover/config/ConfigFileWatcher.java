@@ -0,0 +1,140 @@
+package com.neodiscover.config;
+
+import com.neodiscover.NeoDiscover;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vigila el archivo de configuración y avisa cuando cambia en disco (ediciones a mano).
+ *
+ * Usa un WatchService sobre la carpeta del archivo; si el sistema de archivos no lo admite,
+ * comprueba fecha de modificación y tamaño cada pocos segundos. Las ráfagas de eventos de una
+ * misma edición (editores que escriben en varios pasos) se agrupan en un solo aviso.
+ */
+final class ConfigFileWatcher {
+    private static final long POLL_INTERVAL_MS = 2000;
+    private static final long SETTLE_MS = 100;
+
+    private final Path file;
+    private final Runnable onChange;
+    private WatchService watchService;
+    private Thread thread;
+
+    ConfigFileWatcher(Path file, Runnable onChange) {
+        this.file = file.toAbsolutePath();
+        this.onChange = onChange;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    void start() {
+        Path folder = file.getParent();
+        try {
+            Files.createDirectories(folder);
+            watchService = folder.getFileSystem().newWatchService();
+            folder.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException e) {
+            NeoDiscover.LOGGER.warn("WatchService no disponible para {}, se comprobará cada {} ms", file, POLL_INTERVAL_MS);
+            closeWatchService();
+        }
+        WatchService service = watchService;
+        thread = new Thread(() -> {
+            if (service != null) {
+                watchLoop(service);
+            } else {
+                pollLoop();
+            }
+        }, "NeoDiscover-ConfigWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+        closeWatchService();
+    }
+
+    private void watchLoop(WatchService service) {
+        Path name = file.getFileName();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        // OVERFLOW no trae nombre: por si acaso, releer
+                        changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context());
+                    }
+                    key.reset();
+                    key = service.poll(SETTLE_MS, TimeUnit.MILLISECONDS);
+                }
+                if (changed) {
+                    notifyChange();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Parada normal
+        }
+    }
+
+    private void pollLoop() {
+        String last = stamp();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            String current = stamp();
+            if (!current.equals(last)) {
+                last = current;
+                notifyChange();
+            }
+        }
+    }
+
+    // Fecha de modificación y tamaño; "" si el archivo no existe
+    private String stamp() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.lastModifiedTime().toMillis() + ":" + attributes.size();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private void notifyChange() {
+        try {
+            onChange.run();
+        } catch (Exception e) {
+            NeoDiscover.LOGGER.warn("Error al recargar la configuración", e);
+        }
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // ignorar
+            }
+            watchService = null;
+        }
+    }
+}
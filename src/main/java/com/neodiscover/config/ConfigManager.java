@@ -4,23 +4,61 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.neodiscover.NeoDiscover;
+import com.neodiscover.server.Diagnostics;
+import com.neodiscover.server.Metrics;
+import com.neodiscover.server.PublicIpResolver;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.world.level.storage.LevelResource;
 
 import java.io.*;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ConfigManager {
     private static final String CONFIG_FILE = "neodiscover_config.txt";
+    // Ráfagas de actualizaciones dentro de este margen se guardan con una sola escritura
+    private static final long SAVE_DELAY_MS = 250;
     private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    private JsonObject configData;
-    private String apiKey;
-    private Path configPath;
+    // Configuración publicada; los lectores la leen sin locks y los escritores (synchronized)
+    // construyen una nueva a partir de una copia y la sustituyen entera
+    private volatile ConfigSnapshot snapshot = ConfigSnapshot.EMPTY;
+    private volatile Path configPath;
     private MinecraftServer server;
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private Metrics metrics;
+    // Escritura en segundo plano: las peticiones publican la nueva versión y no esperan al disco
+    private final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "NeoDiscover-ConfigWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    // Lock propio de la escritura: guardar no bloquea a quien publica una nueva versión
+    private final Object writeLock = new Object();
+    // Versión que hay en disco; writeConfig no reescribe si no ha cambiado
+    private long persistedVersion;
+    // El archivo actual está dañado: no debe sustituir a la copia de seguridad buena
+    private volatile boolean skipBackup;
+    // Última versión escrita por nosotros, para no confundir su evento con una edición a mano
+    private volatile ConfigSnapshot lastWritten;
+    private ConfigFileWatcher watcher;
 
     public ConfigManager() {
         // Determinar la ruta del archivo de configuración
@@ -31,8 +69,6 @@ public class ConfigManager {
         } else {
             configPath = Paths.get(CONFIG_FILE);
         }
-        
-        configData = new JsonObject();
     }
 
     public void setServer(MinecraftServer server) {
@@ -41,10 +77,18 @@ public class ConfigManager {
         if (server != null) {
             try {
                 Path serverPath = server.getWorldPath(LevelResource.ROOT).getParent().getParent();
+                // Lo pendiente va a la ubicación anterior antes de cambiar de archivo
+                flush();
                 configPath = serverPath.resolve(CONFIG_FILE);
                 // Recargar configuración desde la nueva ubicación si existe
                 if (Files.exists(configPath)) {
                     loadConfig();
+                    notifyChangeListeners();
+                }
+                synchronized (this) {
+                    if (watcher != null) {
+                        startWatching();
+                    }
                 }
             } catch (Exception e) {
                 NeoDiscover.LOGGER.warn("No se pudo actualizar la ruta de configuración con el servidor", e);
@@ -52,124 +96,403 @@ public class ConfigManager {
         }
     }
 
-    public void loadConfig() {
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public synchronized void loadConfig() {
+        if (metrics != null) {
+            metrics.recordConfigLoad();
+        }
+        JsonObject configData = new JsonObject();
+        boolean save = false;
         try {
-            NeoDiscover.LOGGER.info("Cargando configuración desde: {}", configPath);
+            Diagnostics.log("Cargando configuración desde: {}", configPath);
+            Path backupPath = backupPath();
+            if (!Files.exists(configPath) && Files.exists(backupPath)) {
+                NeoDiscover.LOGGER.warn("Archivo de configuración no existe, usando la copia de seguridad {}", backupPath);
+                Files.copy(backupPath, configPath);
+            }
             if (Files.exists(configPath)) {
                 String content = Files.readString(configPath);
-                if (content != null && !content.trim().isEmpty()) {
-                    try {
-                        configData = gson.fromJson(content, JsonObject.class);
-                        if (configData == null) {
-                            configData = new JsonObject();
-                        } else {
-                            NeoDiscover.LOGGER.info("Configuración cargada. Keys disponibles: {}", configData.keySet());
-                            if (configData.has("name")) {
-                                NeoDiscover.LOGGER.info("Config 'name' = {}", configData.get("name"));
-                            }
-                            if (configData.has("description")) {
-                                NeoDiscover.LOGGER.info("Config 'description' = {}", configData.get("description"));
-                            }
-                            if (configData.has("id")) {
-                                NeoDiscover.LOGGER.info("Config 'id' = {}", configData.get("id"));
-                            }
+                try {
+                    JsonObject loaded = parseOrBackup(content);
+                    if (loaded != null) {
+                        configData = loaded;
+                        Diagnostics.log("Configuración cargada. Keys disponibles: {}", configData.keySet());
+                        if (configData.has("name")) {
+                            Diagnostics.log("Config 'name' = {}", configData.get("name"));
+                        }
+                        if (configData.has("description")) {
+                            Diagnostics.log("Config 'description' = {}", configData.get("description"));
+                        }
+                        if (configData.has("id")) {
+                            Diagnostics.log("Config 'id' = {}", configData.get("id"));
                         }
-                    } catch (com.google.gson.JsonSyntaxException e) {
-                        NeoDiscover.LOGGER.warn("El archivo de configuración no es JSON válido, creando uno nuevo", e);
-                        configData = new JsonObject();
                     }
-                } else {
-                    configData = new JsonObject();
+                } catch (com.google.gson.JsonSyntaxException e) {
+                    NeoDiscover.LOGGER.warn("El archivo de configuración no es JSON válido, creando uno nuevo", e);
                 }
                 
                 if (configData.has("api_key")) {
-                    apiKey = configData.get("api_key").getAsString();
-                    NeoDiscover.LOGGER.info("API Key cargada desde configuración: " + apiKey);
+                    String apiKey = configData.get("api_key").getAsString();
+                    Diagnostics.log("API Key cargada desde configuración: {}...{}",
+                        apiKey.length() > 8 ? apiKey.substring(0, 4) : "****",
+                        apiKey.length() > 8 ? apiKey.substring(apiKey.length() - 4) : "****");
                 } else {
                     // Generar nueva API key si no existe
-                    generateApiKey();
-                    saveConfig(); // Guardar inmediatamente la nueva API key
+                    generateApiKey(configData);
+                    save = true; // Guardar inmediatamente la nueva API key
                 }
             } else {
                 NeoDiscover.LOGGER.warn("Archivo de configuración no existe en: {}", configPath);
                 // Crear archivo de configuración por defecto
-                configData = new JsonObject();
-                generateApiKey();
-                saveConfig();
+                generateApiKey(configData);
+                save = true;
             }
         } catch (Exception e) {
             NeoDiscover.LOGGER.error("Error al cargar configuración desde: " + configPath, e);
             configData = new JsonObject();
-            generateApiKey();
+            generateApiKey(configData);
+        }
+        publish(configData);
+        if (save || skipBackup) {
+            // La API key nueva tiene que estar en disco antes de darla por buena
+            writeConfig();
+        }
+    }
+
+    // Si el archivo está dañado (p. ej. editado a mano) se recurre a la copia de seguridad antes
+    // de generar una configuración nueva y perder la API key
+    private JsonObject parseOrBackup(String content) throws IOException {
+        Path backupPath = backupPath();
+        try {
+            JsonObject parsed = gson.fromJson(content, JsonObject.class);
+            if (parsed != null || !Files.exists(backupPath)) {
+                return parsed;
+            }
+        } catch (com.google.gson.JsonSyntaxException e) {
+            if (!Files.exists(backupPath)) {
+                throw e;
+            }
         }
+        NeoDiscover.LOGGER.warn("El archivo de configuración está vacío o no es JSON válido, usando la copia de seguridad {}", backupPath);
+        JsonObject restored = gson.fromJson(Files.readString(backupPath), JsonObject.class);
+        skipBackup = true;
+        return restored;
     }
 
-    private void generateApiKey() {
+    private static void generateApiKey(JsonObject configData) {
         // Generar una API key aleatoria
-        apiKey = java.util.UUID.randomUUID().toString().replace("-", "");
+        String apiKey = java.util.UUID.randomUUID().toString().replace("-", "");
         configData.addProperty("api_key", apiKey);
         NeoDiscover.LOGGER.info("API Key generada: " + apiKey);
     }
 
+    // Solo desde métodos synchronized: la nueva versión sustituye a la anterior de una vez
+    private void publish(JsonObject configData) {
+        snapshot = new ConfigSnapshot(configData, snapshot.getVersion() + 1);
+    }
+
+    // Programa el guardado de la configuración actual; las llamadas seguidas se agrupan en una
     public void saveConfig() {
+        if (saveScheduled.compareAndSet(false, true)) {
+            try {
+                saver.schedule(() -> {
+                    saveScheduled.set(false);
+                    writeConfig();
+                }, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (java.util.concurrent.RejectedExecutionException e) {
+                saveScheduled.set(false);
+                writeConfig();
+            }
+        }
+    }
+
+    // Guarda ya lo pendiente y espera a que esté en disco; devuelve false si la escritura falla
+    public boolean flush() {
+        return writeConfig();
+    }
+
+    // Al apagar: lo pendiente se escribe y los hilos de escritura y vigilancia terminan
+    public void stop() {
+        stopWatching();
+        saver.shutdown();
+        writeConfig();
+    }
+
+    // Vigila el archivo para aplicar las ediciones a mano sin reiniciar ni releerlo en cada petición
+    public synchronized void startWatching() {
+        stopWatching();
+        watcher = new ConfigFileWatcher(configPath, this::reloadFromDisk);
+        watcher.start();
+    }
+
+    private synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.stop();
+            watcher = null;
+        }
+    }
+
+    // Aplica un cambio del archivo en disco. Si no es JSON válido o le falta la api_key se ignora y
+    // sigue vigente la última configuración buena
+    void reloadFromDisk() {
+        Path path = configPath;
+        JsonObject loaded;
+        try {
+            loaded = gson.fromJson(Files.readString(path), JsonObject.class);
+        } catch (com.google.gson.JsonSyntaxException e) {
+            NeoDiscover.LOGGER.warn("Cambio en {} ignorado, no es JSON válido: {}. Se mantiene la configuración anterior", path, e.getMessage());
+            return;
+        } catch (IOException e) {
+            // Borrado o a medio sustituir: el evento del archivo nuevo llegará después
+            Diagnostics.log("No se pudo leer {} tras un cambio: {}", path, e.getMessage());
+            return;
+        }
+        if (loaded == null) {
+            NeoDiscover.LOGGER.warn("Cambio en {} ignorado: el archivo está vacío. Se mantiene la configuración anterior", path);
+            return;
+        }
+        com.google.gson.JsonElement key = loaded.get("api_key");
+        if (key == null || !key.isJsonPrimitive() || key.getAsString().isEmpty()) {
+            NeoDiscover.LOGGER.warn("Cambio en {} ignorado: falta api_key. Se mantiene la configuración anterior", path);
+            return;
+        }
+        synchronized (this) {
+            ConfigSnapshot written = lastWritten;
+            // Nuestra propia escritura (o un guardado sin cambios) no es una edición
+            if (snapshot.sameAs(loaded) || (written != null && written.sameAs(loaded))) {
+                return;
+            }
+            publish(loaded);
+            // Lo publicado ya es lo que hay en disco
+            synchronized (writeLock) {
+                persistedVersion = Math.max(persistedVersion, snapshot.getVersion());
+                lastWritten = snapshot;
+            }
+        }
+        if (metrics != null) {
+            metrics.recordConfigLoad();
+        }
+        NeoDiscover.LOGGER.info("Configuración recargada desde {}", path);
+        notifyChangeListeners();
+    }
+
+    // Escritura atómica: archivo temporal con fsync, copia de seguridad del anterior (.bak) y
+    // rename sobre el definitivo. Un corte a mitad deja siempre el archivo viejo o el nuevo entero.
+    private boolean writeConfig() {
+        synchronized (writeLock) {
+            return writeConfigLocked();
+        }
+    }
+
+    private boolean writeConfigLocked() {
+        ConfigSnapshot current = snapshot;
+        if (current.getVersion() <= persistedVersion) {
+            return true;
+        }
+        Path target = configPath;
         try {
-            Files.createDirectories(configPath.getParent());
-            Files.writeString(configPath, gson.toJson(configData));
+            Path folder = target.toAbsolutePath().getParent();
+            Files.createDirectories(folder);
+            Path temp = target.resolveSibling(CONFIG_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(current.serialize(gson).getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            if (Files.exists(target) && !skipBackup) {
+                Files.copy(target, backupPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            skipBackup = false;
+            // Antes del rename: el watcher puede ver el archivo nuevo en cuanto aparece
+            lastWritten = current;
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            syncDirectory(folder);
+            persistedVersion = current.getVersion();
+            if (metrics != null) {
+                metrics.recordConfigSave(true);
+            }
+            return true;
         } catch (Exception e) {
             NeoDiscover.LOGGER.error("Error al guardar configuración", e);
+            if (metrics != null) {
+                metrics.recordConfigSave(false);
+            }
+            return false;
+        }
+    }
+
+    // fsync de la carpeta para que el rename sobreviva a un corte; no todos los sistemas lo permiten
+    private static void syncDirectory(Path folder) {
+        try (FileChannel channel = FileChannel.open(folder, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Windows no deja abrir carpetas como canal: el rename ya es atómico allí
         }
     }
 
+    private Path backupPath() {
+        return configPath.resolveSibling(CONFIG_FILE + ".bak");
+    }
+
     public boolean validateApiKey(String providedKey) {
+        String apiKey = getApiKey();
         return apiKey != null && apiKey.equals(providedKey);
     }
 
     public String getApiKey() {
-        return apiKey;
+        return snapshot.getString("api_key");
     }
 
     public void updateConfig(JsonObject updates) {
-        // Actualizar configuración con los datos recibidos
+        updateConfig(updates, false);
+    }
+
+    // Con durable = true no vuelve hasta que el cambio está en disco; devuelve false si no se pudo
+    // guardar (el cambio queda publicado igualmente y se reintenta en la siguiente escritura)
+    public boolean updateConfig(JsonObject updates, boolean durable) {
+        synchronized (this) {
+            // Nueva versión a partir de una copia de la actual; los lectores siguen con la anterior
+            JsonObject configData = snapshot.toJson();
+            applyUpdates(configData, updates);
+            publish(configData);
+        }
+        return afterUpdate(durable);
+    }
+
+    // Igual que updateConfig pero sobre la entrada del perfil indicado dentro de "profiles"; si no
+    // existe se crea. Al crear la lista por primera vez se conserva el perfil que había.
+    public boolean updateProfile(String profileId, JsonObject updates, boolean durable) {
+        synchronized (this) {
+            JsonObject configData = snapshot.toJson();
+            com.google.gson.JsonArray profiles;
+            if (configData.has("profiles") && configData.get("profiles").isJsonArray()) {
+                profiles = configData.getAsJsonArray("profiles");
+            } else {
+                profiles = new com.google.gson.JsonArray();
+                String currentId = snapshot.getProfileId();
+                if (!currentId.equals(profileId)) {
+                    JsonObject current = new JsonObject();
+                    current.addProperty("id", currentId);
+                    profiles.add(current);
+                }
+                configData.add("profiles", profiles);
+            }
+            JsonObject entry = null;
+            for (com.google.gson.JsonElement element : profiles) {
+                com.google.gson.JsonElement id = element.isJsonObject() ? element.getAsJsonObject().get("id") : null;
+                if (id != null && id.isJsonPrimitive() && profileId.equals(id.getAsString())) {
+                    entry = element.getAsJsonObject();
+                    break;
+                }
+            }
+            if (entry == null) {
+                entry = new JsonObject();
+                entry.addProperty("id", profileId);
+                profiles.add(entry);
+                NeoDiscover.LOGGER.info("Nuevo perfil en la configuración: {}", profileId);
+            }
+            applyUpdates(entry, updates);
+            // El id de la entrada es el del perfil aunque las actualizaciones traigan otro
+            entry.addProperty("id", profileId);
+            publish(configData);
+        }
+        return afterUpdate(durable);
+    }
+
+    private static void applyUpdates(JsonObject target, JsonObject updates) {
         for (Map.Entry<String, com.google.gson.JsonElement> entry : updates.entrySet()) {
             String key = entry.getKey();
             // No permitir actualizar la API key desde fuera
             if (!"api_key".equals(key)) {
-                configData.add(key, entry.getValue());
+                target.add(key, entry.getValue().deepCopy());
                 NeoDiscover.LOGGER.debug("Configuración actualizada: {} = {}", key, entry.getValue());
             } else {
                 NeoDiscover.LOGGER.warn("Intento de actualizar api_key ignorado (protegido)");
             }
         }
-        saveConfig();
-        NeoDiscover.LOGGER.info("Configuración guardada correctamente");
     }
 
-    public JsonObject getConfigData() {
-        return configData;
+    private boolean afterUpdate(boolean durable) {
+        boolean persisted = true;
+        if (durable) {
+            persisted = flush();
+        } else {
+            saveConfig();
+        }
+        NeoDiscover.LOGGER.info(durable && persisted ? "Configuración guardada correctamente" : "Configuración actualizada");
+        notifyChangeListeners();
+        return persisted;
     }
 
-    public String getConfigValue(String key) {
-        if (configData.has(key)) {
-            com.google.gson.JsonElement element = configData.get(key);
-            if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
-                return element.getAsString();
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    private void notifyChangeListeners() {
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                NeoDiscover.LOGGER.warn("Error en listener de cambios de configuración", e);
             }
-            // Si no es un string, devolver null
-            return null;
         }
-        return null;
+    }
+
+    // Configuración vigente; para leer varios valores coherentes entre sí, usar el mismo snapshot
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public String getConfigValue(String key) {
+        return snapshot.getString(key);
     }
 
     public String getConfigValue(String key, String defaultValue) {
-        String value = getConfigValue(key);
-        return value != null ? value : defaultValue;
+        return snapshot.getString(key, defaultValue);
     }
     
-    public com.google.gson.JsonElement getConfigElement(String key) {
-        if (configData.has(key)) {
-            return configData.get(key);
+    // Almacenamiento direccionado por contenido (blobs por SHA-256 y URLs inmutables)
+    public boolean isContentAddressedStorage() {
+        return snapshot.getBoolean("content_addressed_storage", false);
+    }
+    
+    // Ajustes del servidor HTTP dentro del objeto "http" de la configuración
+    public boolean getHttpFlag(String key, boolean defaultValue) {
+        return snapshot.getHttpFlag(key, defaultValue);
+    }
+
+    public long getHttpSetting(String key, long defaultValue) {
+        return snapshot.getHttpSetting(key, defaultValue);
+    }
+
+    public List<URI> getPublicIpProviders() {
+        // Lista opcional "public_ip_providers" para sustituir los servicios por defecto
+        com.google.gson.JsonElement element = getConfigElement("public_ip_providers");
+        if (element != null && element.isJsonArray()) {
+            List<String> urls = new ArrayList<>();
+            for (com.google.gson.JsonElement url : element.getAsJsonArray()) {
+                if (url.isJsonPrimitive()) {
+                    urls.add(url.getAsString());
+                }
+            }
+            return PublicIpResolver.parseProviders(urls);
         }
-        return null;
+        return PublicIpResolver.DEFAULT_PROVIDERS;
+    }
+    
+    // Copia del valor: modificarla no afecta a la configuración
+    public com.google.gson.JsonElement getConfigElement(String key) {
+        return snapshot.getElement(key);
     }
 }
 
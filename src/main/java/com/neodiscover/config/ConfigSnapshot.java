@@ -0,0 +1,196 @@
+package com.neodiscover.config;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.neodiscover.NeoDiscover;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Versión inmutable de la configuración. ConfigManager publica una nueva en cada carga o
+ * actualización; los lectores usan la que tengan a mano sin locks y nunca ven un cambio a medias.
+ *
+ * El JSON interno no sale de aquí: getElement y toJson devuelven copias, así que quien las
+ * modifique (p. ej. al añadir URLs a los shaders del perfil) no toca la configuración publicada.
+ *
+ * Con una lista "profiles" (objetos con "id") el servidor ofrece varios perfiles; cada uno hereda
+ * las claves de la raíz y sobrescribe las suyas (ver {@link #forProfile(String)}). Sin ella hay un
+ * único perfil construido con la raíz.
+ */
+public final class ConfigSnapshot {
+    static final ConfigSnapshot EMPTY = new ConfigSnapshot(new JsonObject(), 0);
+    static final String DEFAULT_PROFILE_ID = "mi-servidor-neoforge";
+    // Claves de la raíz que no pasan a los perfiles: "mods" solo tiene sentido dentro de un perfil
+    // (en la raíz puede quedar de un profile_json antiguo) y el resto no afecta al perfil
+    private static final String[] NOT_INHERITED = {"profiles", "mods", "api_key", "http"};
+
+    private final JsonObject data;
+    private final long version;
+    // Calculada la primera vez que se pide
+    private volatile List<String> profileIds;
+
+    // data pasa a ser propiedad del snapshot: quien lo construye no debe volver a tocarlo
+    ConfigSnapshot(JsonObject data, long version) {
+        this.data = data;
+        this.version = version;
+    }
+
+    // Crece en uno con cada configuración publicada
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean has(String key) {
+        return data.has(key);
+    }
+
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(data.keySet());
+    }
+
+    // Solo valores de texto; cualquier otro tipo cuenta como ausente
+    public String getString(String key) {
+        JsonElement element = data.get(key);
+        if (element != null && element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
+            return element.getAsString();
+        }
+        return null;
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = getString(key);
+        return value != null ? value : defaultValue;
+    }
+
+    // Copia del valor (o null), libre de modificar
+    public JsonElement getElement(String key) {
+        JsonElement element = data.get(key);
+        return element != null ? element.deepCopy() : null;
+    }
+
+    // Se acepta tanto true como "true"
+    public boolean getBoolean(String key, boolean defaultValue) {
+        JsonElement element = data.get(key);
+        if (element != null && element.isJsonPrimitive()) {
+            return Boolean.parseBoolean(element.getAsString());
+        }
+        return defaultValue;
+    }
+
+    // Ajustes del servidor HTTP dentro del objeto "http"
+    public boolean getHttpFlag(String key, boolean defaultValue) {
+        JsonElement value = httpValue(key);
+        if (value != null && value.isJsonPrimitive()) {
+            return Boolean.parseBoolean(value.getAsString());
+        }
+        return defaultValue;
+    }
+
+    public long getHttpSetting(String key, long defaultValue) {
+        JsonElement value = httpValue(key);
+        if (value != null && value.isJsonPrimitive()) {
+            try {
+                return value.getAsLong();
+            } catch (NumberFormatException e) {
+                NeoDiscover.LOGGER.warn("Valor inválido para http.{}: {}", key, value);
+            }
+        }
+        return defaultValue;
+    }
+
+    private JsonElement httpValue(String key) {
+        JsonElement http = data.get("http");
+        return http != null && http.isJsonObject() ? http.getAsJsonObject().get(key) : null;
+    }
+
+    // Id del perfil descrito por este snapshot: "id", "profile_id" o el valor por defecto
+    public String getProfileId() {
+        String id = getString("id");
+        if (id == null || id.isEmpty()) {
+            id = getString("profile_id", DEFAULT_PROFILE_ID);
+        }
+        return id;
+    }
+
+    // Ids de los perfiles que ofrece el servidor, en el orden de la configuración
+    public List<String> getProfileIds() {
+        List<String> ids = profileIds;
+        if (ids == null) {
+            List<String> found = new ArrayList<>();
+            for (JsonObject entry : profileEntries()) {
+                String id = entry.get("id").getAsString();
+                if (!found.contains(id)) {
+                    found.add(id);
+                }
+            }
+            if (found.isEmpty()) {
+                found.add(getProfileId());
+            }
+            ids = Collections.unmodifiableList(found);
+            profileIds = ids;
+        }
+        return ids;
+    }
+
+    // Configuración efectiva de un perfil: la raíz con las claves de su entrada encima. Devuelve
+    // null si el perfil no existe. Lleva la misma versión que este snapshot.
+    public ConfigSnapshot forProfile(String profileId) {
+        if (!getProfileIds().contains(profileId)) {
+            return null;
+        }
+        JsonObject merged = data.deepCopy();
+        for (String key : NOT_INHERITED) {
+            merged.remove(key);
+        }
+        for (JsonObject entry : profileEntries()) {
+            if (entry.get("id").getAsString().equals(profileId)) {
+                for (Map.Entry<String, JsonElement> item : entry.entrySet()) {
+                    merged.add(item.getKey(), item.getValue().deepCopy());
+                }
+                break;
+            }
+        }
+        return new ConfigSnapshot(merged, version);
+    }
+
+    // Entradas válidas de "profiles": objetos con un "id" de texto no vacío
+    private List<JsonObject> profileEntries() {
+        List<JsonObject> entries = new ArrayList<>();
+        JsonElement profiles = data.get("profiles");
+        if (profiles != null && profiles.isJsonArray()) {
+            for (JsonElement element : profiles.getAsJsonArray()) {
+                if (element.isJsonObject()) {
+                    JsonElement id = element.getAsJsonObject().get("id");
+                    if (id != null && id.isJsonPrimitive() && id.getAsJsonPrimitive().isString() && !id.getAsString().isEmpty()) {
+                        entries.add(element.getAsJsonObject());
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    // Copia completa, base para construir la siguiente versión
+    public JsonObject toJson() {
+        return data.deepCopy();
+    }
+
+    // Mismo contenido que el JSON indicado (comparación profunda)
+    boolean sameAs(JsonObject other) {
+        return data.equals(other);
+    }
+
+    // Mismo contenido que otro snapshot, sin importar la versión
+    public boolean sameAs(ConfigSnapshot other) {
+        return other != null && data.equals(other.data);
+    }
+
+    String serialize(Gson gson) {
+        return gson.toJson(data);
+    }
+}
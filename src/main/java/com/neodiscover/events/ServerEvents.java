@@ -2,7 +2,11 @@ package com.neodiscover.events;
 
 import com.neodiscover.NeoDiscover;
 import com.neodiscover.config.ConfigManager;
+import com.neodiscover.server.ContentStore;
+import com.neodiscover.server.FileHashCache;
 import com.neodiscover.server.FileManager;
+import com.neodiscover.server.ModMetadataIndex;
+import com.neodiscover.server.ProfileCache;
 import com.neodiscover.server.ServerInfoCollector;
 import net.minecraft.server.MinecraftServer;
 import net.neoforged.bus.api.SubscribeEvent;
@@ -14,6 +18,10 @@ public class ServerEvents {
     private static ServerInfoCollector infoCollector;
     private static ConfigManager configManager;
     private static FileManager fileManager;
+    private static ProfileCache profileCache;
+    private static FileHashCache fileHashCache;
+    private static ContentStore contentStore;
+    private static ModMetadataIndex modMetadataIndex;
 
     public static void setInfoCollector(ServerInfoCollector collector) {
         infoCollector = collector;
@@ -27,6 +35,22 @@ public class ServerEvents {
         fileManager = manager;
     }
 
+    public static void setProfileCache(ProfileCache cache) {
+        profileCache = cache;
+    }
+
+    public static void setFileHashCache(FileHashCache cache) {
+        fileHashCache = cache;
+    }
+
+    public static void setContentStore(ContentStore store) {
+        contentStore = store;
+    }
+
+    public static void setModMetadataIndex(ModMetadataIndex index) {
+        modMetadataIndex = index;
+    }
+
     public static void register() {
         NeoForge.EVENT_BUS.register(ServerEvents.class);
     }
@@ -44,6 +68,20 @@ public class ServerEvents {
         if (fileManager != null) {
             fileManager.setServer(server);
         }
+        // La carpeta downloads puede haber cambiado: cargar su caché y hashear lo que falte
+        if (fileHashCache != null) {
+            fileHashCache.start();
+        }
+        if (contentStore != null) {
+            contentStore.refresh();
+        }
+        if (modMetadataIndex != null) {
+            modMetadataIndex.start();
+        }
+        // El MOTD, las versiones y las rutas pueden haber cambiado
+        if (profileCache != null) {
+            profileCache.invalidate();
+        }
     }
 
     @SubscribeEvent
@@ -54,6 +92,11 @@ public class ServerEvents {
         }
         if (configManager != null) {
             configManager.setServer(null);
+            // No perder cambios de configuración que aún estén pendientes de escribir
+            configManager.flush();
+        }
+        if (profileCache != null) {
+            profileCache.invalidate();
         }
     }
 }
@@ -0,0 +1,265 @@
+package com.neodiscover.server;
+
+import com.neodiscover.NeoDiscover;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log de acceso del servidor HTTP en logs/neodiscover-access.log: una línea JSON por petición
+ * (fecha, cliente, método, ruta, estado, bytes enviados, duración y user-agent).
+ *
+ * Las peticiones solo encolan la línea en un buffer circular acotado; un hilo aparte la escribe en
+ * lotes y rota el archivo por tamaño. Si el buffer se llena las líneas se descartan y se cuentan,
+ * nunca se bloquea una petición por el disco.
+ */
+final class AccessLog {
+    static final long DEFAULT_MAX_BYTES = 10L * 1024 * 1024;
+    static final long DEFAULT_MAX_FILES = 5;
+    private static final int CAPACITY = 8192;
+    private static final int BATCH_SIZE = 512;
+
+    private final Path file;
+    private final BlockingQueue<String> buffer = new ArrayBlockingQueue<>(CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean enabled = true;
+    private volatile long maxBytes = DEFAULT_MAX_BYTES;
+    private volatile int maxFiles = (int) DEFAULT_MAX_FILES;
+    private Thread writer;
+
+    AccessLog(Path file) {
+        this.file = file;
+    }
+
+    void configure(boolean enabled, long maxBytes, long maxFiles) {
+        this.enabled = enabled;
+        this.maxBytes = Math.max(64 * 1024, maxBytes);
+        this.maxFiles = (int) Math.max(1, Math.min(100, maxFiles));
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    void start() {
+        writer = new Thread(this::writeLoop, "NeoDiscover-AccessLog");
+        writer.setDaemon(true);
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.start();
+    }
+
+    void stop() {
+        if (writer != null) {
+            writer.interrupt();
+            try {
+                writer.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+    }
+
+    // Filtro que mide y registra cada petición; también decide el muestreo del log de diagnóstico
+    Filter filter() {
+        return new Filter() {
+            @Override
+            public String description() {
+                return "Log de acceso";
+            }
+
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                long start = System.nanoTime();
+                CountingOutputStream counter = null;
+                if (enabled) {
+                    counter = new CountingOutputStream(exchange.getResponseBody());
+                    exchange.setStreams(null, counter);
+                }
+                Diagnostics.begin();
+                try {
+                    chain.doFilter(exchange);
+                } finally {
+                    Diagnostics.end();
+                    if (counter != null) {
+                        record(exchange, counter.count, System.nanoTime() - start);
+                    }
+                }
+            }
+        };
+    }
+
+    private void record(HttpExchange exchange, long bytes, long elapsedNanos) {
+        StringBuilder line = new StringBuilder(256);
+        line.append("{\"ts\":\"").append(Instant.now()).append('"');
+        line.append(",\"client\":\"")
+            .append(exchange.getRemoteAddress() != null ? exchange.getRemoteAddress().getAddress().getHostAddress() : "unknown")
+            .append('"');
+        line.append(",\"method\":");
+        appendString(line, exchange.getRequestMethod());
+        line.append(",\"path\":");
+        appendString(line, exchange.getRequestURI().getRawPath());
+        line.append(",\"status\":").append(exchange.getResponseCode());
+        line.append(",\"bytes\":").append(bytes);
+        line.append(",\"duration_ms\":").append(TimeUnit.NANOSECONDS.toMicros(elapsedNanos) / 1000.0);
+        String userAgent = exchange.getRequestHeaders().getFirst("User-Agent");
+        if (userAgent != null) {
+            line.append(",\"user_agent\":");
+            appendString(line, userAgent);
+        }
+        line.append("}\n");
+        if (!buffer.offer(line.toString())) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    private void writeLoop() {
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        BufferedWriter out = null;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                String first;
+                try {
+                    first = buffer.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, BATCH_SIZE - 1);
+                try {
+                    if (out == null) {
+                        Files.createDirectories(file.getParent());
+                        out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                    }
+                    for (String line : batch) {
+                        out.write(line);
+                    }
+                    out.flush();
+                    // Tamaño real en bytes (las líneas pueden llevar caracteres no ASCII)
+                    if (Files.size(file) >= maxBytes) {
+                        out.close();
+                        out = null;
+                        rotate();
+                    }
+                } catch (IOException e) {
+                    NeoDiscover.LOGGER.warn("No se pudo escribir el log de acceso: {}", e.getMessage());
+                    closeQuietly(out);
+                    out = null;
+                }
+                batch.clear();
+            }
+            // Escribir lo que quede antes de salir
+            buffer.drainTo(batch);
+            if (!batch.isEmpty()) {
+                if (out == null) {
+                    Files.createDirectories(file.getParent());
+                    out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+                for (String line : batch) {
+                    out.write(line);
+                }
+            }
+        } catch (IOException e) {
+            NeoDiscover.LOGGER.warn("No se pudo escribir el log de acceso: {}", e.getMessage());
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    // access.log -> access.log.1 -> ... -> access.log.N (el más antiguo se borra)
+    private void rotate() throws IOException {
+        int files = maxFiles;
+        Files.deleteIfExists(rotated(files));
+        for (int i = files - 1; i >= 1; i--) {
+            Path source = rotated(i);
+            if (Files.exists(source)) {
+                Files.move(source, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private static void closeQuietly(BufferedWriter out) {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // Cuenta los bytes del cuerpo de la respuesta que llegan realmente al socket
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.neodiscover.server;
+
+import com.neodiscover.NeoDiscover;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Control de admisión del servidor HTTP: limita las peticiones en curso y las que esperan turno.
+ *
+ * Cada petición ocupa un permiso mientras se ejecuta su handler. Si no hay permiso libre espera en
+ * una cola acotada durante un tiempo máximo; si la cola está llena o el tiempo se agota se responde
+ * 503 con Retry-After al momento, sin tocar disco. Los límites se pueden cambiar en caliente.
+ */
+final class AdmissionFilter extends Filter {
+    static final int DEFAULT_MAX_CONCURRENT = 64;
+    static final int DEFAULT_MAX_QUEUED = 128;
+    static final long DEFAULT_QUEUE_TIMEOUT_MS = 2000;
+    static final long DEFAULT_RETRY_AFTER_SECONDS = 2;
+
+    // Marca las peticiones que el pool de hilos ya no puede aceptar: se rechazan sin esperar
+    private static final ThreadLocal<Boolean> SATURATED = new ThreadLocal<>();
+
+    private final ResizableSemaphore permits = new ResizableSemaphore(DEFAULT_MAX_CONCURRENT);
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+    private volatile int maxQueued = DEFAULT_MAX_QUEUED;
+    private volatile long queueTimeoutMs = DEFAULT_QUEUE_TIMEOUT_MS;
+    private volatile long retryAfterSeconds = DEFAULT_RETRY_AFTER_SECONDS;
+
+    // Semaphore con reducePermits accesible para poder bajar el límite sin esperar
+    private static final class ResizableSemaphore extends Semaphore {
+        ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        void shrink(int reduction) {
+            reducePermits(reduction);
+        }
+    }
+
+    synchronized void configure(int maxConcurrent, int maxQueued, long queueTimeoutMs, long retryAfterSeconds) {
+        int concurrent = Math.max(1, maxConcurrent);
+        int delta = concurrent - this.maxConcurrent;
+        if (delta > 0) {
+            permits.release(delta);
+        } else if (delta < 0) {
+            // Las peticiones en curso terminan normalmente; simplemente se liberan menos permisos
+            permits.shrink(-delta);
+        }
+        this.maxConcurrent = concurrent;
+        this.maxQueued = Math.max(0, maxQueued);
+        this.queueTimeoutMs = Math.max(0, queueTimeoutMs);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    // Ejecuta la petición en el hilo actual marcándola como rechazada (pool de hilos lleno)
+    static void runSaturated(Runnable exchangeTask) {
+        SATURATED.set(Boolean.TRUE);
+        try {
+            exchangeTask.run();
+        } finally {
+            SATURATED.remove();
+        }
+    }
+
+    int getActive() {
+        return active.get();
+    }
+
+    int getQueued() {
+        return queued.get();
+    }
+
+    // Hilos necesarios para atender el límite y la cola a la vez
+    int getThreadBudget() {
+        return maxConcurrent + maxQueued;
+    }
+
+    @Override
+    public String description() {
+        return "Límite de peticiones concurrentes con cola acotada";
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        if (SATURATED.get() != null) {
+            reject(exchange, "sin hilos libres");
+            return;
+        }
+        if (!permits.tryAcquire()) {
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                reject(exchange, "cola llena");
+                return;
+            }
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            } finally {
+                queued.decrementAndGet();
+            }
+            if (!acquired) {
+                reject(exchange, "tiempo de espera agotado");
+                return;
+            }
+        }
+        active.incrementAndGet();
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            active.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    private void reject(HttpExchange exchange, String reason) throws IOException {
+        NeoDiscover.LOGGER.debug("Petición rechazada por sobrecarga ({}): {}", reason, exchange.getRequestURI());
+        exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfterSeconds));
+        HttpUtil.sendBody(exchange, 503, "Service Unavailable".getBytes(StandardCharsets.UTF_8), "text/plain");
+    }
+}
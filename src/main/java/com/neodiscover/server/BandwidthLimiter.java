@@ -0,0 +1,124 @@
+package com.neodiscover.server;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limitación del ancho de banda de las descargas: un presupuesto global en bytes/s compartido por
+ * todas las transferencias y un máximo por conexión.
+ *
+ * Antes de enviar cada bloque la transferencia reserva su hueco en el tiempo (global y propio) y
+ * duerme hasta él. Como cada una reserva un solo bloque cada vez, las transferencias activas se
+ * turnan bloque a bloque y se reparten el presupuesto global a partes iguales. Los límites se
+ * pueden cambiar en caliente; 0 desactiva el límite correspondiente.
+ */
+final class BandwidthLimiter {
+    // Crédito que se puede acumular en reposo: permite arrancar sin esperar tras un periodo inactivo
+    private static final long BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MIN_CHUNK_SIZE = 8 * 1024;
+
+    private final AtomicLong globalNext = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicInteger activeTransfers = new AtomicInteger();
+    private volatile long globalBytesPerSecond;
+    private volatile long connectionBytesPerSecond;
+
+    synchronized void configure(long globalBytesPerSecond, long connectionBytesPerSecond) {
+        long global = Math.max(0, globalBytesPerSecond);
+        long connection = Math.max(0, connectionBytesPerSecond);
+        if (global != this.globalBytesPerSecond) {
+            // Las reservas hechas con el límite anterior no deben retrasar a las nuevas
+            globalNext.set(Long.MIN_VALUE);
+        }
+        this.globalBytesPerSecond = global;
+        this.connectionBytesPerSecond = connection;
+    }
+
+    int getActiveTransfers() {
+        return activeTransfers.get();
+    }
+
+    Transfer newTransfer() {
+        return new Transfer();
+    }
+
+    // Reserva el tiempo de envío de bytes a ese ritmo y devuelve cuánto hay que esperar hasta el hueco
+    private static long reserve(AtomicLong next, long bytes, long bytesPerSecond, long now) {
+        long duration = bytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+        while (true) {
+            long current = next.get();
+            long start = Math.max(current, now - BURST_NANOS);
+            if (next.compareAndSet(current, start + duration)) {
+                return start - now;
+            }
+        }
+    }
+
+    /**
+     * Estado de una descarga en curso. Se cierra al terminar para dejar de contar como activa.
+     */
+    final class Transfer implements AutoCloseable {
+        private final AtomicLong next = new AtomicLong(Long.MIN_VALUE);
+        private boolean closed;
+
+        private Transfer() {
+            activeTransfers.incrementAndGet();
+        }
+
+        // Bloques más pequeños con límites bajos para que el ritmo sea uniforme
+        int chunkSize(int maxChunkSize) {
+            long rate = effectiveRate();
+            if (rate <= 0) {
+                return maxChunkSize;
+            }
+            return (int) Math.max(MIN_CHUNK_SIZE, Math.min(maxChunkSize, rate / 20));
+        }
+
+        // Espera hasta que se puedan enviar bytes sin superar ningún límite
+        void pace(int bytes) throws IOException {
+            long global = globalBytesPerSecond;
+            long connection = connectionBytesPerSecond;
+            if (global <= 0 && connection <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            long wait = 0;
+            if (global > 0) {
+                wait = reserve(globalNext, bytes, global, now);
+            }
+            if (connection > 0) {
+                wait = Math.max(wait, reserve(next, bytes, connection, now));
+            }
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Descarga interrumpida");
+                }
+            }
+        }
+
+        private long effectiveRate() {
+            long global = globalBytesPerSecond;
+            long connection = connectionBytesPerSecond;
+            if (global > 0) {
+                global = global / Math.max(1, activeTransfers.get());
+            }
+            if (global > 0 && connection > 0) {
+                return Math.min(global, connection);
+            }
+            return Math.max(global, connection);
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                activeTransfers.decrementAndGet();
+            }
+        }
+    }
+}
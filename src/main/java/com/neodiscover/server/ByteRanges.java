@@ -0,0 +1,134 @@
+package com.neodiscover.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Parser de la cabecera Range (RFC 7233) y cálculo de las respuestas multipart/byteranges.
+ */
+final class ByteRanges {
+    // Límite de rangos por petición para evitar respuestas patológicas
+    static final int MAX_RANGES = 32;
+
+    private ByteRanges() {
+    }
+
+    static final class Range {
+        final long start;
+        final long end; // inclusivo
+
+        Range(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        long length() {
+            return end - start + 1;
+        }
+
+        String contentRange(long size) {
+            return "bytes " + start + "-" + end + "/" + size;
+        }
+    }
+
+    // Devuelve null si la cabecera debe ignorarse (sintaxis inválida, otra unidad o demasiados
+    // rangos) y una lista vacía si ningún rango es satisfacible (416)
+    static List<Range> parse(String header, long size) {
+        if (header == null) {
+            return null;
+        }
+        String value = header.trim();
+        if (!value.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+
+        String[] specs = value.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<Range> ranges = new ArrayList<>();
+        for (String rawSpec : specs) {
+            String spec = rawSpec.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            try {
+                if (first.isEmpty()) {
+                    // Sufijo: los últimos N bytes
+                    if (last.isEmpty()) {
+                        return null;
+                    }
+                    long suffix = Long.parseLong(last);
+                    if (suffix < 0) {
+                        return null;
+                    }
+                    if (suffix > 0 && size > 0) {
+                        ranges.add(new Range(Math.max(0, size - suffix), size - 1));
+                    }
+                } else {
+                    long start = Long.parseLong(first);
+                    long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                    if (start < 0 || end < start) {
+                        return null;
+                    }
+                    if (start < size) {
+                        ranges.add(new Range(start, Math.min(end, size - 1)));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return coalesce(ranges);
+    }
+
+    // Une rangos solapados o contiguos, como permite la RFC
+    private static List<Range> coalesce(List<Range> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        List<Range> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(r -> r.start));
+        List<Range> merged = new ArrayList<>();
+        Range current = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            Range next = sorted.get(i);
+            if (next.start <= current.end + 1) {
+                current = new Range(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    static byte[] partHeader(String boundary, String contentType, Range range, long size) {
+        String header = "\r\n--" + boundary + "\r\n"
+            + "Content-Type: " + contentType + "\r\n"
+            + "Content-Range: " + range.contentRange(size) + "\r\n\r\n";
+        return header.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static byte[] closingDelimiter(String boundary) {
+        return ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static long multipartLength(List<Range> ranges, String boundary, String contentType, long size) {
+        long length = closingDelimiter(boundary).length;
+        for (Range range : ranges) {
+            length += partHeader(boundary, contentType, range, size).length + range.length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,462 @@
+package com.neodiscover.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.neodiscover.NeoDiscover;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Subidas por trozos reanudables para archivos grandes.
+ *
+ * Cada sesión vive en downloads/.uploads/{id}/ con un session.json (estado y trozos recibidos) y
+ * un data.part preasignado donde cada trozo se escribe en su offset. El estado está en disco, así
+ * que las sesiones sobreviven a un reinicio; las abandonadas se eliminan periódicamente.
+ */
+public class ChunkedUploadManager {
+    private static final String UPLOADS_FOLDER = ".uploads";
+    private static final String SESSION_FILE = "session.json";
+    private static final String DATA_FILE = "data.part";
+    private static final long DEFAULT_CHUNK_SIZE = 8L * 1024 * 1024;
+    private static final long MAX_CHUNK_SIZE = 64L * 1024 * 1024;
+    private static final long DEFAULT_SESSION_TTL_SECONDS = 24 * 60 * 60;
+    private static final Pattern SESSION_ID = Pattern.compile("^[a-f0-9]{32}$");
+
+    private final FileManager fileManager;
+    private final Gson gson = new Gson();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private long maxUploadBytes;
+    private long sessionTtlMillis = DEFAULT_SESSION_TTL_SECONDS * 1000;
+    private ScheduledExecutorService cleaner;
+    private Metrics metrics;
+
+    public ChunkedUploadManager(FileManager fileManager, long maxUploadBytes) {
+        this.fileManager = fileManager;
+        this.maxUploadBytes = maxUploadBytes;
+    }
+
+    public void setLimits(long maxUploadBytes, long sessionTtlSeconds) {
+        this.maxUploadBytes = maxUploadBytes;
+        this.sessionTtlMillis = sessionTtlSeconds * 1000;
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void start() {
+        cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "NeoDiscover-UploadCleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleaner.scheduleWithFixedDelay(this::removeExpiredSessions, 1, 10, TimeUnit.MINUTES);
+    }
+
+    public void stop() {
+        if (cleaner != null) {
+            cleaner.shutdownNow();
+            cleaner = null;
+        }
+    }
+
+    static final class UploadException extends Exception {
+        final int statusCode;
+
+        UploadException(int statusCode, String message) {
+            super(message);
+            this.statusCode = statusCode;
+        }
+    }
+
+    private static final class Session {
+        final String id;
+        final String type;
+        final String name;
+        final long size;
+        final long chunkSize;
+        final String sha256;
+        final long created;
+        final BitSet received;
+        volatile long lastActivity;
+        boolean committed;
+        boolean deleted;
+        // Escrituras en data.part (lectura: los trozos van en paralelo) frente a commit, cancelación
+        // y caducidad (escritura): nadie escribe mientras se hashea, publica o borra el archivo
+        final ReentrantReadWriteLock dataLock = new ReentrantReadWriteLock();
+        // ReentrantLock y no synchronized: con hilos virtuales, un monitor retenido durante E/S
+        // (persistir, hashear al confirmar) bloquearía el hilo del sistema que lo ejecuta
+        final ReentrantLock lock = new ReentrantLock();
+
+        Session(String id, String type, String name, long size, long chunkSize, String sha256,
+                long created, BitSet received, long lastActivity) {
+            this.id = id;
+            this.type = type;
+            this.name = name;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.sha256 = sha256;
+            this.created = created;
+            this.received = received;
+            this.lastActivity = lastActivity;
+        }
+
+        int chunkCount() {
+            return (int) ((size + chunkSize - 1) / chunkSize);
+        }
+
+        long chunkLength(int index) {
+            return Math.min(chunkSize, size - index * chunkSize);
+        }
+    }
+
+    public JsonObject createSession(JsonObject request) throws UploadException, IOException {
+        String type = request.has("type") ? request.get("type").getAsString() : null;
+        String name = request.has("name") ? request.get("name").getAsString() : null;
+        if (!"mods".equals(type) && !"shaders".equals(type) && !"resourcepacks".equals(type)) {
+            throw new UploadException(400, "Tipo inválido: " + type);
+        }
+        if (!FileManager.isValidFileName(name)) {
+            throw new UploadException(400, "Nombre de archivo inválido: " + name);
+        }
+        if (!request.has("size")) {
+            throw new UploadException(400, "size requerido");
+        }
+        long size = request.get("size").getAsLong();
+        if (size <= 0) {
+            throw new UploadException(400, "size debe ser mayor que 0");
+        }
+        if (size > maxUploadBytes) {
+            throw new UploadException(413, "Archivo demasiado grande (máximo " + maxUploadBytes + " bytes)");
+        }
+        long chunkSize = request.has("chunk_size") ? request.get("chunk_size").getAsLong() : DEFAULT_CHUNK_SIZE;
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new UploadException(400, "chunk_size debe estar entre 1 y " + MAX_CHUNK_SIZE);
+        }
+        if ((size + chunkSize - 1) / chunkSize > Integer.MAX_VALUE) {
+            throw new UploadException(400, "chunk_size demasiado pequeño para el tamaño del archivo");
+        }
+        String sha256 = request.has("sha256") ? request.get("sha256").getAsString().toLowerCase() : null;
+
+        String id = UUID.randomUUID().toString().replace("-", "");
+        long now = System.currentTimeMillis();
+        Session session = new Session(id, type, name, size, chunkSize, sha256, now, new BitSet(), now);
+
+        Path sessionDir = sessionDir(id);
+        Files.createDirectories(sessionDir);
+        // Preasignar el archivo para que los trozos puedan llegar en cualquier orden
+        try (FileChannel channel = FileChannel.open(sessionDir.resolve(DATA_FILE),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+        }
+        persist(session);
+        sessions.put(id, session);
+
+        NeoDiscover.LOGGER.info("Sesión de subida creada: {} ({} {}, {} bytes, trozos de {})", id, type, name, size, chunkSize);
+        return describe(session);
+    }
+
+    public JsonObject getStatus(String id) throws UploadException, IOException {
+        return describe(requireSession(id));
+    }
+
+    // Escribe un trozo en su offset. Los trozos pueden llegar en paralelo y en cualquier orden
+    public JsonObject writeChunk(String id, long offset, long contentLength, InputStream body) throws UploadException, IOException {
+        Session session = requireSession(id);
+        if (offset < 0 || offset % session.chunkSize != 0 || offset >= session.size) {
+            throw new UploadException(400, "offset debe ser múltiplo de chunk_size y menor que size");
+        }
+        int index = (int) (offset / session.chunkSize);
+        long expected = session.chunkLength(index);
+        if (contentLength >= 0 && contentLength != expected) {
+            throw new UploadException(400, "El trozo " + index + " debe medir " + expected + " bytes");
+        }
+
+        session.dataLock.readLock().lock();
+        try {
+            // Antes de abrir data.part: tras el commit el canal seguiría al archivo ya publicado
+            requireOpen(session);
+            long written = 0;
+            byte[] chunk = new byte[FileTransfer.CHUNK_SIZE];
+            try (FileChannel channel = FileChannel.open(sessionDir(id).resolve(DATA_FILE), StandardOpenOption.WRITE)) {
+                int read;
+                while ((read = body.read(chunk)) != -1) {
+                    if (written + read > expected) {
+                        throw new UploadException(400, "El trozo " + index + " supera los " + expected + " bytes");
+                    }
+                    ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, read);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer, offset + written + (read - buffer.remaining()));
+                    }
+                    written += read;
+                }
+            }
+            if (written != expected) {
+                throw new UploadException(400, "Trozo " + index + " incompleto: " + written + " de " + expected + " bytes");
+            }
+
+            session.lock.lock();
+            try {
+                session.received.set(index);
+                session.lastActivity = System.currentTimeMillis();
+                persist(session);
+            } finally {
+                session.lock.unlock();
+            }
+        } finally {
+            session.dataLock.readLock().unlock();
+        }
+        return describe(session);
+    }
+
+    public JsonObject commit(String id) throws UploadException, IOException {
+        Session session = requireSession(id);
+        // Espera a que terminen las escrituras en curso y no deja empezar otras
+        session.dataLock.writeLock().lock();
+        session.lock.lock();
+        try {
+            requireOpen(session);
+            int missing = session.chunkCount() - session.received.cardinality();
+            if (missing > 0) {
+                throw new UploadException(409, "Faltan " + missing + " trozo(s) por recibir");
+            }
+            Path data = sessionDir(id).resolve(DATA_FILE);
+            // Una sola lectura: verifica el SHA-256 declarado y deja los hashes en la caché
+            FileHashCache.Entry hashes = FileHashCache.compute(data);
+            if (session.sha256 != null && !hashes.getSha256().equals(session.sha256)) {
+                throw new UploadException(422, "SHA-256 no coincide: esperado " + session.sha256 + ", recibido " + hashes.getSha256());
+            }
+            Path target = fileManager.commitUpload(session.type, session.name, data, hashes.getSha1(), hashes.getSha256(), hashes.getCrc32());
+            session.committed = true;
+            deleteSession(id);
+            if (metrics != null) {
+                // Duración de la sesión completa, desde su creación hasta el commit
+                metrics.recordUpload(Metrics.UPLOAD_CHUNKED, session.size,
+                    TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - session.created)));
+            }
+            NeoDiscover.LOGGER.info("Sesión de subida {} confirmada: {}", id, target);
+        } finally {
+            session.lock.unlock();
+            session.dataLock.writeLock().unlock();
+        }
+
+        JsonObject response = new JsonObject();
+        response.addProperty("status", "ok");
+        response.addProperty("type", session.type);
+        response.addProperty("name", session.name);
+        response.addProperty("size", session.size);
+        response.addProperty("url", fileManager.getTypeUrl(session.type, session.name));
+        return response;
+    }
+
+    public void abort(String id) throws UploadException, IOException {
+        Session session = requireSession(id);
+        session.dataLock.writeLock().lock();
+        try {
+            requireOpen(session);
+            session.deleted = true;
+            deleteSession(id);
+        } finally {
+            session.dataLock.writeLock().unlock();
+        }
+        NeoDiscover.LOGGER.info("Sesión de subida cancelada: {}", id);
+    }
+
+    // Llamar con dataLock tomado: la sesión no puede cerrarse mientras se usa
+    private static void requireOpen(Session session) throws UploadException {
+        if (session.committed) {
+            throw new UploadException(409, "La sesión ya se ha confirmado");
+        }
+        if (session.deleted) {
+            throw new UploadException(404, "Sesión no encontrada");
+        }
+    }
+
+    private Session requireSession(String id) throws UploadException, IOException {
+        if (id == null || !SESSION_ID.matcher(id).matches()) {
+            throw new UploadException(404, "Sesión no encontrada");
+        }
+        Session session = sessions.get(id);
+        if (session == null) {
+            // Sesión creada antes de un reinicio: recuperarla de disco
+            session = load(id);
+            if (session == null) {
+                throw new UploadException(404, "Sesión no encontrada");
+            }
+            Session existing = sessions.putIfAbsent(id, session);
+            if (existing != null) {
+                session = existing;
+            }
+        }
+        return session;
+    }
+
+    private JsonObject describe(Session session) {
+        JsonObject status = new JsonObject();
+        status.addProperty("id", session.id);
+        status.addProperty("type", session.type);
+        status.addProperty("name", session.name);
+        status.addProperty("size", session.size);
+        status.addProperty("chunk_size", session.chunkSize);
+        JsonArray missing = new JsonArray();
+        int received;
+        session.lock.lock();
+        try {
+            received = session.received.cardinality();
+            for (int i = session.received.nextClearBit(0); i < session.chunkCount(); i = session.received.nextClearBit(i + 1)) {
+                missing.add(i);
+            }
+        } finally {
+            session.lock.unlock();
+        }
+        status.addProperty("chunks", session.chunkCount());
+        status.addProperty("received_chunks", received);
+        status.add("missing_chunks", missing);
+        return status;
+    }
+
+    private Path uploadsDir() {
+        return fileManager.getDownloadsPath().resolve(UPLOADS_FOLDER);
+    }
+
+    private Path sessionDir(String id) {
+        return uploadsDir().resolve(id);
+    }
+
+    private void persist(Session session) throws IOException {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", session.id);
+        json.addProperty("type", session.type);
+        json.addProperty("name", session.name);
+        json.addProperty("size", session.size);
+        json.addProperty("chunk_size", session.chunkSize);
+        if (session.sha256 != null) {
+            json.addProperty("sha256", session.sha256);
+        }
+        json.addProperty("created", session.created);
+        json.addProperty("last_activity", session.lastActivity);
+        JsonArray received = new JsonArray();
+        for (long word : session.received.toLongArray()) {
+            received.add(word);
+        }
+        json.add("received", received);
+
+        // Escritura atómica para no dejar un session.json a medias
+        Path file = sessionDir(session.id).resolve(SESSION_FILE);
+        Path temp = file.resolveSibling(SESSION_FILE + ".tmp");
+        Files.writeString(temp, gson.toJson(json), StandardCharsets.UTF_8);
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Session load(String id) {
+        Path file = sessionDir(id).resolve(SESSION_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            JsonObject json = JsonParser.parseString(Files.readString(file, StandardCharsets.UTF_8)).getAsJsonObject();
+            JsonArray receivedJson = json.getAsJsonArray("received");
+            long[] words = new long[receivedJson.size()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = receivedJson.get(i).getAsLong();
+            }
+            return new Session(
+                json.get("id").getAsString(),
+                json.get("type").getAsString(),
+                json.get("name").getAsString(),
+                json.get("size").getAsLong(),
+                json.get("chunk_size").getAsLong(),
+                json.has("sha256") ? json.get("sha256").getAsString() : null,
+                json.get("created").getAsLong(),
+                BitSet.valueOf(words),
+                json.get("last_activity").getAsLong());
+        } catch (Exception e) {
+            NeoDiscover.LOGGER.warn("No se pudo leer la sesión de subida {}", id, e);
+            return null;
+        }
+    }
+
+    private void deleteSession(String id) throws IOException {
+        sessions.remove(id);
+        Path dir = sessionDir(id);
+        if (Files.exists(dir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    void removeExpiredSessions() {
+        Path dir = uploadsDir();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - sessionTtlMillis;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                String id = entry.getFileName().toString();
+                if (!SESSION_ID.matcher(id).matches()) {
+                    continue;
+                }
+                Session session = sessions.get(id);
+                if (session == null) {
+                    // Registrarla para compartir el cerrojo con quien la pida a la vez
+                    Session loaded = load(id);
+                    if (loaded != null) {
+                        Session existing = sessions.putIfAbsent(id, loaded);
+                        session = existing != null ? existing : loaded;
+                    }
+                }
+                // Sin session.json legible se usa la fecha del directorio
+                long lastActivity = session != null ? session.lastActivity : Files.getLastModifiedTime(entry).toMillis();
+                if (lastActivity < cutoff) {
+                    if (session == null) {
+                        deleteSession(id);
+                    } else if (session.dataLock.writeLock().tryLock()) {
+                        // Si no se obtiene hay un trozo escribiéndose: la sesión sigue viva
+                        try {
+                            session.deleted = true;
+                            deleteSession(id);
+                        } finally {
+                            session.dataLock.writeLock().unlock();
+                        }
+                    } else {
+                        continue;
+                    }
+                    NeoDiscover.LOGGER.info("Sesión de subida abandonada eliminada: {}", id);
+                }
+            }
+        } catch (Exception e) {
+            NeoDiscover.LOGGER.warn("Error al limpiar sesiones de subida", e);
+        }
+    }
+}
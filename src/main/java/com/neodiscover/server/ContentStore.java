@@ -0,0 +1,295 @@
+package com.neodiscover.server;
+
+import com.neodiscover.NeoDiscover;
+import com.neodiscover.config.ConfigManager;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Almacén direccionado por contenido (opcional, "content_addressed_storage" en la configuración).
+ *
+ * Cada contenido se guarda una sola vez en downloads/.neodiscover/blobs/{ab}/{sha256} y los
+ * archivos con nombre son enlaces duros a ese blob, de modo que el mismo jar subido con dos
+ * nombres ocupa espacio una vez. Los blobs se sirven en /downloads/blob/{sha256}/{nombre} como
+ * inmutables. Si el sistema de archivos no admite enlaces duros se guarda una copia (sin
+ * deduplicación, pero con URLs inmutables igualmente).
+ */
+public class ContentStore {
+    private static final String BLOBS_FOLDER = ".neodiscover/blobs";
+    private static final Pattern SHA256 = Pattern.compile("[a-f0-9]{64}");
+    // Un blob sin referencias se conserva un día para los clientes que estén a mitad de actualización
+    private static final long UNREFERENCED_GRACE_MS = TimeUnit.HOURS.toMillis(24);
+
+    private final FileManager fileManager;
+    private final ConfigManager configManager;
+    private final FileHashCache fileHashCache;
+    // Tamaño y fecha de cada blob conocido: como los archivos con nombre son enlaces duros, una
+    // edición en sitio (p. ej. por SFTP) modificaría también el blob y se detecta al servirlo
+    private final Map<String, Stamp> knownBlobs = new ConcurrentHashMap<>();
+    private final Map<String, Long> unreferencedSince = new ConcurrentHashMap<>();
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService cleaner;
+    private volatile Path loadedFrom;
+
+    public ContentStore(FileManager fileManager, ConfigManager configManager, FileHashCache fileHashCache) {
+        this.fileManager = fileManager;
+        this.configManager = configManager;
+        this.fileHashCache = fileHashCache;
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "NeoDiscover-BlobCleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        fileHashCache.addHashListener(this::adopt);
+    }
+
+    public boolean isEnabled() {
+        return configManager.isContentAddressedStorage();
+    }
+
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    public void start() {
+        cleaner.scheduleWithFixedDelay(this::collectGarbage, 1, 1, TimeUnit.HOURS);
+        refresh();
+    }
+
+    public void stop() {
+        cleaner.shutdownNow();
+    }
+
+    // Vuelve a cargar los blobs existentes y, si está activado, incorpora los archivos ya hasheados.
+    // Se llama al arrancar, al cambiar la configuración y al cambiar la carpeta downloads
+    public void refresh() {
+        Path downloadsPath = fileManager.getDownloadsPath();
+        if (!downloadsPath.equals(loadedFrom)) {
+            loadedFrom = downloadsPath;
+            knownBlobs.clear();
+            unreferencedSince.clear();
+            forEachBlob(blob -> {
+                Stamp stamp = Stamp.of(blob);
+                if (stamp != null) {
+                    knownBlobs.put(blob.getFileName().toString(), stamp);
+                }
+            });
+        }
+        if (!isEnabled()) {
+            return;
+        }
+        int before = knownBlobs.size();
+        for (DownloadsIndex.FileEntry file : fileManager.getIndex().list()) {
+            FileHashCache.Entry hashes = fileHashCache.get(file);
+            if (hashes != null) {
+                adopt(file.getPath(), hashes);
+            }
+        }
+        if (knownBlobs.size() != before) {
+            NeoDiscover.LOGGER.info("Almacén por contenido: {} blob(s)", knownBlobs.size());
+            notifyChangeListeners();
+        }
+    }
+
+    public boolean hasBlob(String sha256) {
+        return knownBlobs.containsKey(sha256);
+    }
+
+    // Ruta del blob o null si el hash no es válido, no está en el almacén o su contenido ha cambiado
+    public Path getBlob(String sha256) {
+        if (sha256 == null || !SHA256.matcher(sha256).matches()) {
+            return null;
+        }
+        Stamp expected = knownBlobs.get(sha256);
+        if (expected == null) {
+            return null;
+        }
+        Path blob = blobPath(sha256);
+        if (!expected.equals(Stamp.of(blob))) {
+            // Ya no corresponde a su hash: retirarlo (el archivo con nombre conserva el contenido)
+            NeoDiscover.LOGGER.warn("Blob {} modificado en disco, se retira del almacén", sha256);
+            knownBlobs.remove(sha256);
+            try {
+                Files.deleteIfExists(blob);
+            } catch (IOException e) {
+                NeoDiscover.LOGGER.warn("No se pudo eliminar el blob {}", sha256, e);
+            }
+            notifyChangeListeners();
+            return null;
+        }
+        return blob;
+    }
+
+    private Path blobPath(String sha256) {
+        return fileManager.getDownloadsPath().resolve(BLOBS_FOLDER).resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    // Enlaza el archivo con su blob: lo crea si no existe o, si ya existe, sustituye el archivo por
+    // un enlace al blob (deduplicación)
+    private void adopt(Path file, FileHashCache.Entry hashes) {
+        if (!isEnabled() || !file.startsWith(fileManager.getDownloadsPath())) {
+            return;
+        }
+        String sha256 = hashes.getSha256();
+        Path blob = blobPath(sha256);
+        try {
+            Stamp expected = knownBlobs.get(sha256);
+            if (Files.exists(blob) && expected != null && !expected.equals(Stamp.of(blob))) {
+                // Blob alterado desde que se registró: no sirve como fuente, se vuelve a crear
+                Files.delete(blob);
+            }
+            if (Files.exists(blob)) {
+                if (!Files.isSameFile(blob, file)) {
+                    deduplicate(file, blob, hashes);
+                }
+            } else {
+                Files.createDirectories(blob.getParent());
+                try {
+                    Files.createLink(blob, file);
+                } catch (FileAlreadyExistsException e) {
+                    // Otro archivo con el mismo contenido se ha adelantado
+                    deduplicate(file, blob, hashes);
+                } catch (UnsupportedOperationException | IOException e) {
+                    copyToBlob(file, blob);
+                }
+            }
+            Stamp stamp = Stamp.of(blob);
+            if (stamp != null) {
+                knownBlobs.put(sha256, stamp);
+            }
+            unreferencedSince.remove(sha256);
+        } catch (IOException e) {
+            NeoDiscover.LOGGER.warn("No se pudo añadir {} al almacén por contenido: {}", file, e.getMessage());
+        }
+    }
+
+    private void deduplicate(Path file, Path blob, FileHashCache.Entry hashes) throws IOException {
+        if (Files.size(blob) != hashes.getSize()) {
+            NeoDiscover.LOGGER.warn("Blob {} con tamaño inesperado, no se deduplica {}", blob.getFileName(), file);
+            return;
+        }
+        Path link = file.resolveSibling(".dedup-" + UUID.randomUUID());
+        try {
+            Files.createLink(link, blob);
+        } catch (UnsupportedOperationException | IOException e) {
+            // Sin enlaces duros el archivo se queda como está; el blob ya existe
+            return;
+        }
+        try {
+            try {
+                Files.move(link, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(link, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(link);
+        }
+        // El enlace hereda la fecha del blob: actualizar índice y caché para no volver a hashear
+        fileManager.getIndex().refresh(file);
+        fileHashCache.record(file, hashes.getSha1(), hashes.getSha256(), hashes.getCrc32());
+        NeoDiscover.LOGGER.info("Archivo deduplicado: {} -> blob {}", file.getFileName(), blob.getFileName());
+    }
+
+    private void copyToBlob(Path file, Path blob) throws IOException {
+        Path temp = blob.resolveSibling(".tmp-" + UUID.randomUUID());
+        try {
+            Files.copy(file, temp);
+            try {
+                Files.move(temp, blob, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, blob);
+            }
+        } catch (FileAlreadyExistsException e) {
+            // Mismo contenido copiado por otro hilo
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Borra los blobs que ningún archivo del índice referencia desde hace más del periodo de gracia
+    private void collectGarbage() {
+        try {
+            Set<String> referenced = new HashSet<>();
+            for (DownloadsIndex.FileEntry file : fileManager.getIndex().list()) {
+                FileHashCache.Entry hashes = fileHashCache.get(file);
+                if (hashes == null) {
+                    // Hash pendiente: no se puede saber qué blob usa, esperar a la siguiente pasada
+                    return;
+                }
+                referenced.add(hashes.getSha256());
+            }
+            long now = System.currentTimeMillis();
+            forEachBlob(blob -> {
+                String sha256 = blob.getFileName().toString();
+                if (referenced.contains(sha256)) {
+                    unreferencedSince.remove(sha256);
+                    return;
+                }
+                long since = unreferencedSince.computeIfAbsent(sha256, k -> now);
+                if (now - since >= UNREFERENCED_GRACE_MS) {
+                    try {
+                        Files.deleteIfExists(blob);
+                        knownBlobs.remove(sha256);
+                        unreferencedSince.remove(sha256);
+                        NeoDiscover.LOGGER.info("Blob sin referencias eliminado: {}", sha256);
+                    } catch (IOException e) {
+                        NeoDiscover.LOGGER.warn("No se pudo eliminar el blob {}", sha256, e);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            NeoDiscover.LOGGER.warn("Error al limpiar el almacén por contenido", e);
+        }
+    }
+
+    private void forEachBlob(java.util.function.Consumer<Path> action) {
+        Path blobs = fileManager.getDownloadsPath().resolve(BLOBS_FOLDER);
+        if (!Files.isDirectory(blobs)) {
+            return;
+        }
+        try (Stream<Path> stream = Files.walk(blobs, 2)) {
+            stream.filter(Files::isRegularFile)
+                .filter(path -> SHA256.matcher(path.getFileName().toString()).matches())
+                .forEach(action);
+        } catch (IOException e) {
+            NeoDiscover.LOGGER.warn("No se pudo listar el almacén por contenido", e);
+        }
+    }
+
+    private record Stamp(long size, long lastModified) {
+        static Stamp of(Path path) {
+            try {
+                return new Stamp(Files.size(path), Files.getLastModifiedTime(path).toMillis());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
+    private void notifyChangeListeners() {
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                NeoDiscover.LOGGER.warn("Error en listener del almacén por contenido", e);
+            }
+        }
+    }
+}
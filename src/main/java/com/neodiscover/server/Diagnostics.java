@@ -0,0 +1,70 @@
+package com.neodiscover.server;
+
+import com.neodiscover.NeoDiscover;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log de diagnóstico detallado (cuerpos, claves de configuración, pasos de cada petición).
+ *
+ * Por defecto va a DEBUG. Con "http.verbose_log_sample" = N, una de cada N peticiones HTTP se
+ * marca como muestreada y sus mensajes de diagnóstico salen en INFO; el resto sigue en DEBUG. Así
+ * se puede seguir el detalle en producción sin inundar latest.log.
+ */
+public final class Diagnostics {
+    private static final ThreadLocal<Boolean> SAMPLED = new ThreadLocal<>();
+    private static final AtomicLong requests = new AtomicLong();
+    private static volatile long sampleEvery;
+
+    private Diagnostics() {
+    }
+
+    // 0 desactiva el muestreo (todo a DEBUG), 1 registra todas las peticiones en INFO
+    static void setSampleEvery(long every) {
+        sampleEvery = Math.max(0, every);
+    }
+
+    // Decide al empezar cada petición si se muestrea; end() debe llamarse al terminar
+    static void begin() {
+        long every = sampleEvery;
+        if (every > 0 && requests.getAndIncrement() % every == 0) {
+            SAMPLED.set(Boolean.TRUE);
+        }
+    }
+
+    static void end() {
+        SAMPLED.remove();
+    }
+
+    public static void log(String message) {
+        if (SAMPLED.get() != null) {
+            NeoDiscover.LOGGER.info(message);
+        } else {
+            NeoDiscover.LOGGER.debug(message);
+        }
+    }
+
+    public static void log(String format, Object arg) {
+        if (SAMPLED.get() != null) {
+            NeoDiscover.LOGGER.info(format, arg);
+        } else {
+            NeoDiscover.LOGGER.debug(format, arg);
+        }
+    }
+
+    public static void log(String format, Object arg1, Object arg2) {
+        if (SAMPLED.get() != null) {
+            NeoDiscover.LOGGER.info(format, arg1, arg2);
+        } else {
+            NeoDiscover.LOGGER.debug(format, arg1, arg2);
+        }
+    }
+
+    public static void log(String format, Object... args) {
+        if (SAMPLED.get() != null) {
+            NeoDiscover.LOGGER.info(format, args);
+        } else {
+            NeoDiscover.LOGGER.debug(format, args);
+        }
+    }
+}
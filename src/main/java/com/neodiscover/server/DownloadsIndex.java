@@ -0,0 +1,412 @@
+package com.neodiscover.server;
+
+import com.neodiscover.NeoDiscover;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Índice en memoria de la carpeta downloads (raíz, mods, shaders y resourcepacks).
+ *
+ * Se construye una vez al arrancar y se mantiene al día con un WatchService y con las rutas de
+ * subida, de modo que listados y búsquedas no tocan disco. Los lectores ven siempre una instantánea
+ * inmutable; cada cambio publica una nueva. Si el sistema de archivos no admite WatchService, se
+ * recurre a un reescaneo periódico.
+ */
+public class DownloadsIndex {
+    static final String[] FOLDERS = {"mods", "shaders", "resourcepacks"};
+    private static final long POLL_INTERVAL_MS = 5000;
+
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap());
+    private volatile Path root;
+    // Carpeta cuyo escaneo inicial ya ha terminado; hasta entonces los demás esperan al lock
+    private volatile Path startedRoot;
+    // Protege start/stop, que hacen E/S (escaneo inicial): un lock en lugar de synchronized para no
+    // bloquear el hilo del sistema si el primer acceso llega desde un hilo virtual
+    private final ReentrantLock lifecycleLock = new ReentrantLock();
+    private WatchService watchService;
+    private Thread watcher;
+
+    public static final class FileEntry {
+        private final String relativePath;
+        private final String folder;
+        private final String name;
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+
+        FileEntry(String relativePath, String folder, String name, Path path, long size, long lastModified) {
+            this.relativePath = relativePath;
+            this.folder = folder;
+            this.name = name;
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        // Ruta relativa a downloads con "/" ("mods/x.jar" o "x.txt")
+        public String getRelativePath() {
+            return relativePath;
+        }
+
+        // "mods", "shaders", "resourcepacks" o "" para la raíz
+        public String getFolder() {
+            return folder;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        boolean sameAs(FileEntry other) {
+            return other != null && size == other.size && lastModified == other.lastModified;
+        }
+    }
+
+    private static final class Snapshot {
+        final Map<String, FileEntry> byPath;
+        final Map<String, List<FileEntry>> byFolder;
+        final List<FileEntry> all;
+
+        Snapshot(Map<String, FileEntry> byPath) {
+            this.byPath = byPath;
+            // Listados precalculados y ordenados por nombre
+            Map<String, List<FileEntry>> folders = new HashMap<>();
+            List<FileEntry> sorted = new ArrayList<>(new TreeMap<>(byPath).values());
+            for (FileEntry entry : sorted) {
+                folders.computeIfAbsent(entry.folder, k -> new ArrayList<>()).add(entry);
+            }
+            folders.replaceAll((k, v) -> Collections.unmodifiableList(v));
+            this.byFolder = folders;
+            this.all = Collections.unmodifiableList(sorted);
+        }
+    }
+
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    // (Re)construye el índice para la carpeta indicada y empieza a vigilarla
+    public void start(Path downloadsPath) {
+        lifecycleLock.lock();
+        try {
+            startLocked(downloadsPath);
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    // Arranca solo si el índice no corresponde ya a esa carpeta (primer uso o cambio de setServer)
+    public void ensureStarted(Path downloadsPath) {
+        if (downloadsPath.equals(startedRoot)) {
+            return;
+        }
+        lifecycleLock.lock();
+        try {
+            if (!downloadsPath.equals(startedRoot)) {
+                startLocked(downloadsPath);
+            }
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    private void startLocked(Path downloadsPath) {
+        stopLocked();
+        root = downloadsPath;
+        try {
+            Files.createDirectories(downloadsPath);
+            for (String folder : FOLDERS) {
+                Files.createDirectories(downloadsPath.resolve(folder));
+            }
+        } catch (IOException e) {
+            NeoDiscover.LOGGER.warn("No se pudieron crear las carpetas de downloads", e);
+        }
+
+        try {
+            watchService = downloadsPath.getFileSystem().newWatchService();
+            register(watchService, downloadsPath);
+            for (String folder : FOLDERS) {
+                register(watchService, downloadsPath.resolve(folder));
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            NeoDiscover.LOGGER.warn("WatchService no disponible para {}, se reescaneará cada {} ms", downloadsPath, POLL_INTERVAL_MS);
+            closeWatchService();
+        }
+
+        // Escanear después de registrar para no perder archivos creados entre medias
+        rescan();
+
+        WatchService service = watchService;
+        watcher = new Thread(() -> watchLoop(downloadsPath, service), "NeoDiscover-DownloadsWatcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        startedRoot = downloadsPath;
+        NeoDiscover.LOGGER.info("Índice de downloads: {} archivo(s) en {}", snapshot.all.size(), downloadsPath);
+    }
+
+    public void stop() {
+        lifecycleLock.lock();
+        try {
+            stopLocked();
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    private void stopLocked() {
+        startedRoot = null;
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+        closeWatchService();
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // ignorar
+            }
+            watchService = null;
+        }
+    }
+
+    private static void register(WatchService service, Path folder) throws IOException {
+        if (Files.isDirectory(folder)) {
+            folder.register(service,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+    }
+
+    public FileEntry get(String relativePath) {
+        return snapshot.byPath.get(relativePath);
+    }
+
+    // Todos los archivos indexados, ordenados por ruta
+    public List<FileEntry> list() {
+        return snapshot.all;
+    }
+
+    // Archivos de una carpeta ("" para la raíz), ordenados por nombre
+    public List<FileEntry> list(String folder) {
+        return snapshot.byFolder.getOrDefault(folder, Collections.emptyList());
+    }
+
+    // Actualiza una entrada tras escribir o borrar un archivo desde el propio servidor. No avisa a
+    // los listeners: quien escribe ya notifica, y el evento posterior del watcher no verá cambios
+    public void refresh(Path file) {
+        Path downloadsPath = root;
+        if (downloadsPath == null || !file.startsWith(downloadsPath)) {
+            return;
+        }
+        String key = downloadsPath.relativize(file).toString().replace('\\', '/');
+        update(Collections.singletonMap(key, stat(downloadsPath, key)));
+    }
+
+    // Aplica cambios (null = borrado) y publica una nueva instantánea; devuelve si hubo cambios reales
+    private synchronized boolean update(Map<String, FileEntry> changes) {
+        Map<String, FileEntry> current = snapshot.byPath;
+        Map<String, FileEntry> next = null;
+        for (Map.Entry<String, FileEntry> change : changes.entrySet()) {
+            FileEntry existing = current.get(change.getKey());
+            FileEntry updated = change.getValue();
+            if (updated == null ? existing == null : updated.sameAs(existing)) {
+                continue;
+            }
+            if (next == null) {
+                next = new HashMap<>(current);
+            }
+            if (updated == null) {
+                next.remove(change.getKey());
+            } else {
+                next.put(change.getKey(), updated);
+            }
+        }
+        if (next == null) {
+            return false;
+        }
+        snapshot = new Snapshot(next);
+        return true;
+    }
+
+    private void rescan() {
+        Path downloadsPath = root;
+        Map<String, FileEntry> found = new HashMap<>();
+        scanFolder(downloadsPath, "", found);
+        for (String folder : FOLDERS) {
+            scanFolder(downloadsPath.resolve(folder), folder, found);
+        }
+        boolean changed;
+        synchronized (this) {
+            Map<String, FileEntry> changes = new HashMap<>(found);
+            for (String key : snapshot.byPath.keySet()) {
+                changes.putIfAbsent(key, null);
+            }
+            changed = update(changes);
+        }
+        if (changed) {
+            notifyChangeListeners();
+        }
+    }
+
+    private void scanFolder(Path folder, String folderName, Map<String, FileEntry> found) {
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+        try (Stream<Path> stream = Files.list(folder)) {
+            stream.forEach(path -> {
+                String name = path.getFileName().toString();
+                String key = folderName.isEmpty() ? name : folderName + "/" + name;
+                FileEntry entry = stat(root, key);
+                if (entry != null) {
+                    found.put(key, entry);
+                }
+            });
+        } catch (IOException e) {
+            NeoDiscover.LOGGER.warn("No se pudo listar {}", folder, e);
+        }
+    }
+
+    // Entrada para una ruta relativa, o null si no existe o no se indexa (ocultos, directorios)
+    private static FileEntry stat(Path downloadsPath, String key) {
+        int slash = key.indexOf('/');
+        String folder = slash == -1 ? "" : key.substring(0, slash);
+        String name = slash == -1 ? key : key.substring(slash + 1);
+        if (name.startsWith(".") || name.contains("/")) {
+            return null;
+        }
+        if (!folder.isEmpty() && !isIndexedFolder(folder)) {
+            return null;
+        }
+        Path path = downloadsPath.resolve(key);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return new FileEntry(key, folder, name, path, attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean isIndexedFolder(String folder) {
+        for (String candidate : FOLDERS) {
+            if (candidate.equals(folder)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void watchLoop(Path downloadsPath, WatchService service) {
+        if (service == null) {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(POLL_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                rescan();
+            }
+            return;
+        }
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                // Agrupar la ráfaga de eventos (p. ej. una copia por SFTP) en una sola publicación
+                Map<String, FileEntry> changes = new HashMap<>();
+                boolean overflow = false;
+                while (key != null) {
+                    overflow |= collectEvents(downloadsPath, service, key, changes);
+                    key = service.poll(50, TimeUnit.MILLISECONDS);
+                }
+                if (root != downloadsPath) {
+                    return;
+                }
+                if (overflow) {
+                    rescan();
+                } else if (update(changes)) {
+                    notifyChangeListeners();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Parada normal
+        }
+    }
+
+    private boolean collectEvents(Path downloadsPath, WatchService service, WatchKey key, Map<String, FileEntry> changes) {
+        Path dir = (Path) key.watchable();
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            Path child = dir.resolve((Path) event.context());
+            String relative = downloadsPath.relativize(child).toString().replace('\\', '/');
+            if (dir.equals(downloadsPath) && isIndexedFolder(relative)) {
+                // Se ha creado o borrado una de las subcarpetas: volver a registrarla y reescanear
+                try {
+                    register(service, child);
+                } catch (IOException | ClosedWatchServiceException e) {
+                    // Puede haberse borrado otra vez
+                }
+                overflow = true;
+                continue;
+            }
+            changes.put(relative, stat(downloadsPath, relative));
+        }
+        key.reset();
+        return overflow;
+    }
+
+    private void notifyChangeListeners() {
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                NeoDiscover.LOGGER.warn("Error en listener del índice de downloads", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.neodiscover.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.neodiscover.NeoDiscover;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Caché persistente de SHA-1/SHA-256 (y CRC-32, para los bundles zip) de los archivos de downloads.
+ *
+ * Las entradas se indexan por ruta relativa y solo son válidas mientras el tamaño y la fecha de
+ * modificación coincidan. Se guarda en downloads/.neodiscover/hashes.json para no volver a
+ * calcular gigas de jars tras cada reinicio. La ruta de las peticiones nunca calcula hashes: si
+ * falta uno se encola en segundo plano y se avisa a los listeners al terminar.
+ */
+public class FileHashCache {
+    private static final String CACHE_FOLDER = ".neodiscover";
+    private static final String CACHE_FILE = "hashes.json";
+
+    private final FileManager fileManager;
+    private final Gson gson = new Gson();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> pending = new ConcurrentHashMap<>();
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private final List<BiConsumer<Path, Entry>> hashListeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private final ExecutorService hashers;
+    private final ScheduledExecutorService saver;
+    private volatile Path loadedFrom;
+
+    public FileHashCache(FileManager fileManager) {
+        this.fileManager = fileManager;
+        AtomicInteger counter = new AtomicInteger();
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.hashers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "NeoDiscover-Hasher-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.saver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "NeoDiscover-HashCacheWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static final class Entry {
+        final long size;
+        final long lastModified;
+        final String sha1;
+        final String sha256;
+        // -1 en entradas guardadas antes de que se calculara
+        final long crc32;
+
+        Entry(long size, long lastModified, String sha1, String sha256, long crc32) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.sha1 = sha1;
+            this.sha256 = sha256;
+            this.crc32 = crc32;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getSha1() {
+            return sha1;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public long getCrc32() {
+            return crc32;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    // Se llama con cada hash nuevo (subida o cálculo en segundo plano), antes de los change listeners
+    public void addHashListener(BiConsumer<Path, Entry> listener) {
+        hashListeners.add(listener);
+    }
+
+    // Carga la caché de disco (si la carpeta downloads ha cambiado) y hashea en paralelo lo que falte
+    public void start() {
+        Path downloadsPath = fileManager.getDownloadsPath();
+        if (!downloadsPath.equals(loadedFrom)) {
+            load(downloadsPath);
+        }
+        int queued = 0;
+        for (DownloadsIndex.FileEntry file : fileManager.getIndex().list()) {
+            // Las entradas de versiones anteriores no tienen CRC-32: se recalculan (mientras tanto
+            // siguen sirviendo sus SHA)
+            Entry entry = lookup(file);
+            if ((entry == null || entry.crc32 < 0) && schedule(file.getRelativePath(), file.getPath())) {
+                queued++;
+            }
+        }
+        if (queued > 0) {
+            NeoDiscover.LOGGER.info("Calculando hashes de {} archivo(s) en segundo plano", queued);
+        }
+    }
+
+    public void stop() {
+        hashers.shutdownNow();
+        saver.shutdown();
+        save();
+    }
+
+    // Hash válido para el archivo indexado o null; si falta, se calcula en segundo plano
+    public Entry get(DownloadsIndex.FileEntry file) {
+        Entry entry = lookup(file);
+        if (entry == null) {
+            schedule(file.getRelativePath(), file.getPath());
+        }
+        return entry;
+    }
+
+    // El índice ya tiene tamaño y fecha: no hace falta volver a consultar el disco
+    private Entry lookup(DownloadsIndex.FileEntry file) {
+        Entry entry = entries.get(file.getRelativePath());
+        if (entry != null && entry.size == file.getSize() && entry.lastModified == file.getLastModified()) {
+            return entry;
+        }
+        return null;
+    }
+
+    // Registra hashes calculados mientras se recibía el archivo (subidas)
+    public void record(Path file, String sha1, String sha256, long crc32) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            Entry entry = new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), sha1, sha256, crc32);
+            entries.put(key(file), entry);
+            scheduleSave();
+            notifyHashListeners(file, entry);
+        } catch (IOException e) {
+            NeoDiscover.LOGGER.warn("No se pudieron registrar los hashes de {}", file, e);
+        }
+    }
+
+    private boolean schedule(String key, Path file) {
+        if (pending.putIfAbsent(key, Boolean.TRUE) != null) {
+            return false;
+        }
+        try {
+            hashers.execute(() -> {
+                try {
+                    Entry entry = compute(file);
+                    entries.put(key, entry);
+                    scheduleSave();
+                    notifyHashListeners(file, entry);
+                    notifyChangeListeners();
+                } catch (Exception e) {
+                    NeoDiscover.LOGGER.warn("No se pudo calcular el hash de {}: {}", file, e.getMessage());
+                } finally {
+                    pending.remove(key);
+                }
+            });
+            return true;
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            pending.remove(key);
+            return false;
+        }
+    }
+
+    static Entry compute(Path file) throws IOException {
+        BasicFileAttributes before = Files.readAttributes(file, BasicFileAttributes.class);
+        Digests digests = new Digests();
+        byte[] chunk = new byte[FileTransfer.CHUNK_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                digests.update(chunk, 0, read);
+            }
+        }
+        return new Entry(before.size(), before.lastModifiedTime().toMillis(), digests.sha1Hex(), digests.sha256Hex(), digests.crc32());
+    }
+
+    // SHA-1, SHA-256 y CRC-32 calculados en una sola pasada
+    public static final class Digests {
+        private final MessageDigest sha1;
+        private final MessageDigest sha256;
+        private final CRC32 crc32 = new CRC32();
+
+        public Digests() {
+            try {
+                sha1 = MessageDigest.getInstance("SHA-1");
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Algoritmo de hash no disponible", e);
+            }
+        }
+
+        public void update(byte[] data, int offset, int length) {
+            sha1.update(data, offset, length);
+            sha256.update(data, offset, length);
+            crc32.update(data, offset, length);
+        }
+
+        public String sha1Hex() {
+            return HexFormat.of().formatHex(sha1.digest());
+        }
+
+        public String sha256Hex() {
+            return HexFormat.of().formatHex(sha256.digest());
+        }
+
+        public long crc32() {
+            return crc32.getValue();
+        }
+    }
+
+    private String key(Path file) {
+        Path downloadsPath = fileManager.getDownloadsPath();
+        Path relative = file.startsWith(downloadsPath) ? downloadsPath.relativize(file) : file;
+        return relative.toString().replace('\\', '/');
+    }
+
+    private void load(Path downloadsPath) {
+        entries.clear();
+        loadedFrom = downloadsPath;
+        Path cacheFile = downloadsPath.resolve(CACHE_FOLDER).resolve(CACHE_FILE);
+        if (!Files.exists(cacheFile)) {
+            return;
+        }
+        try {
+            JsonObject json = JsonParser.parseString(Files.readString(cacheFile, StandardCharsets.UTF_8)).getAsJsonObject();
+            for (Map.Entry<String, com.google.gson.JsonElement> item : json.entrySet()) {
+                JsonObject value = item.getValue().getAsJsonObject();
+                entries.put(item.getKey(), new Entry(
+                    value.get("size").getAsLong(),
+                    value.get("mtime").getAsLong(),
+                    value.get("sha1").getAsString(),
+                    value.get("sha256").getAsString(),
+                    value.has("crc32") ? value.get("crc32").getAsLong() : -1));
+            }
+            NeoDiscover.LOGGER.info("Caché de hashes cargada: {} entrada(s)", entries.size());
+        } catch (Exception e) {
+            NeoDiscover.LOGGER.warn("Caché de hashes inválida, se recalculará", e);
+            entries.clear();
+        }
+    }
+
+    private void scheduleSave() {
+        // Agrupar escrituras: como mucho una cada pocos segundos
+        if (saveScheduled.compareAndSet(false, true)) {
+            try {
+                saver.schedule(() -> {
+                    saveScheduled.set(false);
+                    save();
+                }, 2, TimeUnit.SECONDS);
+            } catch (java.util.concurrent.RejectedExecutionException e) {
+                saveScheduled.set(false);
+            }
+        }
+    }
+
+    private synchronized void save() {
+        Path downloadsPath = loadedFrom;
+        if (downloadsPath == null) {
+            return;
+        }
+        JsonObject json = new JsonObject();
+        for (Map.Entry<String, Entry> item : entries.entrySet()) {
+            // No guardar entradas de archivos que ya no existen
+            if (!Files.exists(downloadsPath.resolve(item.getKey()))) {
+                continue;
+            }
+            JsonObject value = new JsonObject();
+            value.addProperty("size", item.getValue().size);
+            value.addProperty("mtime", item.getValue().lastModified);
+            value.addProperty("sha1", item.getValue().sha1);
+            value.addProperty("sha256", item.getValue().sha256);
+            value.addProperty("crc32", item.getValue().crc32);
+            json.add(item.getKey(), value);
+        }
+        try {
+            Path folder = downloadsPath.resolve(CACHE_FOLDER);
+            Files.createDirectories(folder);
+            Path cacheFile = folder.resolve(CACHE_FILE);
+            Path temp = folder.resolve(CACHE_FILE + ".tmp");
+            Files.writeString(temp, gson.toJson(json), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            NeoDiscover.LOGGER.warn("No se pudo guardar la caché de hashes", e);
+        }
+    }
+
+    private void notifyHashListeners(Path file, Entry entry) {
+        for (BiConsumer<Path, Entry> listener : hashListeners) {
+            try {
+                listener.accept(file, entry);
+            } catch (Exception e) {
+                NeoDiscover.LOGGER.warn("Error en listener de hashes", e);
+            }
+        }
+    }
+
+    private void notifyChangeListeners() {
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                NeoDiscover.LOGGER.warn("Error en listener de la caché de hashes", e);
+            }
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class FileManager {
     private static final String DOWNLOADS_FOLDER = "downloads";
@@ -18,6 +19,9 @@ public class FileManager {
     private MinecraftServer server;
     private int httpPort;
     private String serverHost;
+    private FileHashCache fileHashCache;
+    private final DownloadsIndex index = new DownloadsIndex();
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
 
     public FileManager(int httpPort) {
         this.httpPort = httpPort;
@@ -28,6 +32,8 @@ public class FileManager {
         } else {
             downloadsPath = Paths.get(DOWNLOADS_FOLDER);
         }
+        // Archivos añadidos o borrados a mano (SFTP) también invalidan el perfil
+        index.addChangeListener(this::notifyChangeListeners);
     }
 
     public void setServerHost(String host) {
@@ -35,6 +41,10 @@ public class FileManager {
         NeoDiscover.LOGGER.info("Server host establecido en: {}", this.serverHost);
     }
 
+    public void setFileHashCache(FileHashCache fileHashCache) {
+        this.fileHashCache = fileHashCache;
+    }
+
     public void setServer(MinecraftServer server) {
         this.server = server;
         if (server != null) {
@@ -64,6 +74,8 @@ public class FileManager {
         Path filePath = downloadsPath.resolve(fileName);
         Files.copy(fileStream, filePath, StandardCopyOption.REPLACE_EXISTING);
         NeoDiscover.LOGGER.info("Archivo guardado: {}", filePath);
+        getIndex().refresh(filePath);
+        notifyChangeListeners();
         return filePath;
     }
 
@@ -76,6 +88,8 @@ public class FileManager {
         Path filePath = modsPath.resolve(fileName);
         Files.copy(fileStream, filePath, StandardCopyOption.REPLACE_EXISTING);
         NeoDiscover.LOGGER.info("Mod guardado: {}", filePath);
+        getIndex().refresh(filePath);
+        notifyChangeListeners();
         return filePath;
     }
 
@@ -88,6 +102,8 @@ public class FileManager {
         Path filePath = shadersPath.resolve(fileName);
         Files.copy(fileStream, filePath, StandardCopyOption.REPLACE_EXISTING);
         NeoDiscover.LOGGER.info("Shader guardado: {}", filePath);
+        getIndex().refresh(filePath);
+        notifyChangeListeners();
         return filePath;
     }
 
@@ -100,9 +116,94 @@ public class FileManager {
         Path filePath = resourcePacksPath.resolve(fileName);
         Files.copy(fileStream, filePath, StandardCopyOption.REPLACE_EXISTING);
         NeoDiscover.LOGGER.info("Resource pack guardado: {}", filePath);
+        getIndex().refresh(filePath);
+        notifyChangeListeners();
+        return filePath;
+    }
+
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    private void notifyChangeListeners() {
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                NeoDiscover.LOGGER.warn("Error en listener de cambios de archivos", e);
+            }
+        }
+    }
+
+    // Carpeta de destino según el tipo de subida ("mods", "shaders", "resourcepacks" o raíz)
+    public Path getTypeFolder(String type) throws IOException {
+        ensureDownloadsFolderExists();
+        Path folder = downloadsPath;
+        if ("mods".equals(type) || "shaders".equals(type) || "resourcepacks".equals(type)) {
+            folder = downloadsPath.resolve(type);
+        }
+        if (!Files.exists(folder)) {
+            Files.createDirectories(folder);
+        }
+        return folder;
+    }
+
+    // Archivo temporal oculto dentro de la carpeta destino, para que el commit sea un rename atómico
+    public Path createUploadTempFile(String type) throws IOException {
+        // createFile (y no createTempFile) para conservar los permisos por defecto al publicarlo
+        return Files.createFile(getTypeFolder(type).resolve(".upload-" + java.util.UUID.randomUUID() + ".part"));
+    }
+
+    // Temporales de subidas multipart que quedaron a medias (el proceso se cerró durante la subida).
+    // Solo debe llamarse al arrancar el servidor HTTP, cuando no hay subidas en curso
+    public void deleteStaleUploadTempFiles() {
+        for (String type : new String[] {"", "mods", "shaders", "resourcepacks"}) {
+            Path folder = type.isEmpty() ? downloadsPath : downloadsPath.resolve(type);
+            if (!Files.isDirectory(folder)) {
+                continue;
+            }
+            try (java.nio.file.DirectoryStream<Path> stale = Files.newDirectoryStream(folder, ".upload-*.part")) {
+                for (Path file : stale) {
+                    Files.deleteIfExists(file);
+                    NeoDiscover.LOGGER.info("Temporal de subida abandonado eliminado: {}", file);
+                }
+            } catch (IOException e) {
+                NeoDiscover.LOGGER.warn("No se pudieron limpiar los temporales de subida de {}", folder, e);
+            }
+        }
+    }
+
+    public Path commitUpload(String type, String fileName, Path tempFile) throws IOException {
+        return commitUpload(type, fileName, tempFile, null, null, -1);
+    }
+
+    // Variante con los hashes calculados durante la recepción, para no volver a leer el archivo
+    public Path commitUpload(String type, String fileName, Path tempFile, String sha1, String sha256, long crc32) throws IOException {
+        if (!isValidFileName(fileName)) {
+            throw new IOException("Nombre de archivo inválido: " + fileName);
+        }
+        Path filePath = getTypeFolder(type).resolve(fileName);
+        try {
+            Files.move(tempFile, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (java.nio.file.AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, filePath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        NeoDiscover.LOGGER.info("Archivo subido guardado: {}", filePath);
+        if (fileHashCache != null && sha1 != null && sha256 != null) {
+            fileHashCache.record(filePath, sha1, sha256, crc32);
+        }
+        getIndex().refresh(filePath);
+        notifyChangeListeners();
         return filePath;
     }
 
+    public static boolean isValidFileName(String fileName) {
+        return fileName != null && !fileName.isEmpty()
+            && !fileName.startsWith(".")
+            && !fileName.contains("/") && !fileName.contains("\\")
+            && !fileName.contains("..");
+    }
+
     public String getShaderUrl(String shaderFileName) {
         return String.format("http://%s:%d/downloads/shaders/%s", serverHost, httpPort, shaderFileName);
     }
@@ -115,40 +216,53 @@ public class FileManager {
         return downloadsPath;
     }
 
+    // Índice en memoria de downloads; se (re)construye si la carpeta ha cambiado (setServer)
+    public DownloadsIndex getIndex() {
+        index.ensureStarted(downloadsPath);
+        return index;
+    }
+
     public List<String> listDownloadedFiles() {
+        // Raíz, mods, shaders y resourcepacks desde el índice, sin tocar disco
         List<String> files = new ArrayList<>();
-        try {
-            if (Files.exists(downloadsPath)) {
-                // Listar archivos en la raíz de downloads
-                Files.list(downloadsPath)
-                    .filter(Files::isRegularFile)
-                    .forEach(path -> files.add(path.getFileName().toString()));
-                
-                // Listar mods en downloads/mods
-                Path modsPath = downloadsPath.resolve("mods");
-                if (Files.exists(modsPath)) {
-                    Files.list(modsPath)
-                        .filter(Files::isRegularFile)
-                        .forEach(path -> files.add("mods/" + path.getFileName().toString()));
-                }
-            }
-        } catch (Exception e) {
-            NeoDiscover.LOGGER.error("Error al listar archivos en downloads", e);
+        for (DownloadsIndex.FileEntry entry : getIndex().list()) {
+            files.add(entry.getRelativePath());
         }
         return files;
     }
 
+    // Ruta relativa a downloads ("mods/x.jar", "x.txt"); null si no está en el índice
+    public DownloadsIndex.FileEntry findFile(String relativePath) {
+        return getIndex().get(relativePath);
+    }
+
     public Path getFile(String fileName) {
-        if (downloadsPath != null && Files.exists(downloadsPath.resolve(fileName))) {
-            return downloadsPath.resolve(fileName);
-        }
-        return null;
+        DownloadsIndex.FileEntry entry = findFile(fileName);
+        return entry != null ? entry.getPath() : null;
     }
 
     public String getFileUrl(String fileName) {
         return String.format("http://%s:%d/downloads/%s", serverHost, httpPort, fileName);
     }
 
+    public String getTypeUrl(String type, String fileName) {
+        switch (type) {
+            case "mods":
+                return getModUrl(fileName);
+            case "shaders":
+                return getShaderUrl(fileName);
+            case "resourcepacks":
+                return getResourcePackUrl(fileName);
+            default:
+                return getFileUrl(fileName);
+        }
+    }
+
+    // URL inmutable de un blob del almacén por contenido; el nombre solo sirve para la descarga
+    public String getBlobUrl(String sha256, String fileName) {
+        return String.format("http://%s:%d/downloads/blob/%s/%s", serverHost, httpPort, sha256, fileName);
+    }
+
     public String getModUrl(String modFileName) {
         return String.format("http://%s:%d/downloads/mods/%s", serverHost, httpPort, modFileName);
     }
@@ -0,0 +1,53 @@
+package com.neodiscover.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Envío de archivos desde un {@link FileChannel} sin cargarlos en el heap.
+ *
+ * Se lee por bloques de como mucho {@link #CHUNK_SIZE} bytes reutilizando el mismo buffer, así que
+ * la memoria por descarga es constante sea cual sea el tamaño del archivo.
+ */
+final class FileTransfer {
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private FileTransfer() {
+    }
+
+    static long transfer(FileChannel channel, long position, long count, OutputStream out) throws IOException {
+        return transfer(channel, position, count, out, null, null);
+    }
+
+    // Con pacer cada bloque espera su turno en el limitador de ancho de banda antes de escribirse;
+    // sentBytes (opcional) acumula lo enviado bloque a bloque, también si la descarga se corta
+    static long transfer(FileChannel channel, long position, long count, OutputStream out,
+                         BandwidthLimiter.Transfer pacer, LongAdder sentBytes) throws IOException {
+        byte[] chunk = new byte[(int) Math.min(CHUNK_SIZE, Math.max(count, 1))];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        long sent = 0;
+        while (sent < count) {
+            int size = pacer != null ? Math.min(chunk.length, pacer.chunkSize(chunk.length)) : chunk.length;
+            buffer.clear();
+            buffer.limit((int) Math.min(size, count - sent));
+            int read = channel.read(buffer, position + sent);
+            if (read <= 0) {
+                // El archivo se ha truncado mientras se enviaba
+                throw new EOFException("Archivo truncado durante la descarga: enviados " + sent + " de " + count + " bytes");
+            }
+            if (pacer != null) {
+                pacer.pace(read);
+            }
+            out.write(chunk, 0, read);
+            sent += read;
+            if (sentBytes != null) {
+                sentBytes.add(read);
+            }
+        }
+        return sent;
+    }
+}
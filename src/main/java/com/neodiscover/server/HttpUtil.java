@@ -0,0 +1,125 @@
+package com.neodiscover.server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Utilidades de cabeceras HTTP compartidas por los handlers.
+ */
+final class HttpUtil {
+    private HttpUtil() {
+    }
+
+    static String formatDate(long epochMillis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+            ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC));
+    }
+
+    // Devuelve los milisegundos de una fecha HTTP o -1 si no es válida
+    static long parseDate(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    // Las fechas HTTP tienen precisión de segundos
+    static long truncateToSeconds(long epochMillis) {
+        return epochMillis - Math.floorMod(epochMillis, 1000L);
+    }
+
+    // ETag fuerte a partir de los metadatos del archivo (tamaño y fecha de modificación)
+    static String fileEtag(long size, long lastModifiedMillis) {
+        return "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModifiedMillis) + "\"";
+    }
+
+    // Evalúa If-None-Match / If-Modified-Since (RFC 7232). If-None-Match tiene prioridad y usa
+    // comparación débil; If-Modified-Since solo se mira si no hay If-None-Match
+    static boolean isNotModified(Headers requestHeaders, String etag, long lastModifiedMillis) {
+        String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || stripWeak(tag).equals(stripWeak(etag))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = parseDate(requestHeaders.getFirst("If-Modified-Since"));
+        return ifModifiedSince != -1 && lastModifiedMillis <= ifModifiedSince;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    static void sendNotModified(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+    }
+
+    // HEAD: mismas cabeceras que GET con Content-Length, pero sin cuerpo
+    static void sendHeadResponse(HttpExchange exchange, int statusCode, long contentLength) throws IOException {
+        exchange.getResponseHeaders().set("Content-Length", Long.toString(contentLength));
+        exchange.sendResponseHeaders(statusCode, -1);
+        exchange.close();
+    }
+
+    // Respuesta completa con cuerpo en memoria. En HEAD solo se envían las cabeceras (con el
+    // Content-Length que tendría el GET): HttpServer no admite cuerpo en una respuesta a HEAD
+    static void sendBody(HttpExchange exchange, int statusCode, byte[] body, String contentType) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            sendHeadResponse(exchange, statusCode, body.length);
+            return;
+        }
+        exchange.sendResponseHeaders(statusCode, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    // Negociación de Accept-Encoding: true si el cliente acepta gzip (explícito o con *) con q > 0
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String item : acceptEncoding.split(",")) {
+            String[] parts = item.trim().split(";");
+            String coding = parts[0].trim().toLowerCase();
+            double q = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                return q > 0;
+            }
+            if (coding.equals("*")) {
+                wildcard = q > 0;
+            }
+        }
+        return wildcard;
+    }
+}
@@ -0,0 +1,144 @@
+package com.neodiscover.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Diferencia entre el manifiesto local de un launcher y un perfil del servidor.
+ *
+ * El cliente envía nombre y hash de lo que tiene por categoría; la respuesta solo contiene lo que
+ * debe descargar (add/replace), renombrar (mismo contenido con otro nombre) o borrar. Las
+ * categorías que el cliente no envía no se comparan.
+ */
+final class ManifestDiff {
+    static final String[] CATEGORIES = {"mods", "shaders", "resourcepacks"};
+
+    private ManifestDiff() {
+    }
+
+    static JsonObject diff(JsonObject profile, JsonObject manifest) {
+        JsonArray add = new JsonArray();
+        JsonArray replace = new JsonArray();
+        JsonArray rename = new JsonArray();
+        JsonArray delete = new JsonArray();
+        int unchanged = 0;
+        int pendingHashes = 0;
+
+        for (String category : CATEGORIES) {
+            if (!manifest.has(category) || !manifest.get(category).isJsonArray()) {
+                continue;
+            }
+            Map<String, JsonObject> server = byName(profile.get(category));
+            Map<String, JsonObject> client = byName(manifest.get(category));
+
+            // Descargas nuevas indexadas por SHA-256 para detectar renombrados
+            Map<String, JsonObject> addsBySha = new HashMap<>();
+            Map<String, JsonObject> adds = new LinkedHashMap<>();
+            for (Map.Entry<String, JsonObject> item : server.entrySet()) {
+                JsonObject serverEntry = item.getValue();
+                JsonObject clientEntry = client.remove(item.getKey());
+                if (clientEntry == null) {
+                    adds.put(item.getKey(), serverEntry);
+                    String sha256 = string(serverEntry, "sha256");
+                    if (sha256 != null) {
+                        addsBySha.putIfAbsent(sha256.toLowerCase(), serverEntry);
+                    }
+                    continue;
+                }
+                String serverSha256 = string(serverEntry, "sha256");
+                String serverSha1 = string(serverEntry, "sha1");
+                if (serverSha256 == null && serverSha1 == null) {
+                    // El servidor aún no ha calculado el hash: no se puede comparar, se da por igual
+                    pendingHashes++;
+                    unchanged++;
+                } else if (sameContent(serverSha256, serverSha1, clientEntry)) {
+                    unchanged++;
+                } else {
+                    replace.add(change(category, serverEntry));
+                }
+            }
+
+            // Lo que queda en client no existe en el servidor: renombrar si el contenido coincide
+            for (JsonObject clientEntry : client.values()) {
+                String sha256 = string(clientEntry, "sha256");
+                JsonObject target = sha256 != null ? addsBySha.remove(sha256.toLowerCase()) : null;
+                if (target != null) {
+                    adds.remove(target.get("name").getAsString());
+                    JsonObject item = new JsonObject();
+                    item.addProperty("type", category);
+                    item.addProperty("from", clientEntry.get("name").getAsString());
+                    item.addProperty("to", target.get("name").getAsString());
+                    rename.add(item);
+                } else {
+                    JsonObject item = new JsonObject();
+                    item.addProperty("type", category);
+                    item.addProperty("name", clientEntry.get("name").getAsString());
+                    delete.add(item);
+                }
+            }
+            for (JsonObject serverEntry : adds.values()) {
+                add.add(change(category, serverEntry));
+            }
+        }
+
+        JsonObject result = new JsonObject();
+        result.add("add", add);
+        result.add("replace", replace);
+        result.add("rename", rename);
+        result.add("delete", delete);
+        result.addProperty("unchanged", unchanged);
+        if (pendingHashes > 0) {
+            result.addProperty("pending_hashes", pendingHashes);
+        }
+        return result;
+    }
+
+    private static boolean sameContent(String serverSha256, String serverSha1, JsonObject clientEntry) {
+        String clientSha256 = string(clientEntry, "sha256");
+        if (serverSha256 != null && clientSha256 != null) {
+            return serverSha256.equalsIgnoreCase(clientSha256);
+        }
+        String clientSha1 = string(clientEntry, "sha1");
+        if (serverSha1 != null && clientSha1 != null) {
+            return serverSha1.equalsIgnoreCase(clientSha1);
+        }
+        // Sin hash del cliente no hay forma de saber si es el mismo archivo
+        return false;
+    }
+
+    // Entrada de descarga: los campos del perfil (url, size, hashes...) más la categoría
+    private static JsonObject change(String category, JsonObject serverEntry) {
+        JsonObject item = new JsonObject();
+        item.addProperty("type", category);
+        for (Map.Entry<String, JsonElement> field : serverEntry.entrySet()) {
+            item.add(field.getKey(), field.getValue());
+        }
+        return item;
+    }
+
+    private static Map<String, JsonObject> byName(JsonElement list) {
+        Map<String, JsonObject> entries = new LinkedHashMap<>();
+        if (list == null || !list.isJsonArray()) {
+            return entries;
+        }
+        for (JsonElement element : list.getAsJsonArray()) {
+            if (element.isJsonObject()) {
+                String name = string(element.getAsJsonObject(), "name");
+                if (name != null) {
+                    entries.put(name, element.getAsJsonObject());
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static String string(JsonObject object, String key) {
+        JsonElement value = object.get(key);
+        return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+    }
+}
@@ -0,0 +1,273 @@
+package com.neodiscover.server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Métricas del servidor HTTP y de los subsistemas de archivos, en formato de texto de Prometheus
+ * (GET /metrics).
+ *
+ * Todo lo que se registra en el camino de una petición son LongAdder e histogramas de cubos fijos
+ * creados de antemano, así que medir no reserva memoria ni toma locks. Los valores instantáneos
+ * (peticiones en curso, cola...) se leen solo al generar la respuesta.
+ */
+public class Metrics {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long KIB = 1024;
+    private static final long[] LATENCY_BUCKETS = {
+        MS, 5 * MS, 10 * MS, 25 * MS, 50 * MS, 100 * MS, 250 * MS, 500 * MS,
+        1000 * MS, 2500 * MS, 5000 * MS, 10_000 * MS, 30_000 * MS, 60_000 * MS
+    };
+    private static final long[] SIZE_BUCKETS = {
+        64 * KIB, 256 * KIB, KIB * KIB, 4 * KIB * KIB, 16 * KIB * KIB, 64 * KIB * KIB,
+        256 * KIB * KIB, KIB * KIB * KIB, 4 * KIB * KIB * KIB
+    };
+    private static final long[] LOOKUP_BUCKETS = {
+        50 * MS, 100 * MS, 250 * MS, 500 * MS, 1000 * MS, 2000 * MS, 3000 * MS, 5000 * MS, 10_000 * MS
+    };
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final String[] STATUS_CLASSES = {"unknown", "1xx", "2xx", "3xx", "4xx", "5xx"};
+    static final String[] DOWNLOAD_CATEGORIES = {"mods", "shaders", "resourcepacks", "root", "blob", "bundle"};
+    static final String[] UPLOAD_KINDS = {"multipart", "chunked"};
+    static final int UPLOAD_MULTIPART = 0;
+    static final int UPLOAD_CHUNKED = 1;
+
+    private final Map<String, RequestMetrics> requests = new ConcurrentHashMap<>();
+    private final LongAdder[] downloadedBytes = adders(DOWNLOAD_CATEGORIES.length);
+    private final Histogram[] uploadBytes = new Histogram[UPLOAD_KINDS.length];
+    private final Histogram[] uploadDuration = new Histogram[UPLOAD_KINDS.length];
+    private final LongAdder configLoads = new LongAdder();
+    private final LongAdder configSaves = new LongAdder();
+    private final LongAdder configSaveFailures = new LongAdder();
+    private final Histogram publicIpLookup = new Histogram(LOOKUP_BUCKETS);
+    private final LongAdder publicIpFailures = new LongAdder();
+    private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+    public Metrics() {
+        for (int i = 0; i < UPLOAD_KINDS.length; i++) {
+            uploadBytes[i] = new Histogram(SIZE_BUCKETS);
+            uploadDuration[i] = new Histogram(LATENCY_BUCKETS);
+        }
+    }
+
+    /**
+     * Histograma acumulativo con límites fijos (en nanosegundos o bytes).
+     */
+    static final class Histogram {
+        private final long[] bounds;
+        private final LongAdder[] counts;
+        private final LongAdder sum = new LongAdder();
+
+        Histogram(long[] bounds) {
+            this.bounds = bounds;
+            // Un cubo por límite más el de +Inf
+            this.counts = adders(bounds.length + 1);
+        }
+
+        void observe(long value) {
+            int bucket = 0;
+            while (bucket < bounds.length && value > bounds[bucket]) {
+                bucket++;
+            }
+            counts[bucket].increment();
+            sum.add(value);
+        }
+
+        boolean isEmpty() {
+            for (LongAdder count : counts) {
+                if (count.sum() > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Peticiones de un handler: número por código de estado y latencia por clase de estado.
+     */
+    static final class RequestMetrics {
+        private final AtomicReferenceArray<LongAdder> byStatus = new AtomicReferenceArray<>(600);
+        private final Histogram[] latency = new Histogram[STATUS_CLASSES.length];
+
+        private RequestMetrics() {
+            for (int i = 0; i < latency.length; i++) {
+                latency[i] = new Histogram(LATENCY_BUCKETS);
+            }
+        }
+
+        void record(int status, long elapsedNanos) {
+            int code = status >= 100 && status < 600 ? status : 0;
+            LongAdder counter = byStatus.get(code);
+            if (counter == null) {
+                // Solo la primera vez que aparece cada código
+                byStatus.compareAndSet(code, null, new LongAdder());
+                counter = byStatus.get(code);
+            }
+            counter.increment();
+            latency[code / 100].observe(elapsedNanos);
+        }
+    }
+
+    private record Gauge(String name, String help, LongSupplier value) {
+    }
+
+    // Filtro que mide cada petición de un contexto; va el primero para contar también los 429/503
+    Filter filter(String handler) {
+        RequestMetrics metrics = requests.computeIfAbsent(handler, h -> new RequestMetrics());
+        return new Filter() {
+            @Override
+            public String description() {
+                return "Métricas de " + handler;
+            }
+
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                long start = System.nanoTime();
+                try {
+                    chain.doFilter(exchange);
+                } finally {
+                    metrics.record(exchange.getResponseCode(), System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    void registerGauge(String name, String help, LongSupplier value) {
+        gauges.add(new Gauge(name, help, value));
+    }
+
+    // Carpeta del índice ("" para la raíz) o "blob" para las URLs del almacén por contenido
+    LongAdder downloadedBytes(String category) {
+        return switch (category) {
+            case "mods" -> downloadedBytes[0];
+            case "shaders" -> downloadedBytes[1];
+            case "resourcepacks" -> downloadedBytes[2];
+            case "blob" -> downloadedBytes[4];
+            case "bundle" -> downloadedBytes[5];
+            default -> downloadedBytes[3];
+        };
+    }
+
+    void recordUpload(int kind, long bytes, long elapsedNanos) {
+        uploadBytes[kind].observe(bytes);
+        uploadDuration[kind].observe(elapsedNanos);
+    }
+
+    public void recordConfigLoad() {
+        configLoads.increment();
+    }
+
+    public void recordConfigSave(boolean success) {
+        (success ? configSaves : configSaveFailures).increment();
+    }
+
+    void recordPublicIpLookup(long elapsedNanos, boolean success) {
+        publicIpLookup.observe(elapsedNanos);
+        if (!success) {
+            publicIpFailures.increment();
+        }
+    }
+
+    String render() {
+        StringBuilder out = new StringBuilder(8192);
+
+        header(out, "neodiscover_http_requests_total", "counter", "Peticiones HTTP atendidas por handler y código de estado");
+        requests.forEach((handler, metrics) -> {
+            for (int code = 0; code < 600; code++) {
+                LongAdder counter = metrics.byStatus.get(code);
+                if (counter != null) {
+                    out.append("neodiscover_http_requests_total{handler=\"").append(handler)
+                        .append("\",status=\"").append(code == 0 ? "unknown" : Integer.toString(code)).append("\"} ")
+                        .append(counter.sum()).append('\n');
+                }
+            }
+        });
+
+        header(out, "neodiscover_http_request_duration_seconds", "histogram", "Duración de las peticiones HTTP, incluido el envío del cuerpo");
+        requests.forEach((handler, metrics) -> {
+            for (int i = 0; i < STATUS_CLASSES.length; i++) {
+                if (metrics.latency[i].isEmpty()) {
+                    continue;
+                }
+                histogram(out, "neodiscover_http_request_duration_seconds",
+                    "handler=\"" + handler + "\",status=\"" + STATUS_CLASSES[i] + "\"", metrics.latency[i], NANOS_PER_SECOND);
+            }
+        });
+
+        header(out, "neodiscover_download_bytes_total", "counter", "Bytes enviados en /downloads por categoría");
+        for (int i = 0; i < DOWNLOAD_CATEGORIES.length; i++) {
+            out.append("neodiscover_download_bytes_total{category=\"").append(DOWNLOAD_CATEGORIES[i]).append("\"} ")
+                .append(downloadedBytes[i].sum()).append('\n');
+        }
+
+        header(out, "neodiscover_upload_size_bytes", "histogram", "Tamaño de los archivos subidos");
+        for (int i = 0; i < UPLOAD_KINDS.length; i++) {
+            histogram(out, "neodiscover_upload_size_bytes", "kind=\"" + UPLOAD_KINDS[i] + "\"", uploadBytes[i], 1);
+        }
+        header(out, "neodiscover_upload_duration_seconds", "histogram", "Duración de las subidas (petición multipart o sesión por trozos)");
+        for (int i = 0; i < UPLOAD_KINDS.length; i++) {
+            histogram(out, "neodiscover_upload_duration_seconds", "kind=\"" + UPLOAD_KINDS[i] + "\"", uploadDuration[i], NANOS_PER_SECOND);
+        }
+
+        counter(out, "neodiscover_config_loads_total", "Lecturas del archivo de configuración", configLoads.sum());
+        counter(out, "neodiscover_config_saves_total", "Escrituras del archivo de configuración", configSaves.sum());
+        counter(out, "neodiscover_config_save_failures_total", "Escrituras fallidas del archivo de configuración", configSaveFailures.sum());
+
+        header(out, "neodiscover_public_ip_lookup_duration_seconds", "histogram", "Duración de la detección de la IP pública");
+        histogram(out, "neodiscover_public_ip_lookup_duration_seconds", null, publicIpLookup, NANOS_PER_SECOND);
+        counter(out, "neodiscover_public_ip_lookup_failures_total", "Detecciones de IP pública sin respuesta válida", publicIpFailures.sum());
+
+        for (Gauge gauge : gauges) {
+            header(out, gauge.name(), "gauge", gauge.help());
+            out.append(gauge.name()).append(' ').append(gauge.value().getAsLong()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, "counter", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String name, String labels, Histogram histogram, double scale) {
+        String prefix = labels != null ? labels + "," : "";
+        long cumulative = 0;
+        for (int i = 0; i <= histogram.bounds.length; i++) {
+            cumulative += histogram.counts[i].sum();
+            String le = i < histogram.bounds.length ? format(histogram.bounds[i] / scale) : "+Inf";
+            out.append(name).append("_bucket{").append(prefix).append("le=\"").append(le).append("\"} ")
+                .append(cumulative).append('\n');
+        }
+        String suffix = labels != null ? "{" + labels + "}" : "";
+        out.append(name).append("_sum").append(suffix).append(' ').append(format(histogram.sum.sum() / scale)).append('\n');
+        out.append(name).append("_count").append(suffix).append(' ').append(cumulative).append('\n');
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,278 @@
+package com.neodiscover.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.neodiscover.NeoDiscover;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+/**
+ * Metadatos de los jars de downloads/mods (modId, versión, nombre, lado y dependencias) sacados de
+ * su META-INF/neoforge.mods.toml.
+ *
+ * Se indexan por SHA-256, así que cada contenido se lee una sola vez: al subirlo o al hashearlo
+ * tras descubrirlo en disco. De cada jar solo se leen el directorio central del zip y el
+ * descriptor (y el manifiesto si la versión es ${file.jarVersion}). El índice se guarda en
+ * downloads/.neodiscover/mods.json y los jars se leen en paralelo en segundo plano.
+ */
+public class ModMetadataIndex {
+    private static final String CACHE_FOLDER = ".neodiscover";
+    private static final String CACHE_FILE = "mods.json";
+    // Se sube cuando cambia cómo se derivan los metadatos: un índice de otra versión se reconstruye
+    private static final int CACHE_FORMAT = 2;
+    private static final String[] DESCRIPTORS = {"META-INF/neoforge.mods.toml", "META-INF/mods.toml"};
+    // Un descriptor real ocupa unos pocos KiB
+    private static final int MAX_DESCRIPTOR_BYTES = 1024 * 1024;
+    // Marca de "jar sin descriptor" para no volver a abrirlo
+    private static final JsonObject NONE = new JsonObject();
+
+    private final FileManager fileManager;
+    private final FileHashCache fileHashCache;
+    private final Gson gson = new Gson();
+    private final Map<String, JsonObject> entries = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> pending = new ConcurrentHashMap<>();
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private final ExecutorService readers;
+    private final ScheduledExecutorService saver;
+    private volatile Path loadedFrom;
+
+    public ModMetadataIndex(FileManager fileManager, FileHashCache fileHashCache) {
+        this.fileManager = fileManager;
+        this.fileHashCache = fileHashCache;
+        AtomicInteger counter = new AtomicInteger();
+        this.readers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread thread = new Thread(r, "NeoDiscover-ModReader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.saver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "NeoDiscover-ModIndexWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Cada hash nuevo (subida o archivo descubierto) es un contenido que quizá falte leer
+        fileHashCache.addHashListener(this::onHash);
+    }
+
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    // Carga el índice de disco (si la carpeta downloads ha cambiado) y lee los jars ya hasheados que falten
+    public void start() {
+        Path downloadsPath = fileManager.getDownloadsPath();
+        if (!downloadsPath.equals(loadedFrom)) {
+            load(downloadsPath);
+        }
+        int queued = 0;
+        for (DownloadsIndex.FileEntry file : fileManager.getIndex().list("mods")) {
+            FileHashCache.Entry hashes = fileHashCache.get(file);
+            if (hashes != null && isModJar(file.getPath()) && schedule(hashes.getSha256(), file.getPath())) {
+                queued++;
+            }
+        }
+        if (queued > 0) {
+            NeoDiscover.LOGGER.info("Leyendo metadatos de {} mod(s) en segundo plano", queued);
+        }
+    }
+
+    public void stop() {
+        readers.shutdownNow();
+        saver.shutdown();
+        save();
+    }
+
+    // Copia los metadatos del contenido indicado en la entrada del perfil; no hace nada si aún no
+    // se han leído o el jar no tiene descriptor
+    public void addTo(JsonObject mod, String sha256) {
+        JsonObject info = entries.get(sha256);
+        if (info == null || info == NONE) {
+            return;
+        }
+        for (Map.Entry<String, JsonElement> item : info.entrySet()) {
+            mod.add(item.getKey(), item.getValue().deepCopy());
+        }
+    }
+
+    private void onHash(Path file, FileHashCache.Entry hashes) {
+        if (isModJar(file)) {
+            schedule(hashes.getSha256(), file);
+        }
+    }
+
+    private boolean isModJar(Path file) {
+        return file.getFileName().toString().endsWith(".jar")
+            && fileManager.getDownloadsPath().resolve("mods").equals(file.getParent());
+    }
+
+    private boolean schedule(String sha256, Path file) {
+        if (entries.containsKey(sha256) || pending.putIfAbsent(sha256, Boolean.TRUE) != null) {
+            return false;
+        }
+        try {
+            readers.execute(() -> {
+                try {
+                    JsonObject info = read(file);
+                    entries.put(sha256, info != null ? info : NONE);
+                    scheduleSave();
+                    if (info != null) {
+                        notifyChangeListeners();
+                    } else {
+                        Diagnostics.log("{} no tiene neoforge.mods.toml", file.getFileName());
+                    }
+                } catch (Exception e) {
+                    NeoDiscover.LOGGER.warn("No se pudieron leer los metadatos de {}: {}", file, e.getMessage());
+                } finally {
+                    pending.remove(sha256);
+                }
+            });
+            return true;
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            pending.remove(sha256);
+            return false;
+        }
+    }
+
+    // Metadatos del jar o null si no tiene descriptor (o no es un zip). JarFile solo lee el
+    // directorio central y las entradas que se piden
+    static JsonObject read(Path jar) throws IOException {
+        try (JarFile zip = new JarFile(jar.toFile(), false)) {
+            for (String name : DESCRIPTORS) {
+                ZipEntry entry = zip.getEntry(name);
+                if (entry == null) {
+                    continue;
+                }
+                String toml;
+                try (InputStream in = zip.getInputStream(entry)) {
+                    byte[] data = in.readNBytes(MAX_DESCRIPTOR_BYTES + 1);
+                    if (data.length > MAX_DESCRIPTOR_BYTES) {
+                        throw new IOException(name + " demasiado grande");
+                    }
+                    toml = new String(data, StandardCharsets.UTF_8);
+                }
+                String jarVersion = null;
+                if (toml.contains("${file.jarVersion}")) {
+                    Manifest manifest = zip.getManifest();
+                    jarVersion = manifest != null ? manifest.getMainAttributes().getValue(Attributes.Name.IMPLEMENTATION_VERSION) : null;
+                }
+                return ModsToml.parse(toml, jarVersion);
+            }
+        } catch (java.util.zip.ZipException e) {
+            // No es un zip válido: se trata como un jar sin descriptor
+            Diagnostics.log("{} no es un jar válido: {}", jar.getFileName(), e.getMessage());
+        }
+        return null;
+    }
+
+    private void load(Path downloadsPath) {
+        entries.clear();
+        loadedFrom = downloadsPath;
+        Path cacheFile = downloadsPath.resolve(CACHE_FOLDER).resolve(CACHE_FILE);
+        if (!Files.exists(cacheFile)) {
+            return;
+        }
+        try {
+            JsonObject json = JsonParser.parseString(Files.readString(cacheFile, StandardCharsets.UTF_8)).getAsJsonObject();
+            if (!json.has("format") || json.get("format").getAsInt() != CACHE_FORMAT) {
+                NeoDiscover.LOGGER.info("Índice de mods de otra versión, se reconstruirá");
+                return;
+            }
+            for (Map.Entry<String, JsonElement> item : json.getAsJsonObject("mods").entrySet()) {
+                JsonObject value = item.getValue().getAsJsonObject();
+                entries.put(item.getKey(), value.isEmpty() ? NONE : value);
+            }
+            NeoDiscover.LOGGER.info("Índice de mods cargado: {} entrada(s)", entries.size());
+        } catch (Exception e) {
+            NeoDiscover.LOGGER.warn("Índice de mods inválido, se reconstruirá", e);
+            entries.clear();
+        }
+    }
+
+    private void scheduleSave() {
+        // Agrupar escrituras: como mucho una cada pocos segundos
+        if (saveScheduled.compareAndSet(false, true)) {
+            try {
+                saver.schedule(() -> {
+                    saveScheduled.set(false);
+                    save();
+                }, 2, TimeUnit.SECONDS);
+            } catch (java.util.concurrent.RejectedExecutionException e) {
+                saveScheduled.set(false);
+            }
+        }
+    }
+
+    private synchronized void save() {
+        Path downloadsPath = loadedFrom;
+        if (downloadsPath == null) {
+            return;
+        }
+        // Solo los contenidos que siguen en downloads/mods
+        Set<String> present = new HashSet<>();
+        for (DownloadsIndex.FileEntry file : fileManager.getIndex().list("mods")) {
+            FileHashCache.Entry hashes = fileHashCache.get(file);
+            if (hashes != null) {
+                present.add(hashes.getSha256());
+            }
+        }
+        JsonObject mods = new JsonObject();
+        for (Map.Entry<String, JsonObject> item : entries.entrySet()) {
+            if (present.contains(item.getKey())) {
+                mods.add(item.getKey(), item.getValue());
+            }
+        }
+        JsonObject json = new JsonObject();
+        json.addProperty("format", CACHE_FORMAT);
+        json.add("mods", mods);
+        try {
+            Path folder = downloadsPath.resolve(CACHE_FOLDER);
+            Files.createDirectories(folder);
+            Path cacheFile = folder.resolve(CACHE_FILE);
+            Path temp = folder.resolve(CACHE_FILE + ".tmp");
+            Files.writeString(temp, gson.toJson(json), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            NeoDiscover.LOGGER.warn("No se pudo guardar el índice de mods", e);
+        }
+    }
+
+    private void notifyChangeListeners() {
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                NeoDiscover.LOGGER.warn("Error en listener del índice de mods", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.neodiscover.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Lector mínimo de META-INF/neoforge.mods.toml: lo justo del formato TOML que usan estos archivos
+ * (pares clave = valor, tablas [[mods]] y [[dependencies.modid]], cadenas simples y multilínea,
+ * arrays y tablas en línea). Las claves que no interesan se leen y se descartan.
+ */
+final class ModsToml {
+    private final String text;
+    private int pos;
+
+    private ModsToml(String text) {
+        this.text = text;
+    }
+
+    // Datos del primer mod del descriptor; null si no declara ninguno con modId
+    static JsonObject parse(String toml, String jarVersion) {
+        Map<String, List<Map<String, Object>>> tables = new ModsToml(toml).read();
+        List<Map<String, Object>> mods = tables.get("mods");
+        if (mods == null || mods.isEmpty() || !(mods.get(0).get("modId") instanceof String modId)) {
+            return null;
+        }
+        Map<String, Object> mod = mods.get(0);
+        JsonObject info = new JsonObject();
+        info.addProperty("mod_id", modId);
+        String version = text(mod.get("version"));
+        // ${file.jarVersion} se resuelve con el Implementation-Version del manifiesto
+        if (version != null && version.contains("${file.jarVersion}") && jarVersion != null) {
+            version = version.replace("${file.jarVersion}", jarVersion);
+        }
+        if (version != null) {
+            info.addProperty("version", version);
+        }
+        String displayName = text(mod.get("displayName"));
+        info.addProperty("display_name", displayName != null ? displayName : modId);
+        // displayTest: IGNORE_SERVER_VERSION lo declaran los mods solo de servidor (el cliente no
+        // necesita tenerlo) e IGNORE_ALL_VERSION los solo de cliente
+        String displayTest = text(mod.get("displayTest"));
+        info.addProperty("side", "IGNORE_SERVER_VERSION".equals(displayTest) ? "server"
+            : "IGNORE_ALL_VERSION".equals(displayTest) ? "client" : "both");
+
+        JsonArray dependencies = new JsonArray();
+        for (Map<String, Object> dependency : tables.getOrDefault("dependencies." + modId, List.of())) {
+            String dependencyId = text(dependency.get("modId"));
+            if (dependencyId == null) {
+                continue;
+            }
+            JsonObject entry = new JsonObject();
+            entry.addProperty("mod_id", dependencyId);
+            String type = text(dependency.get("type"));
+            if (type == null) {
+                // Formato anterior: mandatory = true/false
+                type = "false".equals(text(dependency.get("mandatory"))) ? "optional" : "required";
+            }
+            entry.addProperty("type", type.toLowerCase(Locale.ROOT));
+            String versionRange = text(dependency.get("versionRange"));
+            if (versionRange != null) {
+                entry.addProperty("version_range", versionRange);
+            }
+            String side = text(dependency.get("side"));
+            entry.addProperty("side", side != null ? side.toLowerCase(Locale.ROOT) : "both");
+            dependencies.add(entry);
+        }
+        info.add("dependencies", dependencies);
+        return info;
+    }
+
+    private static String text(Object value) {
+        return value instanceof String string ? string : null;
+    }
+
+    // Tablas [[nombre]] en orden; las claves de la raíz quedan bajo ""
+    private Map<String, List<Map<String, Object>>> read() {
+        Map<String, List<Map<String, Object>>> tables = new HashMap<>();
+        Map<String, Object> current = new LinkedHashMap<>();
+        tables.computeIfAbsent("", k -> new ArrayList<>()).add(current);
+        while (true) {
+            skipBlank(true);
+            if (pos >= text.length()) {
+                return tables;
+            }
+            if (text.charAt(pos) == '[') {
+                boolean array = text.startsWith("[[", pos);
+                int end = text.indexOf(array ? "]]" : "]", pos);
+                if (end < 0) {
+                    return tables;
+                }
+                String name = unquoteKey(text.substring(pos + (array ? 2 : 1), end));
+                pos = end + (array ? 2 : 1);
+                current = new LinkedHashMap<>();
+                if (array) {
+                    tables.computeIfAbsent(name, k -> new ArrayList<>()).add(current);
+                }
+                // Las tablas [nombre] normales no se usan: sus claves se leen en un mapa descartado
+                continue;
+            }
+            int eq = text.indexOf('=', pos);
+            int newline = text.indexOf('\n', pos);
+            if (eq < 0 || (newline >= 0 && newline < eq)) {
+                // Línea que no es clave = valor: ignorarla
+                pos = newline < 0 ? text.length() : newline + 1;
+                continue;
+            }
+            String key = unquoteKey(text.substring(pos, eq));
+            pos = eq + 1;
+            current.put(key, value());
+        }
+    }
+
+    private Object value() {
+        skipBlank(false);
+        if (pos >= text.length()) {
+            return null;
+        }
+        char c = text.charAt(pos);
+        if (text.startsWith("\"\"\"", pos) || text.startsWith("'''", pos)) {
+            String delimiter = text.substring(pos, pos + 3);
+            int end = text.indexOf(delimiter, pos + 3);
+            if (end < 0) {
+                end = text.length();
+            }
+            String raw = text.substring(pos + 3, end);
+            pos = Math.min(text.length(), end + 3);
+            // Un salto de línea justo tras la apertura no forma parte del valor
+            raw = raw.startsWith("\r\n") ? raw.substring(2) : raw.startsWith("\n") ? raw.substring(1) : raw;
+            return c == '"' ? unescape(raw) : raw;
+        }
+        if (c == '"') {
+            StringBuilder value = new StringBuilder();
+            pos++;
+            while (pos < text.length() && text.charAt(pos) != '"' && text.charAt(pos) != '\n') {
+                if (text.charAt(pos) == '\\' && pos + 1 < text.length()) {
+                    value.append(text, pos, pos + 2);
+                    pos += 2;
+                } else {
+                    value.append(text.charAt(pos++));
+                }
+            }
+            pos++;
+            return unescape(value.toString());
+        }
+        if (c == '\'') {
+            int end = text.indexOf('\'', pos + 1);
+            if (end < 0) {
+                end = text.length();
+            }
+            String value = text.substring(pos + 1, end);
+            pos = end + 1;
+            return value;
+        }
+        if (c == '[') {
+            List<Object> values = new ArrayList<>();
+            pos++;
+            while (true) {
+                skipBlank(true);
+                if (pos >= text.length()) {
+                    return values;
+                }
+                if (text.charAt(pos) == ']') {
+                    pos++;
+                    return values;
+                }
+                if (text.charAt(pos) == ',') {
+                    pos++;
+                    continue;
+                }
+                values.add(value());
+            }
+        }
+        if (c == '{') {
+            Map<String, Object> values = new LinkedHashMap<>();
+            pos++;
+            while (true) {
+                skipBlank(true);
+                if (pos >= text.length()) {
+                    return values;
+                }
+                if (text.charAt(pos) == '}') {
+                    pos++;
+                    return values;
+                }
+                if (text.charAt(pos) == ',') {
+                    pos++;
+                    continue;
+                }
+                int eq = text.indexOf('=', pos);
+                if (eq < 0) {
+                    pos = text.length();
+                    return values;
+                }
+                String key = unquoteKey(text.substring(pos, eq));
+                pos = eq + 1;
+                values.put(key, value());
+            }
+        }
+        // Número, booleano o fecha: se guarda como texto
+        int start = pos;
+        while (pos < text.length() && "\n\r,]}#".indexOf(text.charAt(pos)) < 0) {
+            pos++;
+        }
+        return text.substring(start, pos).trim();
+    }
+
+    // Espacios y comentarios; con newlines = true también saltos de línea
+    private void skipBlank(boolean newlines) {
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c == '#') {
+                while (pos < text.length() && text.charAt(pos) != '\n') {
+                    pos++;
+                }
+            } else if (c == ' ' || c == '\t' || (newlines && (c == '\n' || c == '\r'))) {
+                pos++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static String unquoteKey(String key) {
+        key = key.trim();
+        if (key.length() >= 2 && (key.charAt(0) == '"' || key.charAt(0) == '\'') && key.charAt(key.length() - 1) == key.charAt(0)) {
+            return key.substring(1, key.length() - 1);
+        }
+        return key;
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 >= value.length()) {
+                out.append(c);
+                continue;
+            }
+            char next = value.charAt(++i);
+            switch (next) {
+                case 'n' -> out.append('\n');
+                case 't' -> out.append('\t');
+                case 'r' -> out.append('\r');
+                case '"' -> out.append('"');
+                case '\\' -> out.append('\\');
+                case 'u' -> {
+                    if (i + 4 < value.length()) {
+                        try {
+                            out.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+                            i += 4;
+                        } catch (NumberFormatException e) {
+                            out.append("\\u");
+                        }
+                    } else {
+                        out.append("\\u");
+                    }
+                }
+                // Barra al final de línea: continúa en la siguiente sin espacios iniciales
+                case '\n', '\r' -> {
+                    while (i + 1 < value.length() && Character.isWhitespace(value.charAt(i + 1))) {
+                        i++;
+                    }
+                }
+                default -> out.append('\\').append(next);
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,339 @@
+package com.neodiscover.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Parser de multipart/form-data en streaming con memoria acotada.
+ *
+ * Lee el cuerpo con un buffer fijo y busca el delimitador con Boyer-Moore-Horspool (la tabla de
+ * saltos se calcula una vez por petición). Cada parte se expone como un InputStream que termina
+ * en el siguiente delimitador, de modo que los archivos pueden escribirse directamente a disco.
+ */
+final class MultipartStreamParser {
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+
+    private final InputStream in;
+    private final byte[] delimiter; // CRLF + "--" + boundary
+    private final int[] skip = new int[256];
+    private final byte[] buffer;
+    private int head;
+    private int tail;
+    private boolean eof;
+    private boolean finished;
+    private PartInputStream currentPart;
+
+    MultipartStreamParser(InputStream in, String boundary) {
+        this(in, boundary, DEFAULT_BUFFER_SIZE);
+    }
+
+    MultipartStreamParser(InputStream in, String boundary, int bufferSize) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[Math.max(bufferSize, delimiter.length * 2 + 4)];
+
+        // Tabla de saltos de Horspool: distancia desde la última aparición de cada byte
+        Arrays.fill(skip, delimiter.length);
+        for (int i = 0; i < delimiter.length - 1; i++) {
+            skip[delimiter[i] & 0xFF] = delimiter.length - 1 - i;
+        }
+
+        // El primer delimitador no va precedido de CRLF: se simula para tratarlo igual que el resto
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        tail = 2;
+    }
+
+    static final class Part {
+        final String fieldName;
+        final String fileName;
+        final String contentType;
+        final InputStream body;
+
+        Part(String fieldName, String fileName, String contentType, InputStream body) {
+            this.fieldName = fieldName;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        boolean isFile() {
+            return fileName != null;
+        }
+    }
+
+    // Devuelve la siguiente parte o null al llegar al delimitador final. La parte anterior se
+    // descarta si el llamador no la ha leído entera
+    Part nextPart() throws IOException {
+        if (finished) {
+            return null;
+        }
+        if (currentPart != null) {
+            currentPart.drain();
+            currentPart = null;
+        } else if (!skipToFirstDelimiter()) {
+            finished = true;
+            return null;
+        }
+
+        // Tras el delimitador: "--" indica el final, si no viene CRLF y las cabeceras de la parte
+        if (!ensure(2)) {
+            throw new IOException("Cuerpo multipart truncado");
+        }
+        if (buffer[head] == '-' && buffer[head + 1] == '-') {
+            finished = true;
+            return null;
+        }
+        skipLineEnd();
+
+        String headers = readHeaders();
+        String fieldName = null;
+        String fileName = null;
+        String contentType = null;
+        for (String line : headers.split("\r?\n")) {
+            String lower = line.toLowerCase();
+            if (lower.startsWith("content-disposition:")) {
+                fieldName = headerParam(line, "name");
+                fileName = headerParam(line, "filename");
+            } else if (lower.startsWith("content-type:")) {
+                contentType = line.substring("content-type:".length()).trim();
+            }
+        }
+
+        currentPart = new PartInputStream();
+        return new Part(fieldName, fileName, contentType, currentPart);
+    }
+
+    // Lee una parte de texto con un límite de tamaño
+    static String readText(InputStream body, long maxBytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = body.read(chunk)) != -1) {
+            total += read;
+            if (total > maxBytes) {
+                throw new PayloadTooLargeException("Campo de formulario demasiado grande (máximo " + maxBytes + " bytes)");
+            }
+            out.write(chunk, 0, read);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String headerParam(String line, String param) {
+        // Busca param="valor" evitando que "name" coincida dentro de "filename"
+        String needle = param + "=\"";
+        int from = 0;
+        while (true) {
+            int idx = line.indexOf(needle, from);
+            if (idx == -1) {
+                return null;
+            }
+            char before = idx > 0 ? line.charAt(idx - 1) : ' ';
+            if (before == ' ' || before == ';' || before == '\t') {
+                int start = idx + needle.length();
+                int end = line.indexOf('"', start);
+                return end == -1 ? null : line.substring(start, end);
+            }
+            from = idx + needle.length();
+        }
+    }
+
+    private boolean skipToFirstDelimiter() throws IOException {
+        // Descarta el preámbulo hasta el primer delimitador
+        while (true) {
+            int idx = indexOfDelimiter();
+            if (idx >= 0) {
+                head = idx + delimiter.length;
+                return true;
+            }
+            if (eof) {
+                return false;
+            }
+            head = Math.max(head, tail - delimiter.length + 1);
+            fill();
+        }
+    }
+
+    private void skipLineEnd() throws IOException {
+        // Espacios opcionales (transport padding) y luego CRLF o LF
+        while (ensure(1) && (buffer[head] == ' ' || buffer[head] == '\t')) {
+            head++;
+        }
+        if (ensure(2) && buffer[head] == '\r' && buffer[head + 1] == '\n') {
+            head += 2;
+        } else if (ensure(1) && buffer[head] == '\n') {
+            head += 1;
+        }
+    }
+
+    private String readHeaders() throws IOException {
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream(256);
+        int lineLength = 0;
+        while (true) {
+            if (!ensure(1)) {
+                throw new IOException("Cuerpo multipart truncado en las cabeceras de una parte");
+            }
+            byte b = buffer[head++];
+            if (b == '\n') {
+                if (lineLength == 0) {
+                    return headerBytes.toString(StandardCharsets.UTF_8);
+                }
+                headerBytes.write('\n');
+                lineLength = 0;
+            } else if (b != '\r') {
+                headerBytes.write(b);
+                lineLength++;
+            }
+            if (headerBytes.size() > MAX_HEADER_BYTES) {
+                throw new IOException("Cabeceras de parte multipart demasiado grandes");
+            }
+        }
+    }
+
+    // Búsqueda Boyer-Moore-Horspool del delimitador en buffer[head, tail)
+    private int indexOfDelimiter() {
+        int last = delimiter.length - 1;
+        int i = head;
+        while (i + last < tail) {
+            int j = last;
+            while (buffer[i + j] == delimiter[j]) {
+                if (j == 0) {
+                    return i;
+                }
+                j--;
+            }
+            i += skip[buffer[i + last] & 0xFF];
+        }
+        return -1;
+    }
+
+    // Garantiza al menos n bytes disponibles salvo fin de stream
+    private boolean ensure(int n) throws IOException {
+        while (tail - head < n) {
+            if (eof) {
+                return false;
+            }
+            fill();
+        }
+        return true;
+    }
+
+    private void fill() throws IOException {
+        if (head > 0) {
+            System.arraycopy(buffer, head, buffer, 0, tail - head);
+            tail -= head;
+            head = 0;
+        }
+        int read = in.read(buffer, tail, buffer.length - tail);
+        if (read == -1) {
+            eof = true;
+        } else {
+            tail += read;
+        }
+    }
+
+    private final class PartInputStream extends InputStream {
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                int idx = indexOfDelimiter();
+                int available;
+                if (idx >= 0) {
+                    available = idx - head;
+                    if (available == 0) {
+                        // Fin de la parte: dejar el cursor tras el delimitador
+                        head = idx + delimiter.length;
+                        done = true;
+                        return -1;
+                    }
+                } else {
+                    // Sin delimitador a la vista: solo es seguro entregar lo que no pueda ser su inicio
+                    available = tail - head - (delimiter.length - 1);
+                    if (eof) {
+                        throw new IOException("Cuerpo multipart truncado: falta el delimitador final");
+                    }
+                }
+                if (available > 0) {
+                    int count = Math.min(len, available);
+                    System.arraycopy(buffer, head, b, off, count);
+                    head += count;
+                    return count;
+                }
+                fill();
+            }
+        }
+
+        void drain() throws IOException {
+            byte[] scratch = new byte[8192];
+            while (read(scratch, 0, scratch.length) != -1) {
+                // descartar
+            }
+        }
+    }
+
+    // Corta la lectura del cuerpo en cuanto supera el máximo permitido (cuerpos sin Content-Length)
+    static final class BoundedInputStream extends java.io.FilterInputStream {
+        private final long maxBytes;
+        private long count;
+
+        BoundedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        private void count(int read) throws PayloadTooLargeException {
+            count += read;
+            if (count > maxBytes) {
+                throw new PayloadTooLargeException("Cuerpo de la petición demasiado grande (máximo " + maxBytes + " bytes)");
+            }
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    static final class PayloadTooLargeException extends IOException {
+        PayloadTooLargeException(String message) {
+            super(message);
+        }
+    }
+}
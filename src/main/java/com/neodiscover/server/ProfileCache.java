@@ -0,0 +1,252 @@
+package com.neodiscover.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.neodiscover.NeoDiscover;
+import com.neodiscover.config.ConfigSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Snapshots en memoria de profiles.json y de cada /profiles/{id}.json, ya serializados a UTF-8.
+ *
+ * Cada perfil se construye la primera vez que se pide y se guarda con la configuración efectiva
+ * que lo produjo: un cambio de configuración solo reconstruye los perfiles cuya configuración
+ * cambió. {@link #invalidate()} (subidas de archivos, hashes, IP pública o eventos del servidor)
+ * los descarta todos. profiles.json se compone a partir de los perfiles en caché.
+ *
+ * Si varios lectores encuentran un snapshot caducado a la vez, solo uno lo reconstruye; el resto
+ * recibe la copia anterior mientras tanto.
+ */
+public class ProfileCache {
+    // Por debajo de este tamaño la cabecera gzip no compensa
+    private static final int MIN_COMPRESS_SIZE = 256;
+
+    private final ServerInfoCollector infoCollector;
+    private final AtomicLong generation = new AtomicLong();
+    // profiles.json completo
+    private final Slot all = new Slot("profiles.json");
+    private final Map<String, Slot> profiles = new ConcurrentHashMap<>();
+
+    public ProfileCache(ServerInfoCollector infoCollector) {
+        this.infoCollector = infoCollector;
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        NeoDiscover.LOGGER.debug("Snapshots de perfiles invalidados");
+    }
+
+    // profiles.json con todos los perfiles
+    public Snapshot get() {
+        ConfigSnapshot config = infoCollector.getConfig();
+        List<String> ids = config.getProfileIds();
+        // Olvidar los perfiles que ya no están en la configuración
+        profiles.keySet().retainAll(ids);
+        List<Snapshot> parts = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            parts.add(get(config, id));
+        }
+        return all.get(
+            current -> current.parts.equals(parts) && (all.checkedVersion == config.getVersion()
+                || current.root.equals(infoCollector.collectRoot(config))),
+            (previous, gen) -> {
+                JsonObject root = infoCollector.collectRoot(config);
+                JsonObject profilesJson = root.deepCopy();
+                JsonArray array = new JsonArray();
+                for (Snapshot part : parts) {
+                    array.addAll(part.profilesJson.getAsJsonArray("profiles"));
+                }
+                profilesJson.add("profiles", array);
+                return create(gen, previous, profilesJson, null, root, parts);
+            },
+            config.getVersion());
+    }
+
+    // Documento de un solo perfil; null si la configuración no lo define
+    public Snapshot get(String profileId) {
+        ConfigSnapshot config = infoCollector.getConfig();
+        if (!config.getProfileIds().contains(profileId)) {
+            return null;
+        }
+        return get(config, profileId);
+    }
+
+    private Snapshot get(ConfigSnapshot config, String profileId) {
+        Slot slot = profiles.computeIfAbsent(profileId, Slot::new);
+        return slot.get(
+            // Otra versión de la configuración puede dejar este perfil igual
+            current -> slot.checkedVersion == config.getVersion() || current.settings.sameAs(config.forProfile(profileId)),
+            (previous, gen) -> {
+                JsonObject profilesJson = infoCollector.collectProfileInfo(config, profileId);
+                if (profilesJson == null) {
+                    throw new IllegalStateException("Perfil desconocido: " + profileId);
+                }
+                return create(gen, previous, profilesJson, config.forProfile(profileId), null, List.of());
+            },
+            config.getVersion());
+    }
+
+    private Snapshot create(long gen, Snapshot previous, JsonObject profilesJson, ConfigSnapshot settings, JsonObject root, List<Snapshot> parts) {
+        byte[] body = profilesJson.toString().getBytes(StandardCharsets.UTF_8);
+        String etag = contentEtag(body);
+        
+        // Si el contenido no ha cambiado se conserva la fecha para que If-Modified-Since siga valiendo
+        long lastModified = previous != null && previous.etag.equals(etag)
+            ? previous.lastModified
+            : HttpUtil.truncateToSeconds(System.currentTimeMillis());
+        
+        // Variante comprimida calculada una sola vez por versión del perfil
+        byte[] gzipBody = body.length >= MIN_COMPRESS_SIZE ? gzip(body) : null;
+        if (gzipBody != null && gzipBody.length >= body.length) {
+            gzipBody = null;
+        }
+        return new Snapshot(gen, profilesJson, body, gzipBody, etag, lastModified, settings, root, parts);
+    }
+
+    private interface Builder {
+        Snapshot build(Snapshot previous, long generation);
+    }
+
+    private final class Slot {
+        private final String name;
+        private final AtomicReference<CompletableFuture<Snapshot>> inFlight = new AtomicReference<>();
+        private volatile Snapshot snapshot;
+        // Última versión de la configuración con la que se comprobó que el snapshot sigue valiendo
+        private volatile long checkedVersion = -1;
+
+        Slot(String name) {
+            this.name = name;
+        }
+
+        Snapshot get(Predicate<Snapshot> stillValid, Builder builder, long configVersion) {
+            Snapshot current = snapshot;
+            if (current != null && current.generation == generation.get() && stillValid.test(current)) {
+                checkedVersion = configVersion;
+                return current;
+            }
+
+            CompletableFuture<Snapshot> mine = new CompletableFuture<>();
+            CompletableFuture<Snapshot> running = inFlight.compareAndExchange(null, mine);
+            if (running != null) {
+                // Otra petición ya está reconstruyendo: servir la copia anterior si existe
+                if (current != null) {
+                    return current;
+                }
+                return running.join();
+            }
+
+            try {
+                // Leer la generación antes de construir: si alguien invalida durante la construcción,
+                // el siguiente lector volverá a reconstruir
+                Snapshot fresh = builder.build(current, generation.get());
+                snapshot = fresh;
+                checkedVersion = configVersion;
+                mine.complete(fresh);
+                NeoDiscover.LOGGER.debug("Snapshot de {} reconstruido ({} bytes, gzip {} bytes, ETag {})",
+                    name, fresh.body.length, fresh.gzipBody != null ? fresh.gzipBody.length : -1, fresh.etag);
+                return fresh;
+            } catch (RuntimeException e) {
+                mine.completeExceptionally(e);
+                if (current != null) {
+                    NeoDiscover.LOGGER.error("Error al reconstruir {}, sirviendo la versión anterior", name, e);
+                    return current;
+                }
+                throw e;
+            } finally {
+                inFlight.set(null);
+            }
+        }
+    }
+
+    static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out, 8192)) {
+            gzipOut.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String contentEtag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    public static final class Snapshot {
+        private final long generation;
+        private final JsonObject profilesJson;
+        private final byte[] body;
+        private final byte[] gzipBody;
+        private final String etag;
+        private final long lastModified;
+        // Configuración efectiva del perfil (snapshots de un perfil)
+        private final ConfigSnapshot settings;
+        // Datos del servidor y perfiles de los que se compuso (profiles.json)
+        private final JsonObject root;
+        private final List<Snapshot> parts;
+
+        private Snapshot(long generation, JsonObject profilesJson, byte[] body, byte[] gzipBody, String etag, long lastModified,
+                         ConfigSnapshot settings, JsonObject root, List<Snapshot> parts) {
+            this.generation = generation;
+            this.profilesJson = profilesJson;
+            this.body = body;
+            this.gzipBody = gzipBody;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.settings = settings;
+            this.root = root;
+            this.parts = parts;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        // Árbol JSON del que sale el cuerpo; compartido entre peticiones, solo lectura
+        public JsonObject getProfilesJson() {
+            return profilesJson;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public byte[] getGzipBody() {
+            return gzipBody;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        // Cada codificación es una representación distinta y necesita su propio ETag fuerte
+        public String getGzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
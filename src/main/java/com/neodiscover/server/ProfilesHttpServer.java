@@ -4,12 +4,16 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.neodiscover.NeoDiscover;
 import com.neodiscover.config.ConfigManager;
+import com.neodiscover.config.ConfigSnapshot;
 
 import java.io.*;
 import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import com.sun.net.httpserver.HttpServer;
@@ -18,17 +22,54 @@ import com.sun.net.httpserver.HttpExchange;
 
 public class ProfilesHttpServer {
     private final int port;
-    private final ServerInfoCollector infoCollector;
+    private final ProfileCache profileCache;
     private final ConfigManager configManager;
     private final FileManager fileManager;
+    private ContentStore contentStore;
+    private FileHashCache fileHashCache;
+    // Cabeceras y directorio central del bundle de cada perfil, por ETag del perfil
+    private final java.util.Map<String, CachedBundle> bundles = new java.util.concurrent.ConcurrentHashMap<>();
+    private static final long DEFAULT_MAX_UPLOAD_BYTES = 4L * 1024 * 1024 * 1024;
+    private static final long DEFAULT_MAX_FORM_FIELD_BYTES = 16L * 1024 * 1024;
+    private static final long MAX_SYNC_MANIFEST_BYTES = 1024L * 1024;
+    // Respuestas 503 por saturación: pocos hilos y una cola corta, para que no crezcan sin límite
+    private static final int REJECT_THREADS = 2;
+    private static final int REJECT_QUEUE = 32;
+    
+    private final ChunkedUploadManager chunkedUploads;
+    private final AdmissionFilter admission = new AdmissionFilter();
+    private final RateLimiter rateLimiter = new RateLimiter();
+    private final BandwidthLimiter bandwidth = new BandwidthLimiter();
+    private Metrics metrics = new Metrics();
+    private final AccessLog accessLog = new AccessLog(
+        java.nio.file.Paths.get(System.getProperty("user.dir", "."), "logs", "neodiscover-access.log"));
     private HttpServer server;
+    private ExecutorService executor;
+    // Hilos aparte que solo responden 503 cuando el pool está lleno (nunca el dispatcher)
+    private ExecutorService rejectExecutor;
     private boolean running = false;
 
-    public ProfilesHttpServer(int port, ServerInfoCollector infoCollector, ConfigManager configManager, FileManager fileManager) {
+    public ProfilesHttpServer(int port, ProfileCache profileCache, ConfigManager configManager, FileManager fileManager) {
         this.port = port;
-        this.infoCollector = infoCollector;
+        this.profileCache = profileCache;
         this.configManager = configManager;
         this.fileManager = fileManager;
+        this.chunkedUploads = new ChunkedUploadManager(fileManager, DEFAULT_MAX_UPLOAD_BYTES);
+    }
+
+    public void setContentStore(ContentStore contentStore) {
+        this.contentStore = contentStore;
+    }
+
+    // Necesario para /bundle (tamaños y CRC-32 de los archivos); sin él el endpoint responde 404
+    public void setFileHashCache(FileHashCache fileHashCache) {
+        this.fileHashCache = fileHashCache;
+    }
+
+    // Métricas compartidas con el resto de componentes; debe llamarse antes de start()
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+        chunkedUploads.setMetrics(metrics);
     }
 
     public void start() {
@@ -36,15 +77,39 @@ public class ProfilesHttpServer {
             server = HttpServer.create(new InetSocketAddress(port), 0);
             
             // Endpoint GET para obtener profiles.json
-            server.createContext("/profiles.json", new ProfilesHandler());
+            addContext("/profiles.json", "profiles", new ProfilesHandler(), RateLimiter.Kind.PROFILES);
+            
+            // Endpoint GET para un solo perfil: /profiles/{id}.json
+            addContext("/profiles/", "profile", new ProfileHandler(), RateLimiter.Kind.PROFILES);
             
             // Endpoint POST para actualizar configuración (acepta JSON y multipart/form-data)
-            server.createContext("/update", new UpdateHandler());
+            addContext("/update", "update", new UpdateHandler(), RateLimiter.Kind.UPDATE);
+            
+            // Sincronización incremental: el launcher envía su manifiesto y recibe solo los cambios
+            addContext("/sync", "sync", new SyncHandler(), RateLimiter.Kind.PROFILES);
             
             // Endpoint GET para descargar archivos
-            server.createContext("/downloads", new DownloadsHandler());
+            addContext("/downloads", "downloads", new DownloadsHandler(), RateLimiter.Kind.DOWNLOADS);
             
-            server.setExecutor(Executors.newCachedThreadPool());
+            // Todos los archivos de un perfil en un solo ZIP: /bundle/{id}.zip
+            addContext("/bundle/", "bundle", new BundleHandler(), RateLimiter.Kind.DOWNLOADS);
+            
+            // Subidas por trozos reanudables (crear sesión, PUT de trozos, estado y commit)
+            // Los trozos no cuentan para el límite de /update (una subida son muchos PUT), solo las conexiones
+            addContext("/uploads", "uploads", new ChunkedUploadHandler(), null);
+            chunkedUploads.start();
+            fileManager.deleteStaleUploadTempFiles();
+            
+            // Métricas en formato Prometheus
+            addContext("/metrics", "metrics", new MetricsHandler(), RateLimiter.Kind.METRICS);
+            registerGauges();
+            
+            // La concurrencia la acota AdmissionFilter (límite + cola + 503)
+            executor = createExecutor();
+            applyHttpSettings();
+            accessLog.start();
+            configManager.addChangeListener(this::applyHttpSettings);
+            server.setExecutor(executor);
             server.start();
             running = true;
             NeoDiscover.LOGGER.info("Servidor HTTP iniciado en puerto {}", port);
@@ -53,9 +118,100 @@ public class ProfilesHttpServer {
         }
     }
 
+    // Métricas y log de acceso primero (registran también los rechazos); el límite por IP va antes que la admisión
+    // para que un cliente limitado no ocupe hueco en la cola
+    private void addContext(String path, String metricsName, HttpHandler handler, RateLimiter.Kind rateKind) {
+        java.util.List<com.sun.net.httpserver.Filter> filters = server.createContext(path, handler).getFilters();
+        filters.add(metrics.filter(metricsName));
+        filters.add(accessLog.filter());
+        filters.add(rateLimiter.filter(rateKind));
+        filters.add(admission);
+    }
+
+    private void registerGauges() {
+        metrics.registerGauge("neodiscover_http_requests_in_flight", "Peticiones HTTP en curso", admission::getActive);
+        metrics.registerGauge("neodiscover_http_requests_queued", "Peticiones HTTP esperando turno", admission::getQueued);
+        metrics.registerGauge("neodiscover_http_executor_threads", "Hilos de plataforma del servidor HTTP (0 con hilos virtuales)",
+            () -> executor instanceof java.util.concurrent.ThreadPoolExecutor pool ? pool.getPoolSize() : 0);
+        metrics.registerGauge("neodiscover_downloads_active", "Descargas en curso", bandwidth::getActiveTransfers);
+        metrics.registerGauge("neodiscover_rate_limited_clients", "Clientes con estado en el limitador por IP", rateLimiter::getTrackedClients);
+        metrics.registerGauge("neodiscover_access_log_dropped", "Líneas del log de acceso descartadas por buffer lleno", accessLog::getDropped);
+    }
+
+    private ExecutorService createExecutor() {
+        // Hilos virtuales solo donde synchronized no los ancla (JEP 491, Java 24+). En Java 21 los
+        // streams de socket de com.sun.net.httpserver son synchronized: una descarga lenta fijaría
+        // el hilo portador y con pocos núcleos bloquearía todas las demás peticiones
+        if (Runtime.version().feature() >= 24) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("NeoDiscover-Http-", 0).factory());
+        }
+        // Pool de plataforma acotado (límite + cola); sin hilo libre la petición pasa a un pequeño
+        // pool de rechazo que responde 503. Leer la petición bloquea (un cliente lento tardaría lo
+        // que quisiera), así que nunca se hace en el hilo del dispatcher: si también el pool de
+        // rechazo está lleno la petición se descarta sin leerla
+        java.util.concurrent.atomic.AtomicInteger rejectCounter = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.concurrent.ThreadPoolExecutor rejectPool = new java.util.concurrent.ThreadPoolExecutor(
+            0, REJECT_THREADS, 30, java.util.concurrent.TimeUnit.SECONDS,
+            new java.util.concurrent.ArrayBlockingQueue<>(REJECT_QUEUE),
+            r -> {
+                Thread thread = new Thread(r, "NeoDiscover-Http-Reject-" + rejectCounter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            },
+            (task, rejectedBy) -> Diagnostics.log("Servidor saturado: petición descartada sin respuesta"));
+        rejectExecutor = rejectPool;
+        java.util.concurrent.atomic.AtomicInteger counter = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.concurrent.ThreadPoolExecutor pool = new java.util.concurrent.ThreadPoolExecutor(
+            0, admission.getThreadBudget(), 30, java.util.concurrent.TimeUnit.SECONDS,
+            new java.util.concurrent.SynchronousQueue<>(),
+            r -> {
+                Thread thread = new Thread(r, "NeoDiscover-Http-" + counter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            },
+            (task, rejectedBy) -> rejectPool.execute(() -> AdmissionFilter.runSaturated(task)));
+        return pool;
+    }
+
+    private void applyHttpSettings() {
+        // Todos los ajustes de la misma versión de la configuración
+        ConfigSnapshot settings = configManager.getSnapshot();
+        admission.configure(
+            (int) settings.getHttpSetting("max_concurrent_requests", AdmissionFilter.DEFAULT_MAX_CONCURRENT),
+            (int) settings.getHttpSetting("max_queued_requests", AdmissionFilter.DEFAULT_MAX_QUEUED),
+            settings.getHttpSetting("queue_timeout_ms", AdmissionFilter.DEFAULT_QUEUE_TIMEOUT_MS),
+            settings.getHttpSetting("retry_after_seconds", AdmissionFilter.DEFAULT_RETRY_AFTER_SECONDS));
+        for (RateLimiter.Kind kind : RateLimiter.Kind.values()) {
+            rateLimiter.configure(kind,
+                settings.getHttpSetting(kind.configPrefix + "_requests_per_second", kind.defaultPerSecond),
+                settings.getHttpSetting(kind.configPrefix + "_burst", kind.defaultBurst));
+        }
+        rateLimiter.setMaxConnectionsPerIp(
+            settings.getHttpSetting("max_connections_per_ip", RateLimiter.DEFAULT_MAX_CONNECTIONS_PER_IP));
+        rateLimiter.setRetryAfterSeconds(
+            settings.getHttpSetting("retry_after_seconds", AdmissionFilter.DEFAULT_RETRY_AFTER_SECONDS));
+        bandwidth.configure(
+            settings.getHttpSetting("download_bytes_per_second", 0),
+            settings.getHttpSetting("download_bytes_per_second_per_connection", 0));
+        accessLog.configure(
+            settings.getHttpFlag("access_log", true),
+            settings.getHttpSetting("access_log_max_bytes", AccessLog.DEFAULT_MAX_BYTES),
+            settings.getHttpSetting("access_log_max_files", AccessLog.DEFAULT_MAX_FILES));
+        Diagnostics.setSampleEvery(settings.getHttpSetting("verbose_log_sample", 0));
+        if (executor instanceof java.util.concurrent.ThreadPoolExecutor pool) {
+            pool.setMaximumPoolSize(admission.getThreadBudget());
+        }
+    }
+
     public void stop() {
         if (server != null && running) {
             server.stop(0);
+            executor.shutdown();
+            if (rejectExecutor != null) {
+                rejectExecutor.shutdown();
+            }
+            accessLog.stop();
+            chunkedUploads.stop();
             running = false;
             NeoDiscover.LOGGER.info("Servidor HTTP detenido");
         }
@@ -64,19 +220,129 @@ public class ProfilesHttpServer {
     private class ProfilesHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            if (!"GET".equals(exchange.getRequestMethod())) {
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+            if (!"GET".equals(method) && !head) {
                 sendResponse(exchange, 405, "Method Not Allowed", "text/plain");
                 return;
             }
 
             try {
-                JsonObject profilesJson = infoCollector.collectServerInfo();
-                String response = profilesJson.toString();
+                ProfileCache.Snapshot snapshot = snapshot(exchange);
+                if (snapshot == null) {
+                    sendResponse(exchange, 404, "{\"error\":\"Perfil no encontrado\"}", "application/json");
+                    return;
+                }
+                
+                // Elegir la representación ya precalculada según Accept-Encoding
+                boolean gzip = snapshot.getGzipBody() != null
+                    && HttpUtil.acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+                byte[] body = gzip ? snapshot.getGzipBody() : snapshot.getBody();
+                String etag = gzip ? snapshot.getGzipEtag() : snapshot.getEtag();
+                
+                com.sun.net.httpserver.Headers headers = exchange.getResponseHeaders();
+                headers.set("ETag", etag);
+                headers.set("Last-Modified", HttpUtil.formatDate(snapshot.getLastModified()));
+                headers.set("Vary", "Accept-Encoding");
+                // Los launchers deben revalidar siempre, pero pueden reutilizar su copia con 304
+                headers.set("Cache-Control", "no-cache");
+                headers.set("Access-Control-Allow-Origin", "*");
+                if (gzip) {
+                    headers.set("Content-Encoding", "gzip");
+                }
+                
+                if (HttpUtil.isNotModified(exchange.getRequestHeaders(), etag, snapshot.getLastModified())) {
+                    HttpUtil.sendNotModified(exchange);
+                    return;
+                }
+                
+                if (head) {
+                    headers.set("Content-Type", "application/json");
+                    HttpUtil.sendHeadResponse(exchange, 200, body.length);
+                    return;
+                }
                 
-                sendResponse(exchange, 200, response, "application/json");
-                NeoDiscover.LOGGER.debug("Profiles.json servido correctamente");
+                sendResponse(exchange, 200, body, "application/json");
+                NeoDiscover.LOGGER.debug("{} servido correctamente", exchange.getRequestURI().getPath());
+            } catch (Exception e) {
+                NeoDiscover.LOGGER.error("Error al generar {}", exchange.getRequestURI().getPath(), e);
+                sendResponse(exchange, 500, "Internal Server Error", "text/plain");
+            }
+        }
+
+        // Snapshot a servir; null si no existe
+        protected ProfileCache.Snapshot snapshot(HttpExchange exchange) {
+            return profileCache.get();
+        }
+    }
+
+    // /profiles/{id}.json: mismo formato que profiles.json con un solo perfil, cacheado por separado
+    private class ProfileHandler extends ProfilesHandler {
+        @Override
+        protected ProfileCache.Snapshot snapshot(HttpExchange exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String name = path.substring("/profiles/".length());
+            if (!name.endsWith(".json") || name.indexOf('/') >= 0) {
+                return null;
+            }
+            return profileCache.get(name.substring(0, name.length() - ".json".length()));
+        }
+    }
+
+    private class SyncHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "Method Not Allowed", "text/plain");
+                return;
+            }
+
+            try {
+                String requestBody = MultipartStreamParser.readText(exchange.getRequestBody(), MAX_SYNC_MANIFEST_BYTES);
+                com.google.gson.JsonObject manifest;
+                try {
+                    manifest = com.google.gson.JsonParser.parseString(requestBody).getAsJsonObject();
+                } catch (Exception e) {
+                    sendResponse(exchange, 400, "{\"error\":\"Manifiesto JSON inválido\"}", "application/json");
+                    return;
+                }
+
+                // Se compara contra el mismo snapshot que sirve /profiles/{id}.json (?profile= o
+                // "profile_id" en el manifiesto) o, sin perfil indicado, contra el primero de /profiles.json
+                String profileId = queryParam(exchange, "profile");
+                if (profileId == null && manifest.has("profile_id") && manifest.get("profile_id").isJsonPrimitive()) {
+                    profileId = manifest.get("profile_id").getAsString();
+                }
+                ProfileCache.Snapshot snapshot = profileId != null && !profileId.isEmpty()
+                    ? profileCache.get(profileId)
+                    : profileCache.get();
+                if (snapshot == null) {
+                    sendResponse(exchange, 404, "{\"error\":\"Perfil no encontrado\"}", "application/json");
+                    return;
+                }
+                com.google.gson.JsonArray profiles = snapshot.getProfilesJson().getAsJsonArray("profiles");
+                if (profiles == null || profiles.isEmpty()) {
+                    sendResponse(exchange, 404, "{\"error\":\"No hay perfiles\"}", "application/json");
+                    return;
+                }
+                com.google.gson.JsonObject profile = profiles.get(0).getAsJsonObject();
+                com.google.gson.JsonObject diff = ManifestDiff.diff(profile, manifest);
+                diff.addProperty("profile_id", profile.has("id") ? profile.get("id").getAsString() : "");
+                diff.addProperty("profile_etag", snapshot.getEtag());
+
+                byte[] body = diff.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Cache-Control", "no-store");
+                exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+                // Una instalación desde cero devuelve el perfil entero: comprimir si compensa
+                if (body.length >= 1024 && HttpUtil.acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"))) {
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                    body = ProfileCache.gzip(body);
+                }
+                sendResponse(exchange, 200, body, "application/json");
+            } catch (MultipartStreamParser.PayloadTooLargeException e) {
+                sendResponse(exchange, 413, "{\"error\":\"Manifiesto demasiado grande\"}", "application/json");
             } catch (Exception e) {
-                NeoDiscover.LOGGER.error("Error al generar profiles.json", e);
+                NeoDiscover.LOGGER.error("Error al calcular la sincronización", e);
                 sendResponse(exchange, 500, "Internal Server Error", "text/plain");
             }
         }
@@ -85,16 +351,12 @@ public class ProfilesHttpServer {
     private class UpdateHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            // Log de todas las peticiones
             String remoteAddress = exchange.getRemoteAddress() != null ? 
                 exchange.getRemoteAddress().getAddress().getHostAddress() : "unknown";
             String method = exchange.getRequestMethod();
             String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
             
-            NeoDiscover.LOGGER.info("=== Petición /update recibida ===");
-            NeoDiscover.LOGGER.info("IP remota: {}", remoteAddress);
-            NeoDiscover.LOGGER.info("Método: {}", method);
-            NeoDiscover.LOGGER.info("Content-Type: {}", contentType);
+            Diagnostics.log("Petición /update recibida de {}: {} (Content-Type: {})", remoteAddress, method, contentType);
             
             if (!"POST".equals(method)) {
                 NeoDiscover.LOGGER.warn("Método no permitido: {} (esperado: POST)", method);
@@ -105,13 +367,13 @@ public class ProfilesHttpServer {
             try {
                 // Manejar multipart/form-data para archivos
                 if (contentType != null && contentType.startsWith("multipart/form-data")) {
-                    NeoDiscover.LOGGER.info("Procesando petición multipart/form-data");
+                    Diagnostics.log("Procesando petición multipart/form-data");
                     handleMultipartUpdate(exchange);
                     return;
                 }
                 
                 // Manejar JSON normal
-                NeoDiscover.LOGGER.info("Procesando petición JSON");
+                Diagnostics.log("Procesando petición JSON");
                 handleJsonUpdate(exchange);
             } catch (Exception e) {
                 NeoDiscover.LOGGER.error("Error al procesar actualización desde IP: {}", remoteAddress, e);
@@ -128,7 +390,7 @@ public class ProfilesHttpServer {
             body = body.trim();
             
             // Log completo del body recibido
-            NeoDiscover.LOGGER.info("Body recibido (tamaño: {} bytes): {}", body.length(), 
+            Diagnostics.log("Body recibido (tamaño: {} bytes): {}", body.length(), 
                 body.length() > 500 ? body.substring(0, 500) + "..." : body);
             
             // Verificar que el body no esté vacío
@@ -142,7 +404,7 @@ public class ProfilesHttpServer {
             JsonObject requestJson;
             try {
                 requestJson = JsonParser.parseString(body).getAsJsonObject();
-                NeoDiscover.LOGGER.info("JSON parseado correctamente. Keys: {}", requestJson.keySet());
+                Diagnostics.log("JSON parseado correctamente. Keys: {}", requestJson.keySet());
             } catch (com.google.gson.JsonSyntaxException e) {
                 NeoDiscover.LOGGER.error("Error al parsear JSON. Body recibido: {}", body, e);
                 sendResponse(exchange, 400, "{\"error\":\"JSON inválido: " + e.getMessage().replace("\"", "\\\"") + "\"}", "application/json");
@@ -155,17 +417,17 @@ public class ProfilesHttpServer {
                 // Si no está en el header, buscar en el JSON
                 if (requestJson.has("api_key")) {
                     providedApiKey = requestJson.get("api_key").getAsString();
-                    NeoDiscover.LOGGER.info("API key encontrada en JSON body");
+                    Diagnostics.log("API key encontrada en JSON body");
                 } else {
                     NeoDiscover.LOGGER.warn("Petición rechazada: API key no proporcionada (ni en header X-API-Key ni en JSON)");
                     sendResponse(exchange, 401, "{\"error\":\"API key requerida\"}", "application/json");
                     return;
                 }
             } else {
-                NeoDiscover.LOGGER.info("API key encontrada en header X-API-Key");
+                Diagnostics.log("API key encontrada en header X-API-Key");
             }
             
-            NeoDiscover.LOGGER.info("API key proporcionada: {}...{}", 
+            Diagnostics.log("API key proporcionada: {}...{}", 
                 providedApiKey.length() > 8 ? providedApiKey.substring(0, 4) : "****",
                 providedApiKey.length() > 8 ? providedApiKey.substring(providedApiKey.length() - 4) : "****");
             
@@ -175,26 +437,30 @@ public class ProfilesHttpServer {
                 return;
             }
             
-            NeoDiscover.LOGGER.info("API key válida. Procesando actualización...");
+            Diagnostics.log("API key válida. Procesando actualización...");
             
             // Remover api_key del objeto antes de actualizar (si existe)
             JsonObject updates = requestJson.deepCopy();
             updates.remove("api_key");
             
-            NeoDiscover.LOGGER.info("Campos a actualizar: {}", updates.keySet());
+            Diagnostics.log("Campos a actualizar: {}", updates.keySet());
             
-            // Actualizar configuración
-            configManager.updateConfig(updates);
+            // Actualizar configuración (o el perfil de ?profile=); con X-Durable se responde cuando ya está en disco
+            if (!applyUpdate(exchange, updates)) {
+                sendResponse(exchange, 500, "{\"error\":\"No se pudo guardar la configuración\"}", "application/json");
+                return;
+            }
             
             sendResponse(exchange, 200, "{\"status\":\"ok\",\"message\":\"Configuración actualizada correctamente\"}", "application/json");
             NeoDiscover.LOGGER.info("✓ Configuración actualizada correctamente mediante POST JSON");
         }
         
         private void handleMultipartUpdate(HttpExchange exchange) throws IOException {
+            long requestStart = System.nanoTime();
             String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
             String boundary = extractBoundary(contentType);
             
-            NeoDiscover.LOGGER.info("Boundary extraído: {}", boundary);
+            Diagnostics.log("Boundary extraído: {}", boundary);
             
             if (boundary == null) {
                 NeoDiscover.LOGGER.warn("Petición multipart rechazada: Boundary no encontrado en Content-Type");
@@ -202,48 +468,126 @@ public class ProfilesHttpServer {
                 return;
             }
             
-            InputStream requestBody = exchange.getRequestBody();
-            byte[] bodyBytes = requestBody.readAllBytes();
-            
-            NeoDiscover.LOGGER.info("Body multipart recibido (tamaño: {} bytes)", bodyBytes.length);
-            
-            // Parsear multipart
-            java.util.Map<String, String> formFields = new java.util.HashMap<>();
-            java.util.Map<String, java.util.Map<String, Object>> files = new java.util.HashMap<>();
-            
-            parseMultipart(bodyBytes, boundary, formFields, files);
-            
-            NeoDiscover.LOGGER.info("Multipart parseado. Campos de formulario: {}, Archivos: {}", 
-                formFields.keySet(), files.keySet());
+            // Límites configurables (objeto "http" de la configuración)
+            long maxUploadBytes = configManager.getHttpSetting("max_upload_bytes", DEFAULT_MAX_UPLOAD_BYTES);
+            long maxFieldBytes = configManager.getHttpSetting("max_form_field_bytes", DEFAULT_MAX_FORM_FIELD_BYTES);
             
-            // Paso 1: Validar API Key (prioridad: header X-API-Key, luego campo api_key)
-            String apiKey = exchange.getRequestHeaders().getFirst("X-API-Key");
-            if (apiKey == null || apiKey.isEmpty()) {
-                apiKey = formFields.get("api_key");
-                NeoDiscover.LOGGER.info("API key no encontrada en header, buscando en form_data");
-            } else {
-                NeoDiscover.LOGGER.info("API key encontrada en header X-API-Key");
+            // Rechazar cuerpos demasiado grandes antes de leer nada
+            String contentLengthHeader = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (contentLengthHeader != null) {
+                try {
+                    long contentLength = Long.parseLong(contentLengthHeader.trim());
+                    if (contentLength > maxUploadBytes) {
+                        NeoDiscover.LOGGER.warn("Petición multipart rechazada: {} bytes supera el máximo de {}", contentLength, maxUploadBytes);
+                        sendResponse(exchange, 413, "{\"error\":\"Cuerpo de la petición demasiado grande\"}", "application/json");
+                        return;
+                    }
+                } catch (NumberFormatException e) {
+                    // Se controla igualmente mientras se lee
+                }
             }
             
-            if (apiKey == null || apiKey.isEmpty()) {
-                NeoDiscover.LOGGER.warn("Petición multipart rechazada: API key no proporcionada");
-                sendResponse(exchange, 401, "{\"error\":\"API key requerida o inválida\"}", "application/json");
-                return;
+            // Paso 1: Si la API key viene en la cabecera, validarla antes de leer el cuerpo
+            String apiKey = exchange.getRequestHeaders().getFirst("X-API-Key");
+            boolean apiKeyFromHeader = apiKey != null && !apiKey.isEmpty();
+            if (apiKeyFromHeader) {
+                Diagnostics.log("API key encontrada en header X-API-Key");
+                if (!configManager.validateApiKey(apiKey)) {
+                    NeoDiscover.LOGGER.warn("Petición multipart rechazada: API key inválida");
+                    sendResponse(exchange, 401, "{\"error\":\"API key requerida o inválida\"}", "application/json");
+                    return;
+                }
             }
             
-            NeoDiscover.LOGGER.info("API key proporcionada: {}...{}", 
-                apiKey.length() > 8 ? apiKey.substring(0, 4) : "****",
-                apiKey.length() > 8 ? apiKey.substring(apiKey.length() - 4) : "****");
+            // Paso 2: Parsear el cuerpo en streaming. Los archivos van directamente a temporales
+            // en su carpeta destino; nada se publica hasta validar tamaños. Sin cabecera, el campo
+            // api_key tiene que llegar antes del primer archivo: no se escribe nada en disco sin
+            // una API key válida
+            String validApiKey = apiKeyFromHeader ? apiKey : null;
+            java.util.Map<String, String> formFields = new java.util.HashMap<>();
+            java.util.Map<String, UploadedPart> files = new java.util.HashMap<>();
+            java.util.Map<String, Long> expectedSizes = new java.util.HashMap<>();
+            java.util.Map<String, String> expectedTypes = new java.util.HashMap<>();
             
-            if (!configManager.validateApiKey(apiKey)) {
-                NeoDiscover.LOGGER.warn("Petición multipart rechazada: API key inválida");
+            try {
+                try {
+                    MultipartStreamParser.BoundedInputStream body =
+                        new MultipartStreamParser.BoundedInputStream(exchange.getRequestBody(), maxUploadBytes);
+                    MultipartStreamParser parser = new MultipartStreamParser(body, boundary);
+                    MultipartStreamParser.Part part;
+                    while ((part = parser.nextPart()) != null) {
+                        if (part.fieldName == null) {
+                            continue;
+                        }
+                        if (!part.isFile()) {
+                            String value = MultipartStreamParser.readText(part.body, maxFieldBytes);
+                            formFields.put(part.fieldName, value);
+                            if ("api_key".equals(part.fieldName) && validApiKey == null) {
+                                Diagnostics.log("API key proporcionada: {}...{}",
+                                    value.length() > 8 ? value.substring(0, 4) : "****",
+                                    value.length() > 8 ? value.substring(value.length() - 4) : "****");
+                                if (!configManager.validateApiKey(value)) {
+                                    NeoDiscover.LOGGER.warn("Petición multipart rechazada: API key inválida");
+                                    sendResponse(exchange, 401, "{\"error\":\"API key requerida o inválida\"}", "application/json");
+                                    return;
+                                }
+                                validApiKey = value;
+                            }
+                            if ("files_metadata".equals(part.fieldName)) {
+                                // Con los metadatos ya conocidos, el tamaño se comprueba al vuelo
+                                indexFilesMetadata(value, expectedSizes, expectedTypes);
+                            }
+                            continue;
+                        }
+                        if (validApiKey == null) {
+                            NeoDiscover.LOGGER.warn("Petición multipart rechazada: archivo recibido antes de la API key");
+                            sendResponse(exchange, 401, "{\"error\":\"API key requerida antes de los archivos (cabecera X-API-Key o campo api_key previo)\"}", "application/json");
+                            return;
+                        }
+                        if (files.containsKey(part.fieldName)) {
+                            // Un segundo archivo con el mismo campo dejaría huérfano el temporal del primero
+                            throw new IOException("campo de archivo duplicado: " + part.fieldName);
+                        }
+                        files.put(part.fieldName, receiveFilePart(part, expectedSizes.get(part.fieldName),
+                            expectedTypes.getOrDefault(part.fieldName, typeFromFieldName(part.fieldName))));
+                    }
+                    Diagnostics.log("Body multipart recibido (tamaño: {} bytes)", body.getCount());
+                } catch (MultipartStreamParser.PayloadTooLargeException e) {
+                    NeoDiscover.LOGGER.warn("Petición multipart rechazada: {}", e.getMessage());
+                    sendResponse(exchange, 413, "{\"error\":\"" + e.getMessage().replace("\"", "\\\"") + "\"}", "application/json");
+                    return;
+                } catch (IOException e) {
+                    NeoDiscover.LOGGER.warn("Petición multipart rechazada: {}", e.getMessage());
+                    sendResponse(exchange, 400, "{\"error\":\"Cuerpo multipart inválido: " + String.valueOf(e.getMessage()).replace("\"", "\\\"") + "\"}", "application/json");
+                    return;
+                }
+                
+                Diagnostics.log("Multipart parseado. Campos de formulario: {}, Archivos: {}", 
+                    formFields.keySet(), files.keySet());
+                
+                // Duración de la subida: recepción completa del cuerpo
+                long uploadNanos = System.nanoTime() - requestStart;
+                processMultipartUpdate(exchange, validApiKey, formFields, files, uploadNanos);
+            } finally {
+                // Borrar los temporales que no se hayan publicado
+                for (UploadedPart uploaded : files.values()) {
+                    Files.deleteIfExists(uploaded.tempFile);
+                }
+            }
+        }
+        
+        private void processMultipartUpdate(HttpExchange exchange, String validApiKey, java.util.Map<String, String> formFields,
+                                            java.util.Map<String, UploadedPart> files, long uploadNanos) throws IOException {
+            // La API key (cabecera o campo api_key) ya se validó al recibirla; aquí solo falta si no llegó
+            if (validApiKey == null) {
+                NeoDiscover.LOGGER.warn("Petición multipart rechazada: API key no proporcionada");
                 sendResponse(exchange, 401, "{\"error\":\"API key requerida o inválida\"}", "application/json");
                 return;
             }
             
-            NeoDiscover.LOGGER.info("API key válida. Procesando actualización multipart...");
+            Diagnostics.log("API key válida. Procesando actualización multipart...");
             
-            // Paso 2: Parsear profile_json y files_metadata
+            // Parsear profile_json y files_metadata
             String profileJsonStr = formFields.get("profile_json");
             String filesMetadataStr = formFields.get("files_metadata");
             
@@ -262,7 +606,7 @@ public class ProfilesHttpServer {
             
             try {
                 profileJson = JsonParser.parseString(profileJsonStr).getAsJsonObject();
-                NeoDiscover.LOGGER.info("profile_json parseado correctamente. Keys: {}", profileJson.keySet());
+                Diagnostics.log("profile_json parseado correctamente. Keys: {}", profileJson.keySet());
             } catch (Exception e) {
                 NeoDiscover.LOGGER.error("Error al parsear profile_json", e);
                 sendResponse(exchange, 400, "{\"error\":\"profile_json inválido: " + e.getMessage().replace("\"", "\\\"") + "\"}", "application/json");
@@ -271,14 +615,14 @@ public class ProfilesHttpServer {
             
             try {
                 filesMetadata = JsonParser.parseString(filesMetadataStr).getAsJsonArray();
-                NeoDiscover.LOGGER.info("files_metadata parseado. {} archivo(s) en metadatos", filesMetadata.size());
+                Diagnostics.log("files_metadata parseado. {} archivo(s) en metadatos", filesMetadata.size());
             } catch (Exception e) {
                 NeoDiscover.LOGGER.error("Error al parsear files_metadata", e);
                 sendResponse(exchange, 400, "{\"error\":\"files_metadata inválido: " + e.getMessage().replace("\"", "\\\"") + "\"}", "application/json");
                 return;
             }
             
-            // Paso 3: Procesar archivos según metadatos
+            // Procesar archivos según metadatos
             java.util.List<String> savedFiles = new java.util.ArrayList<>();
             java.util.List<String> errors = new java.util.ArrayList<>();
             
@@ -290,7 +634,7 @@ public class ProfilesHttpServer {
                     String fileName = metadata.get("name").getAsString();
                     long expectedSize = metadata.get("size").getAsLong();
                     
-                    NeoDiscover.LOGGER.info("Procesando archivo: field_name={}, type={}, name={}, size={}", 
+                    Diagnostics.log("Procesando archivo: field_name={}, type={}, name={}, size={}", 
                         fieldName, type, fileName, expectedSize);
                     
                     // Validar tipo
@@ -302,51 +646,28 @@ public class ProfilesHttpServer {
                     }
                     
                     // Buscar el archivo en el multipart
-                    java.util.Map<String, Object> fileData = files.get(fieldName);
-                    if (fileData == null) {
+                    UploadedPart uploaded = files.get(fieldName);
+                    if (uploaded == null) {
                         String error = String.format("Archivo %s (field_name: %s) no encontrado", fileName, fieldName);
                         NeoDiscover.LOGGER.warn(error);
                         errors.add(error);
                         continue;
                     }
                     
-                    byte[] fileContent = (byte[]) fileData.get("content");
-                    if (fileContent == null) {
-                        String error = String.format("Contenido del archivo %s está vacío", fileName);
-                        NeoDiscover.LOGGER.warn(error);
-                        errors.add(error);
-                        continue;
-                    }
-                    
-                    // Validar tamaño
-                    if (fileContent.length != expectedSize) {
-                        String error = String.format("Tamaño no coincide para %s: esperado %d, recibido %d", 
-                            fileName, expectedSize, fileContent.length);
+                    // Validar tamaño (si se excedió durante la recepción ya se dejó de escribir)
+                    if (uploaded.oversized || uploaded.size != expectedSize) {
+                        String error = uploaded.oversized
+                            ? String.format("Tamaño no coincide para %s: esperado %d, recibido más", fileName, expectedSize)
+                            : String.format("Tamaño no coincide para %s: esperado %d, recibido %d", fileName, expectedSize, uploaded.size);
                         NeoDiscover.LOGGER.warn(error);
                         errors.add(error);
                         continue;
                     }
                     
-                    // Guardar archivo según tipo
-                    java.io.ByteArrayInputStream fileStream = new java.io.ByteArrayInputStream(fileContent);
-                    String savedPath;
-                    
-                    switch (type) {
-                        case "mods":
-                            fileManager.saveModFile(fileName, fileStream);
-                            savedPath = "mods/" + fileName;
-                            break;
-                        case "shaders":
-                            fileManager.saveShaderFile(fileName, fileStream);
-                            savedPath = "shaders/" + fileName;
-                            break;
-                        case "resourcepacks":
-                            fileManager.saveResourcePackFile(fileName, fileStream);
-                            savedPath = "resourcepacks/" + fileName;
-                            break;
-                        default:
-                            continue; // Ya validado arriba
-                    }
+                    // Publicar el temporal con un rename dentro de la carpeta del tipo
+                    fileManager.commitUpload(type, fileName, uploaded.tempFile, uploaded.sha1, uploaded.sha256, uploaded.crc32);
+                    metrics.recordUpload(Metrics.UPLOAD_MULTIPART, uploaded.size, uploadNanos);
+                    String savedPath = type + "/" + fileName;
                     
                     savedFiles.add(savedPath);
                     NeoDiscover.LOGGER.info("✓ Archivo guardado: {} (tipo: {})", savedPath, type);
@@ -364,9 +685,12 @@ public class ProfilesHttpServer {
                 JsonObject profileToSave = profileJson.deepCopy();
                 profileToSave.remove("api_key");
                 
-                NeoDiscover.LOGGER.info("Actualizando configuración con profile_json...");
-                configManager.updateConfig(profileToSave);
-                NeoDiscover.LOGGER.info("✓ Configuración actualizada correctamente");
+                Diagnostics.log("Actualizando configuración con profile_json...");
+                if (applyUpdate(exchange, profileToSave)) {
+                    Diagnostics.log("✓ Configuración actualizada correctamente");
+                } else {
+                    errors.add("No se pudo guardar la configuración");
+                }
             } catch (Exception e) {
                 NeoDiscover.LOGGER.error("Error al actualizar configuración", e);
                 errors.add("Error al actualizar configuración: " + e.getMessage());
@@ -428,129 +752,203 @@ public class ProfilesHttpServer {
             return null;
         }
         
-        private void parseMultipart(byte[] data, String boundary, java.util.Map<String, String> formFields, 
-                                   java.util.Map<String, java.util.Map<String, Object>> files) throws IOException {
-            String boundaryMarker = "--" + boundary;
-            String endBoundary = boundaryMarker + "--";
-            
-            int pos = 0;
-            while (pos < data.length) {
-                // Buscar el siguiente boundary
-                int boundaryPos = indexOf(data, boundaryMarker.getBytes(StandardCharsets.UTF_8), pos);
-                if (boundaryPos == -1) break;
-                
-                int partStart = boundaryPos + boundaryMarker.length();
-                if (partStart >= data.length) break;
-                
-                // Saltar CRLF
-                if (partStart < data.length - 1 && data[partStart] == '\r' && data[partStart + 1] == '\n') {
-                    partStart += 2;
-                } else if (partStart < data.length && data[partStart] == '\n') {
-                    partStart += 1;
+        private void indexFilesMetadata(String filesMetadataStr, java.util.Map<String, Long> expectedSizes,
+                                        java.util.Map<String, String> expectedTypes) {
+            try {
+                for (com.google.gson.JsonElement element : JsonParser.parseString(filesMetadataStr).getAsJsonArray()) {
+                    com.google.gson.JsonObject metadata = element.getAsJsonObject();
+                    if (metadata.has("field_name") && metadata.has("size")) {
+                        expectedSizes.put(metadata.get("field_name").getAsString(), metadata.get("size").getAsLong());
+                    }
+                    if (metadata.has("field_name") && metadata.has("type")) {
+                        expectedTypes.put(metadata.get("field_name").getAsString(), metadata.get("type").getAsString());
+                    }
                 }
-                
-                // Buscar el siguiente boundary o fin
-                int nextBoundary = indexOf(data, boundaryMarker.getBytes(StandardCharsets.UTF_8), partStart);
-                int partEnd = nextBoundary != -1 ? nextBoundary : data.length;
-                
-                // Parsear esta parte
-                parseMultipartPart(data, partStart, partEnd, formFields, files);
-                
-                pos = partEnd;
+            } catch (Exception e) {
+                // Se informará del error al procesar la petición completa
+                NeoDiscover.LOGGER.debug("files_metadata no válido durante la recepción: {}", e.getMessage());
             }
         }
         
-        private void parseMultipartPart(byte[] data, int start, int end, 
-                                       java.util.Map<String, String> formFields,
-                                       java.util.Map<String, java.util.Map<String, Object>> files) throws IOException {
-            // Buscar el header separator (CRLFCRLF o LFCRLF)
-            int headerEnd = -1;
-            for (int i = start; i < end - 3; i++) {
-                if ((data[i] == '\r' && data[i+1] == '\n' && data[i+2] == '\r' && data[i+3] == '\n') ||
-                    (data[i] == '\n' && data[i+1] == '\r' && data[i+2] == '\n')) {
-                    headerEnd = i + (data[i] == '\r' ? 4 : 3);
-                    break;
-                }
-            }
-            
-            if (headerEnd == -1) return;
-            
-            // Parsear headers
-            String headers = new String(data, start, headerEnd - start, StandardCharsets.UTF_8);
-            String fieldName = null;
-            String fileName = null;
-            boolean isFile = false;
-            
-            for (String line : headers.split("\r?\n")) {
-                if (line.toLowerCase().startsWith("content-disposition:")) {
-                    // Extraer name
-                    int nameIdx = line.indexOf("name=\"");
-                    if (nameIdx != -1) {
-                        int nameEnd = line.indexOf("\"", nameIdx + 6);
-                        if (nameEnd != -1) {
-                            fieldName = line.substring(nameIdx + 6, nameEnd);
-                        }
-                    }
-                    // Extraer filename
-                    int filenameIdx = line.indexOf("filename=\"");
-                    if (filenameIdx != -1) {
-                        int filenameEnd = line.indexOf("\"", filenameIdx + 10);
-                        if (filenameEnd != -1) {
-                            fileName = line.substring(filenameIdx + 10, filenameEnd);
-                            isFile = true;
-                        }
+        // Los campos de archivo siguen la convención mods_0, shaders_0, resourcepacks_0...
+        private String typeFromFieldName(String fieldName) {
+            for (String type : new String[] {"mods", "shaders", "resourcepacks"}) {
+                if (fieldName.startsWith(type + "_")) {
+                    return type;
+                }
+            }
+            return null;
+        }
+        
+        private UploadedPart receiveFilePart(MultipartStreamParser.Part part, Long expectedSize, String type) throws IOException {
+            Path tempFile = fileManager.createUploadTempFile(type);
+            UploadedPart uploaded = new UploadedPart(tempFile);
+            // Hashes calculados a la vez que se escribe, para no releer el archivo después
+            FileHashCache.Digests digests = new FileHashCache.Digests();
+            byte[] chunk = new byte[FileTransfer.CHUNK_SIZE];
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                int read;
+                while ((read = part.body.read(chunk)) != -1) {
+                    uploaded.size += read;
+                    if (expectedSize != null && uploaded.size > expectedSize) {
+                        // Más datos de los declarados: dejar de escribir y descartar el resto de la parte
+                        uploaded.oversized = true;
+                        NeoDiscover.LOGGER.warn("Archivo {} supera el tamaño declarado ({} bytes), descartado", part.fileName, expectedSize);
+                        break;
                     }
+                    out.write(chunk, 0, read);
+                    digests.update(chunk, 0, read);
                 }
+            } catch (IOException e) {
+                Files.deleteIfExists(tempFile);
+                throw e;
             }
-            
-            if (fieldName == null) return;
-            
-            // Leer el contenido (saltar CRLF final si existe)
-            int contentStart = headerEnd;
-            int contentEnd = end;
-            if (contentEnd > contentStart + 2 && 
-                data[contentEnd - 2] == '\r' && data[contentEnd - 1] == '\n') {
-                contentEnd -= 2;
-            } else if (contentEnd > contentStart + 1 && data[contentEnd - 1] == '\n') {
-                contentEnd -= 1;
+            if (!uploaded.oversized) {
+                uploaded.sha1 = digests.sha1Hex();
+                uploaded.sha256 = digests.sha256Hex();
+                uploaded.crc32 = digests.crc32();
+            }
+            return uploaded;
+        }
+    }
+    
+    // Parte de archivo recibida en un temporal, pendiente de validar y publicar
+    private static final class UploadedPart {
+        private final Path tempFile;
+        private long size;
+        private boolean oversized;
+        private String sha1;
+        private String sha256;
+        private long crc32 = -1;
+
+        private UploadedPart(Path tempFile) {
+            this.tempFile = tempFile;
+        }
+    }
+    
+    private class ChunkedUploadHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            String apiKey = exchange.getRequestHeaders().getFirst("X-API-Key");
+            if (apiKey == null || !configManager.validateApiKey(apiKey)) {
+                NeoDiscover.LOGGER.warn("Petición /uploads rechazada: API key inválida o ausente");
+                sendResponse(exchange, 401, "{\"error\":\"API key requerida o inválida\"}", "application/json");
+                return;
             }
             
-            byte[] content = new byte[contentEnd - contentStart];
-            System.arraycopy(data, contentStart, content, 0, content.length);
+            chunkedUploads.setLimits(
+                configManager.getHttpSetting("max_upload_bytes", DEFAULT_MAX_UPLOAD_BYTES),
+                configManager.getHttpSetting("upload_session_ttl_seconds", 24 * 60 * 60));
             
-            if (isFile && fileName != null) {
-                java.util.Map<String, Object> fileData = new java.util.HashMap<>();
-                fileData.put("filename", fileName);
-                fileData.put("content", content);
-                files.put(fieldName, fileData);
-            } else {
-                String value = new String(content, StandardCharsets.UTF_8);
-                formFields.put(fieldName, value);
+            // Rutas: /uploads, /uploads/{id}, /uploads/{id}/commit
+            String path = exchange.getRequestURI().getPath().substring("/uploads".length());
+            String[] segments = path.startsWith("/") ? path.substring(1).split("/") : new String[] {""};
+            String id = segments.length > 0 && !segments[0].isEmpty() ? segments[0] : null;
+            String action = segments.length > 1 ? segments[1] : null;
+            
+            try {
+                JsonObject response;
+                if (id == null && "POST".equals(method)) {
+                    String body = new String(exchange.getRequestBody().readNBytes(64 * 1024), StandardCharsets.UTF_8);
+                    JsonObject request;
+                    try {
+                        request = JsonParser.parseString(body).getAsJsonObject();
+                    } catch (Exception e) {
+                        throw new ChunkedUploadManager.UploadException(400, "JSON inválido");
+                    }
+                    sendResponse(exchange, 201, chunkedUploads.createSession(request).toString(), "application/json");
+                    return;
+                } else if (id != null && action == null && "PUT".equals(method)) {
+                    long offset = parseOffset(exchange);
+                    String lengthHeader = exchange.getRequestHeaders().getFirst("Content-Length");
+                    long contentLength = lengthHeader != null ? Long.parseLong(lengthHeader.trim()) : -1;
+                    response = chunkedUploads.writeChunk(id, offset, contentLength, exchange.getRequestBody());
+                } else if (id != null && action == null && "GET".equals(method)) {
+                    response = chunkedUploads.getStatus(id);
+                } else if (id != null && action == null && "DELETE".equals(method)) {
+                    chunkedUploads.abort(id);
+                    response = new JsonObject();
+                    response.addProperty("status", "ok");
+                } else if (id != null && "commit".equals(action) && "POST".equals(method)) {
+                    response = chunkedUploads.commit(id);
+                } else {
+                    sendResponse(exchange, 405, "Method Not Allowed", "text/plain");
+                    return;
+                }
+                sendResponse(exchange, 200, response.toString(), "application/json");
+            } catch (ChunkedUploadManager.UploadException e) {
+                NeoDiscover.LOGGER.warn("Petición /uploads rechazada ({}): {}", e.statusCode, e.getMessage());
+                JsonObject error = new JsonObject();
+                error.addProperty("error", e.getMessage());
+                sendResponse(exchange, e.statusCode, error.toString(), "application/json");
+            } catch (NumberFormatException e) {
+                sendResponse(exchange, 400, "{\"error\":\"Cabecera numérica inválida\"}", "application/json");
+            } catch (Exception e) {
+                NeoDiscover.LOGGER.error("Error al procesar subida por trozos", e);
+                sendResponse(exchange, 500, "{\"error\":\"Error interno del servidor\"}", "application/json");
             }
         }
         
-        private int indexOf(byte[] array, byte[] pattern, int fromIndex) {
-            for (int i = fromIndex; i <= array.length - pattern.length; i++) {
-                boolean match = true;
-                for (int j = 0; j < pattern.length; j++) {
-                    if (array[i + j] != pattern[j]) {
-                        match = false;
-                        break;
+        // Offset del trozo: parámetro ?offset=N o cabecera Content-Range: bytes N-M/total
+        private long parseOffset(HttpExchange exchange) throws ChunkedUploadManager.UploadException {
+            String query = exchange.getRequestURI().getQuery();
+            if (query != null) {
+                for (String param : query.split("&")) {
+                    if (param.startsWith("offset=")) {
+                        return Long.parseLong(param.substring("offset=".length()));
                     }
                 }
-                if (match) return i;
             }
-            return -1;
+            String contentRange = exchange.getRequestHeaders().getFirst("Content-Range");
+            if (contentRange != null && contentRange.trim().startsWith("bytes ")) {
+                String range = contentRange.trim().substring("bytes ".length());
+                int dash = range.indexOf('-');
+                if (dash > 0) {
+                    return Long.parseLong(range.substring(0, dash).trim());
+                }
+            }
+            throw new ChunkedUploadManager.UploadException(400, "offset requerido (?offset=N o Content-Range)");
         }
     }
     
-    private class DownloadsHandler implements HttpHandler {
+    private class MetricsHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
+            if (!configManager.getHttpFlag("metrics", true)) {
+                sendResponse(exchange, 404, "Not Found", "text/plain");
+                return;
+            }
             if (!"GET".equals(exchange.getRequestMethod())) {
                 sendResponse(exchange, 405, "Method Not Allowed", "text/plain");
                 return;
             }
+            // Por defecto solo con la API key: X-API-Key o Authorization: Bearer (bearer_token de Prometheus)
+            if (!configManager.getHttpFlag("metrics_public", false)) {
+                String apiKey = exchange.getRequestHeaders().getFirst("X-API-Key");
+                String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+                if (apiKey == null && authorization != null && authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+                    apiKey = authorization.substring(7).trim();
+                }
+                if (apiKey == null || !configManager.validateApiKey(apiKey)) {
+                    exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                    sendResponse(exchange, 401, "API key requerida o inválida", "text/plain");
+                    return;
+                }
+            }
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+            sendResponse(exchange, 200, metrics.render(), "text/plain; version=0.0.4; charset=utf-8");
+        }
+    }
+    
+    private class DownloadsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                sendResponse(exchange, 405, "Method Not Allowed", "text/plain");
+                return;
+            }
             
             try {
                 String path = exchange.getRequestURI().getPath();
@@ -560,39 +958,35 @@ public class ProfilesHttpServer {
                     fileName = fileName.substring(1);
                 }
                 
-                // Prevenir path traversal
-                if (fileName.contains("..") || fileName.contains("\\")) {
+                // Prevenir path traversal y el acceso a archivos ocultos (temporales de subida)
+                if (fileName.contains("..") || fileName.contains("\\") || fileName.startsWith(".") || fileName.contains("/.")) {
                     sendResponse(exchange, 400, "Invalid file path", "text/plain");
                     return;
                 }
                 
-                Path filePath = null;
-                // Si el path empieza con "mods/", "shaders/", o "resourcepacks/", buscar en la carpeta correspondiente
-                if (fileName.startsWith("mods/")) {
-                    String modName = fileName.substring("mods/".length());
-                    Path modsPath = fileManager.getDownloadsPath().resolve("mods").resolve(modName);
-                    if (Files.exists(modsPath)) {
-                        filePath = modsPath;
-                    }
-                } else if (fileName.startsWith("shaders/")) {
-                    String shaderName = fileName.substring("shaders/".length());
-                    Path shadersPath = fileManager.getDownloadsPath().resolve("shaders").resolve(shaderName);
-                    if (Files.exists(shadersPath)) {
-                        filePath = shadersPath;
-                    }
-                } else if (fileName.startsWith("resourcepacks/")) {
-                    String rpName = fileName.substring("resourcepacks/".length());
-                    Path rpPath = fileManager.getDownloadsPath().resolve("resourcepacks").resolve(rpName);
-                    if (Files.exists(rpPath)) {
-                        filePath = rpPath;
+                // URLs inmutables del almacén por contenido: /downloads/blob/{sha256}/{nombre}
+                Path filePath;
+                String category;
+                if (fileName.startsWith("blob/")) {
+                    String[] parts = fileName.split("/", 3);
+                    filePath = parts.length == 3 && contentStore != null ? contentStore.getBlob(parts[1]) : null;
+                    if (filePath == null || parts[2].isEmpty() || parts[2].contains("/")) {
+                        sendResponse(exchange, 404, "File not found", "text/plain");
+                        return;
                     }
+                    fileName = parts[2];
+                    category = "blob";
+                    // El contenido de esta URL no cambia nunca: cualquier caché puede guardarlo
+                    exchange.getResponseHeaders().set("Cache-Control", "public, max-age=31536000, immutable");
                 } else {
-                    filePath = fileManager.getFile(fileName);
-                }
-                
-                if (filePath == null || !Files.exists(filePath)) {
-                    sendResponse(exchange, 404, "File not found", "text/plain");
-                    return;
+                    // Búsqueda en el índice en memoria (raíz, mods/, shaders/ y resourcepacks/)
+                    DownloadsIndex.FileEntry entry = fileManager.findFile(fileName);
+                    if (entry == null) {
+                        sendResponse(exchange, 404, "File not found", "text/plain");
+                        return;
+                    }
+                    filePath = entry.getPath();
+                    category = entry.getFolder();
                 }
                 
                 // Determinar content type
@@ -608,33 +1002,296 @@ public class ProfilesHttpServer {
                     contentType = "text/plain";
                 }
                 
-                // Enviar archivo
-                byte[] fileData = Files.readAllBytes(filePath);
-                exchange.getResponseHeaders().set("Content-Type", contentType);
-                exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
-                exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-                exchange.sendResponseHeaders(200, fileData.length);
-                
-                try (OutputStream os = exchange.getResponseBody()) {
-                    os.write(fileData);
-                }
+                // Enviar archivo en streaming desde disco (memoria acotada por descarga)
+                sendFile(exchange, filePath, fileName, contentType, metrics.downloadedBytes(category));
                 
                 NeoDiscover.LOGGER.debug("Archivo servido: {}", fileName);
+            } catch (java.nio.file.NoSuchFileException e) {
+                // Borrado justo después de consultar el índice; el watcher lo quitará enseguida
+                sendResponse(exchange, 404, "File not found", "text/plain");
             } catch (Exception e) {
+                if (exchange.getResponseCode() != -1) {
+                    // La respuesta ya está en curso: solo se puede cortar la conexión
+                    NeoDiscover.LOGGER.debug("Descarga interrumpida: {}", e.getMessage());
+                    exchange.close();
+                    return;
+                }
                 NeoDiscover.LOGGER.error("Error al servir archivo", e);
                 sendResponse(exchange, 500, "Internal Server Error", "text/plain");
             }
         }
+        
+        private void sendFile(HttpExchange exchange, Path filePath, String fileName, String contentType,
+                              java.util.concurrent.atomic.LongAdder servedBytes) throws IOException {
+            boolean head = "HEAD".equals(exchange.getRequestMethod());
+            // El Transfer (reparto de ancho de banda) solo se abre en las ramas que envían el archivo
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                long size = channel.size();
+                long lastModified = HttpUtil.truncateToSeconds(Files.getLastModifiedTime(filePath).toMillis());
+                String etag = HttpUtil.fileEtag(size, lastModified);
+                
+                com.sun.net.httpserver.Headers headers = exchange.getResponseHeaders();
+                headers.set("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+                headers.set("Access-Control-Allow-Origin", "*");
+                headers.set("Accept-Ranges", "bytes");
+                headers.set("ETag", etag);
+                headers.set("Last-Modified", HttpUtil.formatDate(lastModified));
+                
+                if (HttpUtil.isNotModified(exchange.getRequestHeaders(), etag, lastModified)) {
+                    HttpUtil.sendNotModified(exchange);
+                    return;
+                }
+                
+                // Range solo se respeta si If-Range (si viene) coincide con la versión actual
+                java.util.List<ByteRanges.Range> ranges = null;
+                String rangeHeader = exchange.getRequestHeaders().getFirst("Range");
+                if (rangeHeader != null && ifRangeMatches(exchange.getRequestHeaders().getFirst("If-Range"), etag, lastModified)) {
+                    ranges = ByteRanges.parse(rangeHeader, size);
+                }
+                
+                if (ranges == null) {
+                    headers.set("Content-Type", contentType);
+                    if (head) {
+                        HttpUtil.sendHeadResponse(exchange, 200, size);
+                        return;
+                    }
+                    // Con longitud 0 HttpServer usaría chunked; -1 indica respuesta sin cuerpo
+                    exchange.sendResponseHeaders(200, size > 0 ? size : -1);
+                    try (BandwidthLimiter.Transfer pacer = bandwidth.newTransfer();
+                         OutputStream os = exchange.getResponseBody()) {
+                        FileTransfer.transfer(channel, 0, size, os, pacer, servedBytes);
+                    }
+                    return;
+                }
+                
+                if (ranges.isEmpty()) {
+                    headers.set("Content-Range", "bytes */" + size);
+                    sendResponse(exchange, 416, "Range Not Satisfiable", "text/plain");
+                    return;
+                }
+                
+                if (ranges.size() == 1) {
+                    ByteRanges.Range range = ranges.get(0);
+                    headers.set("Content-Type", contentType);
+                    headers.set("Content-Range", range.contentRange(size));
+                    if (head) {
+                        HttpUtil.sendHeadResponse(exchange, 206, range.length());
+                        return;
+                    }
+                    exchange.sendResponseHeaders(206, range.length());
+                    try (BandwidthLimiter.Transfer pacer = bandwidth.newTransfer();
+                         OutputStream os = exchange.getResponseBody()) {
+                        FileTransfer.transfer(channel, range.start, range.length(), os, pacer, servedBytes);
+                    }
+                    return;
+                }
+                
+                // Varios rangos: multipart/byteranges con longitud conocida de antemano
+                String boundary = java.util.UUID.randomUUID().toString().replace("-", "");
+                headers.set("Content-Type", "multipart/byteranges; boundary=" + boundary);
+                long multipartLength = ByteRanges.multipartLength(ranges, boundary, contentType, size);
+                if (head) {
+                    HttpUtil.sendHeadResponse(exchange, 206, multipartLength);
+                    return;
+                }
+                exchange.sendResponseHeaders(206, multipartLength);
+                try (BandwidthLimiter.Transfer pacer = bandwidth.newTransfer();
+                     OutputStream os = exchange.getResponseBody()) {
+                    for (ByteRanges.Range range : ranges) {
+                        os.write(ByteRanges.partHeader(boundary, contentType, range, size));
+                        FileTransfer.transfer(channel, range.start, range.length(), os, pacer, servedBytes);
+                    }
+                    os.write(ByteRanges.closingDelimiter(boundary));
+                }
+            }
+        }
+        
+        private boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+            if (ifRange == null) {
+                return true;
+            }
+            String value = ifRange.trim();
+            if (value.startsWith("\"") || value.startsWith("W/")) {
+                // If-Range exige comparación fuerte: un ETag débil nunca coincide
+                return value.equals(etag);
+            }
+            return HttpUtil.parseDate(value) == lastModified;
+        }
+    }
+
+    private record CachedBundle(String profileEtag, ZipBundle bundle) {
+    }
+
+    // /bundle/{id}.zip: mods, shaders y resource packs del perfil en un ZIP sin compresión escrito al
+    // vuelo desde disco. ?hashes=sha256,sha256 (o POST {"hashes": [...]}) limita el ZIP a esos archivos
+    private class BundleHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+            if (!"GET".equals(method) && !"POST".equals(method) && !head) {
+                sendResponse(exchange, 405, "Method Not Allowed", "text/plain");
+                return;
+            }
+
+            try {
+                String name = exchange.getRequestURI().getPath().substring("/bundle/".length());
+                ProfileCache.Snapshot snapshot = null;
+                String profileId = null;
+                if (name.endsWith(".zip") && name.indexOf('/') < 0 && fileHashCache != null) {
+                    profileId = name.substring(0, name.length() - ".zip".length());
+                    snapshot = profileCache.get(profileId);
+                }
+                if (snapshot == null) {
+                    sendResponse(exchange, 404, "{\"error\":\"Perfil no encontrado\"}", "application/json");
+                    return;
+                }
+
+                java.util.Set<String> hashes;
+                try {
+                    hashes = requestedHashes(exchange);
+                } catch (MultipartStreamParser.PayloadTooLargeException e) {
+                    sendResponse(exchange, 413, "{\"error\":\"Lista de hashes demasiado grande\"}", "application/json");
+                    return;
+                } catch (RuntimeException e) {
+                    sendResponse(exchange, 400, "{\"error\":\"Lista de hashes inválida\"}", "application/json");
+                    return;
+                }
+
+                ZipBundle bundle = bundleFor(profileId, snapshot);
+                if (bundle == null) {
+                    // Algún archivo aún no tiene hash (recién subido o copiado a mano)
+                    exchange.getResponseHeaders().set("Retry-After", "2");
+                    sendResponse(exchange, 503, "{\"error\":\"Calculando hashes, reintentar en unos segundos\"}", "application/json");
+                    return;
+                }
+                if (hashes != null) {
+                    bundle = bundle.only(hashes);
+                }
+
+                com.sun.net.httpserver.Headers headers = exchange.getResponseHeaders();
+                headers.set("Content-Type", "application/zip");
+                headers.set("Content-Disposition", "attachment; filename=\"" + profileId + ".zip\"");
+                headers.set("Access-Control-Allow-Origin", "*");
+                headers.set("ETag", bundle.getEtag());
+                headers.set("Last-Modified", HttpUtil.formatDate(snapshot.getLastModified()));
+                headers.set("Cache-Control", "no-cache");
+                if (HttpUtil.isNotModified(exchange.getRequestHeaders(), bundle.getEtag(), snapshot.getLastModified())) {
+                    HttpUtil.sendNotModified(exchange);
+                    return;
+                }
+                if (head) {
+                    HttpUtil.sendHeadResponse(exchange, 200, bundle.getContentLength());
+                    return;
+                }
+
+                // Longitud exacta calculada de antemano: sin chunked y con barra de progreso en el cliente
+                exchange.sendResponseHeaders(200, bundle.getContentLength());
+                try (OutputStream os = exchange.getResponseBody();
+                     BandwidthLimiter.Transfer pacer = bandwidth.newTransfer()) {
+                    bundle.writeTo(os, pacer, metrics.downloadedBytes("bundle"));
+                }
+                NeoDiscover.LOGGER.debug("Bundle {} servido: {} archivo(s), {} bytes", profileId, bundle.size(), bundle.getContentLength());
+            } catch (Exception e) {
+                if (exchange.getResponseCode() != -1) {
+                    // La respuesta ya está en curso: solo se puede cortar la conexión
+                    NeoDiscover.LOGGER.debug("Bundle interrumpido: {}", e.getMessage());
+                    exchange.close();
+                    return;
+                }
+                NeoDiscover.LOGGER.error("Error al servir bundle", e);
+                sendResponse(exchange, 500, "Internal Server Error", "text/plain");
+            }
+        }
+
+        // SHA-256 pedidos (?hashes=a,b o cuerpo JSON {"hashes": [...]}); null para todos los archivos
+        private java.util.Set<String> requestedHashes(HttpExchange exchange) throws IOException {
+            java.util.Set<String> hashes = null;
+            String query = queryParam(exchange, "hashes");
+            if (query != null) {
+                hashes = new java.util.HashSet<>();
+                for (String hash : query.split(",")) {
+                    if (!hash.isBlank()) {
+                        hashes.add(hash.trim().toLowerCase(java.util.Locale.ROOT));
+                    }
+                }
+            }
+            if ("POST".equals(exchange.getRequestMethod())) {
+                String body = MultipartStreamParser.readText(exchange.getRequestBody(), MAX_SYNC_MANIFEST_BYTES);
+                if (!body.isBlank()) {
+                    com.google.gson.JsonArray list = JsonParser.parseString(body).getAsJsonObject().getAsJsonArray("hashes");
+                    if (hashes == null) {
+                        hashes = new java.util.HashSet<>();
+                    }
+                    for (com.google.gson.JsonElement hash : list) {
+                        hashes.add(hash.getAsString().toLowerCase(java.util.Locale.ROOT));
+                    }
+                }
+            }
+            return hashes;
+        }
     }
 
-    private void sendResponse(HttpExchange exchange, int statusCode, String response, String contentType) throws IOException {
-        exchange.getResponseHeaders().set("Content-Type", contentType);
-        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-        exchange.sendResponseHeaders(statusCode, response.getBytes(StandardCharsets.UTF_8).length);
-        
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(response.getBytes(StandardCharsets.UTF_8));
+    // Bundle completo del perfil, reutilizado mientras no cambie el perfil ni sus archivos en disco;
+    // null si a algún archivo aún le falta el hash
+    private ZipBundle bundleFor(String profileId, ProfileCache.Snapshot snapshot) {
+        CachedBundle cached = bundles.get(profileId);
+        if (cached != null && cached.profileEtag().equals(snapshot.getEtag()) && cached.bundle().isCurrent()) {
+            return cached.bundle();
+        }
+        com.google.gson.JsonArray profiles = snapshot.getProfilesJson().getAsJsonArray("profiles");
+        java.util.List<ZipBundle.Item> items = ZipBundle.collect(profiles.get(0).getAsJsonObject(), fileManager, fileHashCache);
+        if (items == null) {
+            return null;
         }
+        ZipBundle bundle = new ZipBundle(items);
+        if (!bundle.isCurrent()) {
+            // La caché de hashes aún no ha visto el cambio en disco
+            return null;
+        }
+        bundles.put(profileId, new CachedBundle(snapshot.getEtag(), bundle));
+        return bundle;
+    }
+
+    // ?profile=id dirige la actualización a ese perfil de "profiles" (se crea si no existe);
+    // sin él se actualiza la raíz de la configuración, como siempre
+    private boolean applyUpdate(HttpExchange exchange, JsonObject updates) {
+        String profileId = queryParam(exchange, "profile");
+        if (profileId != null && !profileId.isEmpty()) {
+            Diagnostics.log("Actualización dirigida al perfil {}", profileId);
+            return configManager.updateProfile(profileId, updates, isDurable(exchange));
+        }
+        return configManager.updateConfig(updates, isDurable(exchange));
+    }
+
+    // Valor decodificado de un parámetro de la query; null si no está
+    private static String queryParam(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            String key = eq >= 0 ? param.substring(0, eq) : param;
+            if (key.equals(name)) {
+                return java.net.URLDecoder.decode(eq >= 0 ? param.substring(eq + 1) : "", StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    // "X-Durable: true" pide responder solo cuando la configuración ya está guardada en disco
+    private static boolean isDurable(HttpExchange exchange) {
+        String value = exchange.getRequestHeaders().getFirst("X-Durable");
+        return value != null && (value.equalsIgnoreCase("true") || value.equals("1"));
+    }
+
+    private void sendResponse(HttpExchange exchange, int statusCode, String response, String contentType) throws IOException {
+        sendResponse(exchange, statusCode, response.getBytes(StandardCharsets.UTF_8), contentType);
+    }
+
+    private void sendResponse(HttpExchange exchange, int statusCode, byte[] body, String contentType) throws IOException {
+        HttpUtil.sendBody(exchange, statusCode, body, contentType);
     }
 }
 
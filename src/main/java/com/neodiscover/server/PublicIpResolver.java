@@ -0,0 +1,202 @@
+package com.neodiscover.server;
+
+import com.neodiscover.NeoDiscover;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Resuelve la IP pública en segundo plano consultando todos los proveedores a la vez.
+ *
+ * La ruta de las peticiones HTTP solo lee el último valor cacheado con {@link #getPublicIp()};
+ * nunca espera a la red. El refresco se hace en un scheduler propio cada {@code ttl / 2}.
+ */
+public class PublicIpResolver {
+    public static final List<URI> DEFAULT_PROVIDERS = List.of(
+        URI.create("https://api.ipify.org"),
+        URI.create("https://icanhazip.com"),
+        URI.create("https://ifconfig.me/ip"),
+        URI.create("https://checkip.amazonaws.com")
+    );
+
+    private static final Pattern IPV4 = Pattern.compile("^([0-9]{1,3}\\.){3}[0-9]{1,3}$");
+
+    private final List<URI> providers;
+    private final Duration ttl;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    // Hay un refresco bajo demanda en la cola del scheduler: como mucho uno a la vez
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private volatile ScheduledExecutorService scheduler;
+    private volatile String cachedIp;
+    private volatile long expiresAt;
+    private Metrics metrics;
+
+    public PublicIpResolver() {
+        this(DEFAULT_PROVIDERS, Duration.ofMinutes(10), Duration.ofSeconds(3));
+    }
+
+    public PublicIpResolver(List<URI> providers, Duration ttl, Duration timeout) {
+        this.providers = List.copyOf(providers);
+        this.ttl = ttl;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(timeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    }
+
+    public static List<URI> parseProviders(List<String> urls) {
+        List<URI> result = new ArrayList<>();
+        for (String url : urls) {
+            try {
+                result.add(URI.create(url));
+            } catch (IllegalArgumentException e) {
+                NeoDiscover.LOGGER.warn("Proveedor de IP pública inválido ignorado: {}", url);
+            }
+        }
+        return result.isEmpty() ? DEFAULT_PROVIDERS : result;
+    }
+
+    public void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "NeoDiscover-PublicIp");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMillis = Math.max(1000, ttl.toMillis() / 2);
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    // Nunca bloquea: devuelve la última IP conocida (aunque haya caducado) o null
+    public String getPublicIp() {
+        ScheduledExecutorService scheduler = this.scheduler;
+        if (System.currentTimeMillis() >= expiresAt && scheduler != null && !refreshing.get()
+                && refreshQueued.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::refreshOnDemand);
+            } catch (java.util.concurrent.RejectedExecutionException e) {
+                refreshQueued.set(false);
+            }
+        }
+        return cachedIp;
+    }
+
+    private void refreshOnDemand() {
+        try {
+            // El refresco periódico puede haberse adelantado mientras esperaba turno
+            if (System.currentTimeMillis() >= expiresAt) {
+                refreshQuietly();
+            }
+        } finally {
+            refreshQueued.set(false);
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh().join();
+        } catch (Exception e) {
+            NeoDiscover.LOGGER.debug("No se pudo refrescar la IP pública: {}", e.getMessage());
+        }
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public CompletableFuture<String> refresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(cachedIp);
+        }
+        long started = System.nanoTime();
+
+        // Lanzar todos los proveedores a la vez y quedarse con la primera respuesta válida
+        CompletableFuture<String> first = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(providers.size());
+        List<CompletableFuture<?>> requests = new CopyOnWriteArrayList<>();
+        for (URI provider : providers) {
+            HttpRequest request = HttpRequest.newBuilder(provider).timeout(timeout).GET().build();
+            CompletableFuture<HttpResponse<String>> pendingRequest = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+            requests.add(pendingRequest);
+            pendingRequest.whenComplete((response, error) -> {
+                if (error == null && response.statusCode() == 200) {
+                    String ip = response.body().trim();
+                    if (IPV4.matcher(ip).matches()) {
+                        first.complete(ip);
+                    }
+                } else if (error != null) {
+                    NeoDiscover.LOGGER.debug("No se pudo obtener IP pública desde {}: {}", provider, error.getMessage());
+                }
+                if (pending.decrementAndGet() == 0) {
+                    first.complete(null);
+                }
+            });
+        }
+        if (providers.isEmpty()) {
+            first.complete(null);
+        }
+
+        return first.whenComplete((ip, error) -> {
+            // Cancelar las consultas que siguen en curso
+            for (CompletableFuture<?> request : requests) {
+                request.cancel(true);
+            }
+            if (metrics != null) {
+                metrics.recordPublicIpLookup(System.nanoTime() - started, ip != null);
+            }
+            if (ip != null) {
+                String previous = cachedIp;
+                cachedIp = ip;
+                expiresAt = System.currentTimeMillis() + ttl.toMillis();
+                if (!ip.equals(previous)) {
+                    NeoDiscover.LOGGER.info("IP pública detectada: {}", ip);
+                    notifyChangeListeners();
+                }
+            } else {
+                // Ningún proveedor respondió: reintentar más tarde sin saturar
+                expiresAt = System.currentTimeMillis() + Math.min(ttl.toMillis(), 30_000L);
+            }
+            refreshing.set(false);
+        });
+    }
+
+    private void notifyChangeListeners() {
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                NeoDiscover.LOGGER.warn("Error en listener de cambios de IP pública", e);
+            }
+        }
+    }
+}
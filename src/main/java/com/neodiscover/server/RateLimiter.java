@@ -0,0 +1,196 @@
+package com.neodiscover.server;
+
+import com.neodiscover.NeoDiscover;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Límites por IP del servidor HTTP: un token bucket por tipo de endpoint (perfiles, descargas y
+ * /update) y un máximo de peticiones simultáneas por cliente. Al superarlos se responde 429 con
+ * Retry-After antes de tocar disco.
+ *
+ * Cada bucket es un único AtomicLong con el algoritmo GCRA (equivalente a un token bucket): se
+ * guarda el instante teórico de la siguiente petición y se actualiza con CAS, sin locks. Los
+ * clientes inactivos con el bucket lleno se descartan periódicamente.
+ */
+final class RateLimiter {
+    static final long DEFAULT_MAX_CONNECTIONS_PER_IP = 16;
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    enum Kind {
+        PROFILES("profiles", 2, 10),
+        DOWNLOADS("downloads", 50, 500),
+        UPDATE("update", 1, 10),
+        METRICS("metrics", 1, 5);
+
+        final String configPrefix;
+        final long defaultPerSecond;
+        final long defaultBurst;
+
+        Kind(String configPrefix, long defaultPerSecond, long defaultBurst) {
+            this.configPrefix = configPrefix;
+            this.defaultPerSecond = defaultPerSecond;
+            this.defaultBurst = defaultBurst;
+        }
+    }
+
+    // Intervalo entre peticiones y tolerancia de ráfaga en nanosegundos; null si no hay límite
+    private record Rate(long intervalNanos, long toleranceNanos) {
+        static Rate of(long perSecond, long burst) {
+            if (perSecond <= 0) {
+                return null;
+            }
+            long interval = Math.max(1, TimeUnit.SECONDS.toNanos(1) / perSecond);
+            return new Rate(interval, interval * (Math.max(1, burst) - 1));
+        }
+    }
+
+    private static final class Client {
+        final AtomicLong[] nextAllowed = new AtomicLong[Kind.values().length];
+        final AtomicInteger connections = new AtomicInteger();
+
+        Client() {
+            for (int i = 0; i < nextAllowed.length; i++) {
+                nextAllowed[i] = new AtomicLong(Long.MIN_VALUE);
+            }
+        }
+
+        boolean isIdle(long now) {
+            if (connections.get() > 0) {
+                return false;
+            }
+            for (AtomicLong tat : nextAllowed) {
+                if (tat.get() > now) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final Map<InetAddress, Client> clients = new ConcurrentHashMap<>();
+    // Se sustituye entero al reconfigurar para que los hilos vean siempre un conjunto coherente
+    private volatile Rate[] rates;
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+    private volatile int maxConnectionsPerIp = (int) DEFAULT_MAX_CONNECTIONS_PER_IP;
+    private volatile long retryAfterSeconds = AdmissionFilter.DEFAULT_RETRY_AFTER_SECONDS;
+
+    RateLimiter() {
+        Rate[] defaults = new Rate[Kind.values().length];
+        for (Kind kind : Kind.values()) {
+            defaults[kind.ordinal()] = Rate.of(kind.defaultPerSecond, kind.defaultBurst);
+        }
+        rates = defaults;
+    }
+
+    // perSecond <= 0 desactiva el límite de ese tipo
+    synchronized void configure(Kind kind, long perSecond, long burst) {
+        Rate[] updated = rates.clone();
+        updated[kind.ordinal()] = Rate.of(perSecond, burst);
+        rates = updated;
+    }
+
+    // 0 desactiva el límite de peticiones simultáneas por IP
+    void setMaxConnectionsPerIp(long maxConnections) {
+        this.maxConnectionsPerIp = (int) Math.min(Integer.MAX_VALUE, Math.max(0, maxConnections));
+    }
+
+    void setRetryAfterSeconds(long retryAfterSeconds) {
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    int getTrackedClients() {
+        return clients.size();
+    }
+
+    // Filtro para un contexto; kind null aplica solo el límite de conexiones
+    Filter filter(Kind kind) {
+        return new Filter() {
+            @Override
+            public String description() {
+                return "Límite de peticiones por IP" + (kind != null ? " (" + kind.configPrefix + ")" : "");
+            }
+
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                handle(kind, exchange, chain);
+            }
+        };
+    }
+
+    private void handle(Kind kind, HttpExchange exchange, Filter.Chain chain) throws IOException {
+        long now = System.nanoTime();
+        sweepIfDue(now);
+        InetAddress address = exchange.getRemoteAddress() != null ? exchange.getRemoteAddress().getAddress() : null;
+        if (address == null) {
+            chain.doFilter(exchange);
+            return;
+        }
+        Client client = clients.computeIfAbsent(address, a -> new Client());
+
+        // Primero las conexiones: una petición rechazada por ese motivo no gasta su cuota
+        int limit = maxConnectionsPerIp;
+        if (client.connections.incrementAndGet() > limit && limit > 0) {
+            client.connections.decrementAndGet();
+            reject(exchange, "demasiadas conexiones simultáneas", retryAfterSeconds);
+            return;
+        }
+        try {
+            if (kind != null) {
+                long waitNanos = acquire(client.nextAllowed[kind.ordinal()], rates[kind.ordinal()], now);
+                if (waitNanos > 0) {
+                    long second = TimeUnit.SECONDS.toNanos(1);
+                    reject(exchange, "límite de " + kind.configPrefix, Math.max(1, (waitNanos + second - 1) / second));
+                    return;
+                }
+            }
+            chain.doFilter(exchange);
+        } finally {
+            client.connections.decrementAndGet();
+        }
+    }
+
+    // GCRA: 0 si se admite la petición, o los nanosegundos que faltan para poder admitirla
+    private static long acquire(AtomicLong nextAllowed, Rate rate, long now) {
+        if (rate == null) {
+            return 0;
+        }
+        while (true) {
+            long current = nextAllowed.get();
+            long base = Math.max(current, now);
+            long wait = base - rate.toleranceNanos() - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (nextAllowed.compareAndSet(current, base + rate.intervalNanos())) {
+                return 0;
+            }
+        }
+    }
+
+    // Como mucho un hilo por intervalo recorre el mapa; si un cliente vuelve justo al retirarlo
+    // se crea uno nuevo con el bucket lleno, que es el mismo estado que tenía
+    private void sweepIfDue(long now) {
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL_NANOS || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        clients.entrySet().removeIf(entry -> entry.getValue().isIdle(now));
+    }
+
+    private void reject(HttpExchange exchange, String reason, long retryAfter) throws IOException {
+        NeoDiscover.LOGGER.debug("Petición limitada ({}) de {}: {}", reason,
+            exchange.getRemoteAddress().getAddress().getHostAddress(), exchange.getRequestURI());
+        exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfter));
+        HttpUtil.sendBody(exchange, 429, "Too Many Requests".getBytes(StandardCharsets.UTF_8), "text/plain");
+    }
+}
@@ -1,17 +1,12 @@
 package com.neodiscover.server;
 
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.Optional;
-import java.util.Scanner;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.neodiscover.NeoDiscover;
 import com.neodiscover.config.ConfigManager;
+import com.neodiscover.config.ConfigSnapshot;
 
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.dedicated.DedicatedServer;
@@ -21,6 +16,10 @@ import net.neoforged.fml.ModList;
 public class ServerInfoCollector {
     private final ConfigManager configManager;
     private FileManager fileManager;
+    private PublicIpResolver publicIpResolver;
+    private FileHashCache fileHashCache;
+    private ContentStore contentStore;
+    private ModMetadataIndex modMetadataIndex;
     private MinecraftServer server;
 
     public ServerInfoCollector(ConfigManager configManager) {
@@ -31,52 +30,86 @@ public class ServerInfoCollector {
         this.fileManager = fileManager;
     }
 
+    public void setPublicIpResolver(PublicIpResolver publicIpResolver) {
+        this.publicIpResolver = publicIpResolver;
+    }
+
+    public void setFileHashCache(FileHashCache fileHashCache) {
+        this.fileHashCache = fileHashCache;
+    }
+
+    public void setContentStore(ContentStore contentStore) {
+        this.contentStore = contentStore;
+    }
+
+    public void setModMetadataIndex(ModMetadataIndex modMetadataIndex) {
+        this.modMetadataIndex = modMetadataIndex;
+    }
+
     public void setServer(MinecraftServer server) {
         this.server = server;
     }
 
+    // Todo el perfil sale de la misma versión de la configuración; los cambios en disco los
+    // aplica el watcher de ConfigManager, aquí no se lee el archivo
+    public ConfigSnapshot getConfig() {
+        return configManager.getSnapshot();
+    }
+
     public JsonObject collectServerInfo() {
-        // Recargar configuración para obtener los valores más recientes
-        configManager.loadConfig();
-        
-        // Obtener y establecer la IP/hostname del servidor para FileManager
-        String serverHost = getServerHost();
-        if (fileManager != null) {
-            fileManager.setServerHost(serverHost);
-        }
-        
-        // Debug: verificar qué valores tiene la configuración
-        com.google.gson.JsonObject configData = configManager.getConfigData();
-        NeoDiscover.LOGGER.info("Config data keys: {}", configData.keySet());
-        if (configData.has("name")) {
-            NeoDiscover.LOGGER.info("Config 'name' value: {}", configData.get("name"));
-        }
-        if (configData.has("description")) {
-            NeoDiscover.LOGGER.info("Config 'description' value: {}", configData.get("description"));
+        return collectServerInfo(getConfig());
+    }
+
+    // profiles.json completo: datos del servidor y todos los perfiles definidos
+    public JsonObject collectServerInfo(ConfigSnapshot config) {
+        prepareHost(config);
+        JsonObject root = collectRoot(config);
+        JsonArray profiles = new JsonArray();
+        for (String profileId : config.getProfileIds()) {
+            ConfigSnapshot settings = config.forProfile(profileId);
+            profiles.add(createProfile(settings, getServerName(settings)));
         }
-        if (configData.has("id")) {
-            NeoDiscover.LOGGER.info("Config 'id' value: {}", configData.get("id"));
+        root.add("profiles", profiles);
+        return root;
+    }
+
+    // Documento de un solo perfil, con la misma forma que profiles.json; null si no existe
+    public JsonObject collectProfileInfo(ConfigSnapshot config, String profileId) {
+        ConfigSnapshot settings = config.forProfile(profileId);
+        if (settings == null) {
+            return null;
         }
-        
-        JsonObject root = new JsonObject();
-        
-        // Información del servidor
-        String serverName = getServerName();
-        root.addProperty("server_name", serverName);
-        root.addProperty("server_url", configManager.getConfigValue("server_url", ""));
-        
-        // Perfiles
+        prepareHost(config);
+        JsonObject root = collectRoot(settings);
         JsonArray profiles = new JsonArray();
-        JsonObject profile = createProfile(serverName);
-        profiles.add(profile);
+        profiles.add(createProfile(settings, root.get("server_name").getAsString()));
         root.add("profiles", profiles);
-        
         return root;
     }
 
-    private String getServerHost() {
+    // Información del servidor (sin perfiles)
+    public JsonObject collectRoot(ConfigSnapshot settings) {
+        JsonObject root = new JsonObject();
+        root.addProperty("server_name", getServerName(settings));
+        root.addProperty("server_url", settings.getString("server_url", ""));
+        return root;
+    }
+
+    private void prepareHost(ConfigSnapshot config) {
+        // Obtener y establecer la IP/hostname del servidor para FileManager (común a todos los perfiles)
+        String serverHost = getServerHost(config);
+        if (fileManager != null) {
+            fileManager.setServerHost(serverHost);
+        }
+        
+        // Debug: verificar qué valores tiene la configuración
+        Diagnostics.log("Config data keys (versión {}): {}", config.getVersion(), config.keySet());
+        Diagnostics.log("Perfiles definidos: {}", config.getProfileIds());
+    }
+
+    private String getServerHost(ConfigSnapshot settings) {
         // 1. Intentar obtener de la configuración (config.server_ip) - PRIORIDAD MÁXIMA
-        com.google.gson.JsonElement configElement = configManager.getConfigElement("config");
+        com.google.gson.JsonElement configElement = settings.getElement("config");
         if (configElement != null && configElement.isJsonObject()) {
             com.google.gson.JsonObject configObj = configElement.getAsJsonObject();
             if (configObj.has("server_ip")) {
@@ -86,83 +119,56 @@ public class ServerInfoCollector {
                     if (configIp.equals("localhost")) {
                         String publicIp = getPublicIp();
                         if (publicIp != null && !publicIp.isEmpty()) {
-                            NeoDiscover.LOGGER.info("Server IP configurado como 'localhost', usando IP pública detectada: {}", publicIp);
+                            Diagnostics.log("Server IP configurado como 'localhost', usando IP pública detectada: {}", publicIp);
                             return publicIp;
                         }
-                        NeoDiscover.LOGGER.info("Server IP desde configuración (config.server_ip): localhost");
+                        Diagnostics.log("Server IP desde configuración (config.server_ip): localhost");
                         return "localhost";
                     }
-                    NeoDiscover.LOGGER.info("Server IP desde configuración (config.server_ip): {}", configIp);
+                    Diagnostics.log("Server IP desde configuración (config.server_ip): {}", configIp);
                     return configIp;
                 }
             }
         }
         
         // 2. Intentar obtener directamente de la configuración (server_ip en raíz)
-        String configIp = configManager.getConfigValue("server_ip");
+        String configIp = settings.getString("server_ip");
         if (configIp != null && !configIp.isEmpty()) {
             // Si es "localhost", intentar obtener IP pública automáticamente
             if (configIp.equals("localhost")) {
                 String publicIp = getPublicIp();
                 if (publicIp != null && !publicIp.isEmpty()) {
-                    NeoDiscover.LOGGER.info("Server IP configurado como 'localhost', usando IP pública detectada: {}", publicIp);
+                    Diagnostics.log("Server IP configurado como 'localhost', usando IP pública detectada: {}", publicIp);
                     return publicIp;
                 }
             }
-            NeoDiscover.LOGGER.info("Server IP desde configuración (raíz): {}", configIp);
+            Diagnostics.log("Server IP desde configuración (raíz): {}", configIp);
             return configIp;
         }
         
         // 3. Intentar obtener IP pública automáticamente (solo si no hay configuración)
         String publicIp = getPublicIp();
         if (publicIp != null && !publicIp.isEmpty()) {
-            NeoDiscover.LOGGER.info("IP pública detectada automáticamente: {}", publicIp);
+            Diagnostics.log("IP pública detectada automáticamente: {}", publicIp);
             return publicIp;
         }
         
         // 4. Fallback a localhost
-        NeoDiscover.LOGGER.info("Usando localhost como fallback");
+        Diagnostics.log("Usando localhost como fallback");
         return "localhost";
     }
 
     private String getPublicIp() {
-        // Lista de servicios para obtener IP pública
-        String[] services = {
-            "https://api.ipify.org",
-            "https://icanhazip.com",
-            "https://ifconfig.me/ip",
-            "https://checkip.amazonaws.com"
-        };
-        
-        for (String service : services) {
-            try {
-                URL url = new URL(service);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setConnectTimeout(3000);
-                connection.setReadTimeout(3000);
-                connection.setRequestMethod("GET");
-                
-                try (InputStream inputStream = connection.getInputStream();
-                     Scanner scanner = new Scanner(inputStream).useDelimiter("\\A")) {
-                    if (scanner.hasNext()) {
-                        String ip = scanner.next().trim();
-                        // Validar que sea una IP válida
-                        if (ip.matches("^([0-9]{1,3}\\.){3}[0-9]{1,3}$")) {
-                            return ip;
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                NeoDiscover.LOGGER.debug("No se pudo obtener IP pública desde {}: {}", service, e.getMessage());
-            }
+        // Valor cacheado por el resolver en segundo plano; nunca bloquea la petición
+        if (publicIpResolver == null) {
+            return null;
         }
-        
-        return null;
+        return publicIpResolver.getPublicIp();
     }
 
-    private String getServerName() {
+    private String getServerName(ConfigSnapshot settings) {
         // Priorizar configuración sobre MOTD
-        String configName = configManager.getConfigValue("server_name");
+        String configName = settings.getString("server_name");
         if (configName != null && !configName.isEmpty()) {
             return configName;
         }
@@ -178,58 +184,54 @@ public class ServerInfoCollector {
         return "Mi Servidor";
     }
 
-    private JsonObject createProfile(String serverName) {
+    private JsonObject createProfile(ConfigSnapshot settings, String serverName) {
         JsonObject profile = new JsonObject();
         
         // ID del perfil (de configuración, con fallback)
-        String profileId = configManager.getConfigValue("id");
-        NeoDiscover.LOGGER.info("Profile ID desde config 'id': {}", profileId);
-        if (profileId == null || profileId.isEmpty()) {
-            profileId = configManager.getConfigValue("profile_id", "mi-servidor-neoforge");
-            NeoDiscover.LOGGER.info("Profile ID desde config 'profile_id': {}", profileId);
-        }
+        String profileId = settings.getProfileId();
+        Diagnostics.log("Profile ID: {}", profileId);
         profile.addProperty("id", profileId);
         
         // Nombre del perfil (PRIORIDAD: configuración "name" > server_name > MOTD)
-        String profileName = configManager.getConfigValue("name");
-        NeoDiscover.LOGGER.info("Profile name desde config 'name': {}", profileName);
+        String profileName = settings.getString("name");
+        Diagnostics.log("Profile name desde config 'name': {}", profileName);
         if (profileName == null || profileName.isEmpty()) {
             // Si no hay "name" en configuración, usar server_name (que ya prioriza configuración)
             profileName = serverName;
-            NeoDiscover.LOGGER.info("Profile name usando serverName: {}", profileName);
+            Diagnostics.log("Profile name usando serverName: {}", profileName);
         }
         profile.addProperty("name", profileName);
         
         // Descripción (PRIORIDAD: configuración "description" > MOTD > valor por defecto)
-        String description = configManager.getConfigValue("description");
-        NeoDiscover.LOGGER.info("Profile description desde config 'description': {}", description);
+        String description = settings.getString("description");
+        Diagnostics.log("Profile description desde config 'description': {}", description);
         if (description == null || description.isEmpty()) {
             // Si no hay en configuración, intentar obtener del MOTD
             if (server != null && server instanceof DedicatedServer dedicatedServer) {
                 String motd = dedicatedServer.getProperties().motd;
                 if (motd != null && !motd.isEmpty()) {
                     description = motd;
-                    NeoDiscover.LOGGER.info("Profile description usando MOTD: {}", description);
+                    Diagnostics.log("Profile description usando MOTD: {}", description);
                 }
             }
             // Si aún no hay, usar valor por defecto
             if (description == null || description.isEmpty()) {
                 description = "Servidor NeoForge con mods personalizados";
-                NeoDiscover.LOGGER.info("Profile description usando valor por defecto: {}", description);
+                Diagnostics.log("Profile description usando valor por defecto: {}", description);
             }
         }
         profile.addProperty("description", description);
         
         // Versión base
-        JsonObject versionBase = createVersionBase();
+        JsonObject versionBase = createVersionBase(settings);
         profile.add("version_base", versionBase);
         
         // Mods
-        JsonArray mods = collectMods();
+        JsonArray mods = collectMods(settings);
         profile.add("mods", mods);
         
         // Shaders (de configuración)
-        JsonArray shaders = collectShaders();
+        JsonArray shaders = collectShaders(settings);
         // Agregar URLs a los shaders si fileManager está disponible
         if (fileManager != null) {
             for (int i = 0; i < shaders.size(); i++) {
@@ -240,13 +242,16 @@ public class ServerInfoCollector {
                         String shaderName = shader.get("name").getAsString();
                         shader.addProperty("url", fileManager.getShaderUrl(shaderName));
                     }
+                    if (shader.has("name")) {
+                        addFileInfo(shader, fileManager.findFile("shaders/" + shader.get("name").getAsString()));
+                    }
                 }
             }
         }
         profile.add("shaders", shaders);
         
         // Resource packs (de configuración)
-        JsonArray resourcePacks = collectResourcePacks();
+        JsonArray resourcePacks = collectResourcePacks(settings);
         // Agregar URLs a los resource packs si fileManager está disponible
         if (fileManager != null) {
             for (int i = 0; i < resourcePacks.size(); i++) {
@@ -257,13 +262,16 @@ public class ServerInfoCollector {
                         String rpName = rp.get("name").getAsString();
                         rp.addProperty("url", fileManager.getResourcePackUrl(rpName));
                     }
+                    if (rp.has("name")) {
+                        addFileInfo(rp, fileManager.findFile("resourcepacks/" + rp.get("name").getAsString()));
+                    }
                 }
             }
         }
         profile.add("resourcepacks", resourcePacks);
         
         // Opciones (de configuración)
-        JsonObject options = collectOptions();
+        JsonObject options = collectOptions(settings);
         profile.add("options", options);
         
         // Datapacks
@@ -274,7 +282,8 @@ public class ServerInfoCollector {
         // Excluir mods ya que están en el nodo "mods" arriba
         if (fileManager != null) {
             JsonArray downloads = new JsonArray();
-            for (String fileName : fileManager.listDownloadedFiles()) {
+            for (DownloadsIndex.FileEntry file : fileManager.getIndex().list()) {
+                String fileName = file.getRelativePath();
                 // Excluir mods (ya están en el nodo "mods")
                 if (!fileName.startsWith("mods/")) {
                     JsonObject download = new JsonObject();
@@ -290,6 +299,7 @@ public class ServerInfoCollector {
                     } else {
                         download.addProperty("url", fileManager.getFileUrl(fileName));
                     }
+                    addFileInfo(download, file);
                     
                     downloads.add(download);
                 }
@@ -298,23 +308,23 @@ public class ServerInfoCollector {
         }
         
         // Configuración del servidor
-        JsonObject config = createServerConfig();
+        JsonObject config = createServerConfig(settings);
         profile.add("config", config);
         
         return profile;
     }
 
 
-    private JsonObject createVersionBase() {
+    private JsonObject createVersionBase(ConfigSnapshot settings) {
         JsonObject versionBase = new JsonObject();
         versionBase.addProperty("type", "neoforge");
         
         // Obtener versión de Minecraft
-        String minecraftVersion = getMinecraftVersion();
+        String minecraftVersion = getMinecraftVersion(settings);
         versionBase.addProperty("minecraft_version", minecraftVersion);
         
         // Obtener versión de NeoForge
-        String neoforgeVersion = getNeoForgeVersion();
+        String neoforgeVersion = getNeoForgeVersion(settings);
         versionBase.addProperty("neoforge_version", neoforgeVersion);
         
         // URL del instalador
@@ -327,7 +337,7 @@ public class ServerInfoCollector {
         return versionBase;
     }
 
-    private String getMinecraftVersion() {
+    private String getMinecraftVersion(ConfigSnapshot settings) {
         // Obtener versión de Minecraft desde el servidor
         if (server != null) {
             try {
@@ -346,13 +356,15 @@ public class ServerInfoCollector {
         }
         
         // Fallback a configuración o valor por defecto
-        return configManager.getConfigValue("minecraft_version", "1.21.1");
+        return settings.getString("minecraft_version", "1.21.1");
     }
 
-    private String getNeoForgeVersion() {
+    private String getNeoForgeVersion(ConfigSnapshot settings) {
         // Obtener versión de NeoForge
         try {
-            Optional<? extends ModContainer> neoforgeMod = ModList.get().getModContainerById("neoforge");
+            // Sin FML cargado (benchmarks, herramientas) no hay ModList: usar el valor de la configuración
+            ModList modList = ModList.get();
+            Optional<? extends ModContainer> neoforgeMod = modList != null ? modList.getModContainerById("neoforge") : Optional.empty();
             if (neoforgeMod.isPresent()) {
                 String version = neoforgeMod.get().getModInfo().getVersion().toString();
                 // Limpiar la versión si es necesario
@@ -362,43 +374,45 @@ public class ServerInfoCollector {
             NeoDiscover.LOGGER.warn("No se pudo obtener versión de NeoForge", e);
         }
         
-        return configManager.getConfigValue("neoforge_version", "21.1.215");
+        return settings.getString("neoforge_version", "21.1.215");
     }
 
-    private JsonArray collectMods() {
+    private JsonArray collectMods(ConfigSnapshot settings) {
         JsonArray modsArray = new JsonArray();
+        // Un perfil con lista "mods" solo incluye esos archivos de downloads/mods; sin ella, todos
+        java.util.Set<String> selected = selectedMods(settings);
         
         try {
-            // Leer mods desde downloads/mods en lugar de la carpeta mods del servidor
+            // Leer mods desde downloads/mods (índice en memoria) en lugar de la carpeta mods del servidor
             if (fileManager != null) {
-                Path downloadsModsPath = fileManager.getDownloadsPath().resolve("mods");
-                
-                if (Files.exists(downloadsModsPath)) {
-                    Files.list(downloadsModsPath)
-                        .filter(path -> path.toString().endsWith(".jar"))
-                        .forEach(path -> {
-                            JsonObject mod = new JsonObject();
-                            String fileName = path.getFileName().toString();
-                            mod.addProperty("name", fileName);
-                            
-                            // URL del mod (de configuración, desde downloads, o construir desde nombre)
-                            String modUrl = configManager.getConfigValue("mod_url_" + fileName);
-                            
-                            // Si no hay URL configurada, generar una desde downloads
-                            if (modUrl == null || modUrl.isEmpty()) {
-                                modUrl = fileManager.getModUrl(fileName);
-                            }
-                            
-                            mod.addProperty("url", modUrl != null ? modUrl : "");
-                            mod.addProperty("required", true);
-                            
-                            modsArray.add(mod);
-                        });
+                for (DownloadsIndex.FileEntry file : fileManager.getIndex().list("mods")) {
+                    String fileName = file.getName();
+                    if (!fileName.endsWith(".jar") || (selected != null && !selected.contains(fileName))) {
+                        continue;
+                    }
+                    JsonObject mod = new JsonObject();
+                    mod.addProperty("name", fileName);
+                    
+                    // URL del mod (de configuración, desde downloads, o construir desde nombre)
+                    String modUrl = settings.getString("mod_url_" + fileName);
                     
-                    NeoDiscover.LOGGER.info("Mods recopilados desde downloads/mods: {}", modsArray.size());
-                } else {
-                    NeoDiscover.LOGGER.info("Carpeta downloads/mods no existe aún");
+                    // Si no hay URL configurada, generar una desde downloads
+                    if (modUrl == null || modUrl.isEmpty()) {
+                        modUrl = fileManager.getModUrl(fileName);
+                    }
+                    
+                    mod.addProperty("url", modUrl != null ? modUrl : "");
+                    mod.addProperty("required", true);
+                    addFileInfo(mod, file);
+                    // modId, versión, lado y dependencias del neoforge.mods.toml, una vez leído
+                    if (modMetadataIndex != null && mod.has("sha256")) {
+                        modMetadataIndex.addTo(mod, mod.get("sha256").getAsString());
+                    }
+                    
+                    modsArray.add(mod);
                 }
+                
+                Diagnostics.log("Mods recopilados desde downloads/mods: {}", modsArray.size());
             } else {
                 NeoDiscover.LOGGER.warn("fileManager es null, no se pueden recopilar mods desde downloads");
             }
@@ -409,23 +423,41 @@ public class ServerInfoCollector {
         return modsArray;
     }
 
-    private JsonArray collectShaders() {
+    // Nombres de la lista "mods" del perfil (texto u objetos con "name"); null si no la tiene
+    private java.util.Set<String> selectedMods(ConfigSnapshot settings) {
+        com.google.gson.JsonElement modsElement = settings.getElement("mods");
+        if (modsElement == null || !modsElement.isJsonArray()) {
+            return null;
+        }
+        java.util.Set<String> names = new java.util.HashSet<>();
+        for (com.google.gson.JsonElement element : modsElement.getAsJsonArray()) {
+            if (element.isJsonPrimitive()) {
+                names.add(element.getAsString());
+            } else if (element.isJsonObject() && element.getAsJsonObject().has("name")) {
+                names.add(element.getAsJsonObject().get("name").getAsString());
+            }
+        }
+        return names;
+    }
+
+    private JsonArray collectShaders(ConfigSnapshot settings) {
         JsonArray shadersArray = new JsonArray();
         
         // Obtener shaders de la configuración
-        com.google.gson.JsonElement shadersElement = configManager.getConfigElement("shaders");
+        com.google.gson.JsonElement shadersElement = settings.getElement("shaders");
         if (shadersElement != null && shadersElement.isJsonArray()) {
+            // getElement devuelve una copia: el perfil puede añadir url/hashes sin tocar la configuración
             return shadersElement.getAsJsonArray();
         }
         
         return shadersArray;
     }
 
-    private JsonArray collectResourcePacks() {
+    private JsonArray collectResourcePacks(ConfigSnapshot settings) {
         JsonArray resourcePacksArray = new JsonArray();
         
         // Obtener resource packs de la configuración
-        com.google.gson.JsonElement resourcePacksElement = configManager.getConfigElement("resourcepacks");
+        com.google.gson.JsonElement resourcePacksElement = settings.getElement("resourcepacks");
         if (resourcePacksElement != null && resourcePacksElement.isJsonArray()) {
             return resourcePacksElement.getAsJsonArray();
         }
@@ -433,11 +465,31 @@ public class ServerInfoCollector {
         return resourcePacksArray;
     }
 
-    private JsonObject collectOptions() {
+    // Tamaño y hashes del archivo; los hashes solo aparecen cuando ya están en la caché
+    private void addFileInfo(JsonObject entry, DownloadsIndex.FileEntry file) {
+        if (file == null) {
+            return;
+        }
+        entry.addProperty("size", file.getSize());
+        FileHashCache.Entry hashes = fileHashCache != null ? fileHashCache.get(file) : null;
+        if (hashes != null) {
+            entry.addProperty("sha1", hashes.getSha1());
+            entry.addProperty("sha256", hashes.getSha256());
+            
+            // Con almacén por contenido, la URL por nombre se sustituye por la inmutable del blob
+            // (las URLs configuradas a mano, p. ej. mod_url_*, se respetan)
+            if (contentStore != null && contentStore.isEnabled() && contentStore.hasBlob(hashes.getSha256())
+                    && entry.has("url") && entry.get("url").getAsString().equals(fileManager.getTypeUrl(file.getFolder(), file.getName()))) {
+                entry.addProperty("url", fileManager.getBlobUrl(hashes.getSha256(), file.getName()));
+            }
+        }
+    }
+
+    private JsonObject collectOptions(ConfigSnapshot settings) {
         JsonObject options = new JsonObject();
         
         // Obtener opciones de la configuración
-        com.google.gson.JsonElement optionsElement = configManager.getConfigElement("options");
+        com.google.gson.JsonElement optionsElement = settings.getElement("options");
         if (optionsElement != null && optionsElement.isJsonObject()) {
             return optionsElement.getAsJsonObject();
         }
@@ -445,18 +497,18 @@ public class ServerInfoCollector {
         return options;
     }
 
-    private JsonObject createServerConfig() {
+    private JsonObject createServerConfig(ConfigSnapshot settings) {
         JsonObject config = new JsonObject();
         
-        // Usar el mismo método getServerHost() que ya funciona correctamente
-        String serverIp = getServerHost();
+        // Usar el mismo método getServerHost(settings) que ya funciona correctamente
+        String serverIp = getServerHost(settings);
         config.addProperty("server_ip", serverIp);
         
         int serverPort = 25565;
         if (server != null && server instanceof DedicatedServer dedicatedServer) {
             serverPort = dedicatedServer.getProperties().serverPort;
         } else {
-            String portStr = configManager.getConfigValue("server_port");
+            String portStr = settings.getString("server_port");
             if (portStr != null) {
                 try {
                     serverPort = Integer.parseInt(portStr);
@@ -467,7 +519,7 @@ public class ServerInfoCollector {
         }
         config.addProperty("server_port", serverPort);
         
-        String autoConnect = configManager.getConfigValue("auto_connect", "true");
+        String autoConnect = settings.getString("auto_connect", "true");
         config.addProperty("auto_connect", Boolean.parseBoolean(autoConnect));
         
         return config;
@@ -0,0 +1,299 @@
+package com.neodiscover.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ZIP sin compresión (entradas STORED) con los archivos de un perfil, escrito directamente desde
+ * disco mientras se envía: sin temporales y sin tener el archivo entero en memoria.
+ *
+ * Las cabeceras locales y el directorio central se calculan al construirlo a partir del tamaño y
+ * el CRC-32 de cada archivo (FileHashCache), así que la longitud total se conoce antes de enviar
+ * nada. Se usa Zip64 solo cuando algún tamaño, desplazamiento o el número de entradas lo exige.
+ */
+final class ZipBundle {
+    static final String[] TYPES = {"mods", "shaders", "resourcepacks"};
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final long ZIP32_LIMIT = 0xFFFFFFFFL;
+    private static final int MAX_ENTRIES_32 = 0xFFFF;
+    // Nombres en UTF-8
+    private static final int FLAG_UTF8 = 0x0800;
+
+    // Archivo del bundle: ruta en el zip y datos del archivo en disco en el momento de construirlo
+    static final class Item {
+        final String name;
+        final Path path;
+        final long size;
+        final long lastModified;
+        final long crc32;
+        final String sha256;
+
+        Item(String name, Path path, long size, long lastModified, long crc32, String sha256) {
+            this.name = name;
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.crc32 = crc32;
+            this.sha256 = sha256;
+        }
+    }
+
+    private final List<Item> items;
+    private final byte[][] localHeaders;
+    private final byte[] centralDirectory;
+    private final long contentLength;
+    private final String etag;
+
+    ZipBundle(List<Item> items) {
+        this.items = List.copyOf(items);
+        this.localHeaders = new byte[this.items.size()][];
+        long[] offsets = new long[this.items.size()];
+        long offset = 0;
+        for (int i = 0; i < this.items.size(); i++) {
+            Item item = this.items.get(i);
+            offsets[i] = offset;
+            localHeaders[i] = localHeader(item);
+            offset += localHeaders[i].length + item.size;
+        }
+        this.centralDirectory = centralDirectory(offsets, offset);
+        this.contentLength = offset + centralDirectory.length;
+        this.etag = contentEtag(centralDirectory);
+    }
+
+    // Archivos locales de un perfil (mods, shaders y resource packs); null si a alguno aún le falta
+    // el hash. Las entradas que no están en downloads (URLs externas) se omiten
+    static List<Item> collect(JsonObject profile, FileManager fileManager, FileHashCache fileHashCache) {
+        List<Item> items = new ArrayList<>();
+        boolean pending = false;
+        for (String type : TYPES) {
+            JsonElement entries = profile.get(type);
+            if (entries == null || !entries.isJsonArray()) {
+                continue;
+            }
+            for (JsonElement element : (JsonArray) entries) {
+                if (!element.isJsonObject() || !element.getAsJsonObject().has("name")) {
+                    continue;
+                }
+                String relativePath = type + "/" + element.getAsJsonObject().get("name").getAsString();
+                DownloadsIndex.FileEntry file = fileManager.findFile(relativePath);
+                if (file == null) {
+                    continue;
+                }
+                FileHashCache.Entry hashes = fileHashCache.get(file);
+                if (hashes == null || hashes.getCrc32() < 0) {
+                    // get() ya lo ha encolado; seguir para encolar también el resto
+                    pending = true;
+                    continue;
+                }
+                items.add(new Item(relativePath, file.getPath(), hashes.getSize(), hashes.getLastModified(),
+                    hashes.getCrc32(), hashes.getSha256()));
+            }
+        }
+        return pending ? null : items;
+    }
+
+    // Bundle con solo los archivos cuyo SHA-256 está en la lista
+    ZipBundle only(Collection<String> sha256) {
+        List<Item> selected = new ArrayList<>();
+        for (Item item : items) {
+            if (sha256.contains(item.sha256)) {
+                selected.add(item);
+            }
+        }
+        return new ZipBundle(selected);
+    }
+
+    int size() {
+        return items.size();
+    }
+
+    long getContentLength() {
+        return contentLength;
+    }
+
+    String getEtag() {
+        return etag;
+    }
+
+    // Comprueba que los archivos siguen como cuando se construyó (si no, la longitud anunciada no valdría)
+    boolean isCurrent() {
+        for (Item item : items) {
+            try {
+                if (Files.size(item.path) != item.size || Files.getLastModifiedTime(item.path).toMillis() != item.lastModified) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void writeTo(OutputStream out, BandwidthLimiter.Transfer pacer, LongAdder sentBytes) throws IOException {
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            try (FileChannel channel = FileChannel.open(item.path, StandardOpenOption.READ)) {
+                if (channel.size() != item.size || Files.getLastModifiedTime(item.path).toMillis() != item.lastModified) {
+                    // Reemplazado entre la comprobación y el envío: solo queda cortar la respuesta
+                    throw new IOException("Archivo modificado durante el envío del bundle: " + item.name);
+                }
+                out.write(localHeaders[i]);
+                FileTransfer.transfer(channel, 0, item.size, out, pacer, sentBytes);
+            }
+        }
+        out.write(centralDirectory);
+    }
+
+    private static byte[] localHeader(Item item) {
+        byte[] name = item.name.getBytes(StandardCharsets.UTF_8);
+        boolean zip64 = item.size >= ZIP32_LIMIT;
+        ByteBuffer header = buffer(30 + name.length + (zip64 ? 20 : 0));
+        header.putInt(LOCAL_HEADER);
+        header.putShort((short) (zip64 ? 45 : 10));
+        header.putShort((short) FLAG_UTF8);
+        header.putShort((short) 0);
+        header.putInt(dosTime(item.lastModified));
+        header.putInt((int) item.crc32);
+        header.putInt((int) (zip64 ? ZIP32_LIMIT : item.size));
+        header.putInt((int) (zip64 ? ZIP32_LIMIT : item.size));
+        header.putShort((short) name.length);
+        header.putShort((short) (zip64 ? 20 : 0));
+        header.put(name);
+        if (zip64) {
+            header.putShort((short) 0x0001);
+            header.putShort((short) 16);
+            header.putLong(item.size);
+            header.putLong(item.size);
+        }
+        return header.array();
+    }
+
+    private byte[] centralDirectory(long[] offsets, long centralOffset) {
+        List<byte[]> headers = new ArrayList<>(items.size());
+        long centralSize = 0;
+        for (int i = 0; i < items.size(); i++) {
+            byte[] header = centralHeader(items.get(i), offsets[i]);
+            headers.add(header);
+            centralSize += header.length;
+        }
+        boolean zip64 = items.size() > MAX_ENTRIES_32 || centralOffset >= ZIP32_LIMIT || centralSize >= ZIP32_LIMIT;
+        ByteBuffer end = buffer((int) centralSize + (zip64 ? 56 + 20 : 0) + 22);
+        for (byte[] header : headers) {
+            end.put(header);
+        }
+        if (zip64) {
+            long zip64EndOffset = centralOffset + centralSize;
+            end.putInt(ZIP64_END_OF_CENTRAL);
+            end.putLong(44);
+            end.putShort((short) 45);
+            end.putShort((short) 45);
+            end.putInt(0);
+            end.putInt(0);
+            end.putLong(items.size());
+            end.putLong(items.size());
+            end.putLong(centralSize);
+            end.putLong(centralOffset);
+            end.putInt(ZIP64_LOCATOR);
+            end.putInt(0);
+            end.putLong(zip64EndOffset);
+            end.putInt(1);
+        }
+        end.putInt(END_OF_CENTRAL);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) (zip64 ? MAX_ENTRIES_32 : items.size()));
+        end.putShort((short) (zip64 ? MAX_ENTRIES_32 : items.size()));
+        end.putInt((int) (zip64 ? ZIP32_LIMIT : centralSize));
+        end.putInt((int) (zip64 ? ZIP32_LIMIT : centralOffset));
+        end.putShort((short) 0);
+        return end.array();
+    }
+
+    private static byte[] centralHeader(Item item, long offset) {
+        byte[] name = item.name.getBytes(StandardCharsets.UTF_8);
+        boolean bigSize = item.size >= ZIP32_LIMIT;
+        boolean bigOffset = offset >= ZIP32_LIMIT;
+        int extra = (bigSize ? 16 : 0) + (bigOffset ? 8 : 0);
+        int extraLength = extra > 0 ? 4 + extra : 0;
+        ByteBuffer header = buffer(46 + name.length + extraLength);
+        header.putInt(CENTRAL_HEADER);
+        header.putShort((short) 45);
+        header.putShort((short) (extra > 0 ? 45 : 10));
+        header.putShort((short) FLAG_UTF8);
+        header.putShort((short) 0);
+        header.putInt(dosTime(item.lastModified));
+        header.putInt((int) item.crc32);
+        header.putInt((int) (bigSize ? ZIP32_LIMIT : item.size));
+        header.putInt((int) (bigSize ? ZIP32_LIMIT : item.size));
+        header.putShort((short) name.length);
+        header.putShort((short) extraLength);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putInt(0);
+        header.putInt((int) (bigOffset ? ZIP32_LIMIT : offset));
+        header.put(name);
+        if (extra > 0) {
+            header.putShort((short) 0x0001);
+            header.putShort((short) extra);
+            if (bigSize) {
+                header.putLong(item.size);
+                header.putLong(item.size);
+            }
+            if (bigOffset) {
+                header.putLong(offset);
+            }
+        }
+        return header.array();
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Fecha y hora MS-DOS (hora local, resolución de 2 s) en el orden de la cabecera: hora y luego fecha
+    private static int dosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(java.time.Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            time = LocalDateTime.of(1980, 1, 1, 0, 0);
+        }
+        int dosTime = (time.getHour() << 11) | (time.getMinute() << 5) | (time.getSecond() >> 1);
+        int dosDate = ((time.getYear() - 1980) << 9) | (time.getMonthValue() << 5) | time.getDayOfMonth();
+        return (dosDate << 16) | dosTime;
+    }
+
+    // El directorio central incluye nombres, tamaños, fechas y CRC: identifica el contenido
+    private static String contentEtag(byte[] centralDirectory) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(centralDirectory);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
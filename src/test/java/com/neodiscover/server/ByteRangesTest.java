@@ -0,0 +1,103 @@
+package com.neodiscover.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ByteRanges.parse: null para ignorar la cabecera (200 completo), lista vacía para 416.
+ */
+class ByteRangesTest {
+    private static final long SIZE = 1000;
+
+    @Test
+    void singleClosedRange() {
+        assertRanges(ByteRanges.parse("bytes=0-99", SIZE), 0, 99);
+        // El final se recorta al tamaño del archivo
+        assertRanges(ByteRanges.parse("bytes=900-5000", SIZE), 900, 999);
+    }
+
+    @Test
+    void suffixRange() {
+        assertRanges(ByteRanges.parse("bytes=-500", SIZE), 500, 999);
+        // Un sufijo mayor que el archivo es el archivo entero
+        assertRanges(ByteRanges.parse("bytes=-5000", SIZE), 0, 999);
+    }
+
+    @Test
+    void openEndedRange() {
+        assertRanges(ByteRanges.parse("bytes=500-", SIZE), 500, 999);
+    }
+
+    @Test
+    void overlappingAndAdjacentRangesCoalesce() {
+        assertRanges(ByteRanges.parse("bytes=0-99,50-149", SIZE), 0, 149);
+        assertRanges(ByteRanges.parse("bytes=100-199,0-99", SIZE), 0, 199);
+        assertRanges(ByteRanges.parse("bytes=0-9,-100,500-599", SIZE), 0, 9, 500, 599, 900, 999);
+        assertRanges(ByteRanges.parse("bytes=0-9, 20-29", SIZE), 0, 9, 20, 29);
+    }
+
+    @Test
+    void startPastEndIsNotSatisfiable() {
+        assertTrue(ByteRanges.parse("bytes=1000-", SIZE).isEmpty());
+        assertTrue(ByteRanges.parse("bytes=5000-6000", SIZE).isEmpty());
+        assertTrue(ByteRanges.parse("bytes=-0", SIZE).isEmpty());
+        assertTrue(ByteRanges.parse("bytes=0-10", 0).isEmpty());
+        // Uno satisfacible basta para responder 206 con ese rango
+        assertRanges(ByteRanges.parse("bytes=5000-6000,0-0", SIZE), 0, 0);
+    }
+
+    @Test
+    void invalidHeadersAreIgnored() {
+        assertNull(ByteRanges.parse(null, SIZE));
+        assertNull(ByteRanges.parse("items=0-10", SIZE));
+        assertNull(ByteRanges.parse("bytes=abc", SIZE));
+        assertNull(ByteRanges.parse("bytes=10", SIZE));
+        assertNull(ByteRanges.parse("bytes=-", SIZE));
+        assertNull(ByteRanges.parse("bytes=20-10", SIZE));
+        assertNull(ByteRanges.parse("bytes=a-b", SIZE));
+        assertNull(ByteRanges.parse("bytes=0-10,x", SIZE));
+    }
+
+    @Test
+    void tooManyRangesAreIgnored() {
+        StringBuilder header = new StringBuilder("bytes=");
+        for (int i = 0; i <= ByteRanges.MAX_RANGES; i++) {
+            header.append(i == 0 ? "" : ",").append(i * 10).append('-').append(i * 10 + 1);
+        }
+        assertNull(ByteRanges.parse(header.toString(), SIZE));
+        header.setLength(header.lastIndexOf(","));
+        assertEquals(ByteRanges.MAX_RANGES, ByteRanges.parse(header.toString(), SIZE).size());
+    }
+
+    @Test
+    void multipartLengthMatchesBytesWritten() throws IOException {
+        List<ByteRanges.Range> ranges = ByteRanges.parse("bytes=0-9,100-199,-50", SIZE);
+        String boundary = "3d6b6a416f9b5";
+        String contentType = "application/java-archive";
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteRanges.Range range : ranges) {
+            out.write(ByteRanges.partHeader(boundary, contentType, range, SIZE));
+            out.write(new byte[(int) range.length()]);
+        }
+        out.write(ByteRanges.closingDelimiter(boundary));
+
+        assertEquals(out.size(), ByteRanges.multipartLength(ranges, boundary, contentType, SIZE));
+    }
+
+    // Pares (inicio, fin) esperados, en orden
+    private static void assertRanges(List<ByteRanges.Range> ranges, long... bounds) {
+        assertEquals(bounds.length / 2, ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            assertEquals(bounds[2 * i], ranges.get(i).start);
+            assertEquals(bounds[2 * i + 1], ranges.get(i).end);
+        }
+    }
+}
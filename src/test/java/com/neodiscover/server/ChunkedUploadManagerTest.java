@@ -0,0 +1,165 @@
+package com.neodiscover.server;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Escrituras de trozos frente al commit: ningún trozo puede acabar en el archivo ya publicado.
+ */
+class ChunkedUploadManagerTest {
+    private static final int CHUNK = 1024;
+
+    private Path serverDir;
+    private String originalUserDir;
+    private FileManager fileManager;
+    private ChunkedUploadManager uploads;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        serverDir = Files.createTempDirectory("neodiscover-chunked-test");
+        originalUserDir = System.getProperty("user.dir");
+        System.setProperty("user.dir", serverDir.toString());
+        fileManager = new FileManager(0);
+        uploads = new ChunkedUploadManager(fileManager, 1024L * 1024);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        fileManager.getIndex().stop();
+        System.setProperty("user.dir", originalUserDir);
+        try (Stream<Path> paths = Files.walk(serverDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void commitWaitsForChunkInProgress() throws Exception {
+        String id = completeUpload((byte) 1);
+        // Reenvío del trozo 0 que se queda a medias hasta que el test lo suelte
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InputStream slowChunk = new InputStream() {
+            private int sent;
+
+            @Override
+            public int read() throws IOException {
+                if (sent == CHUNK / 2) {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                if (sent == CHUNK) {
+                    return -1;
+                }
+                sent++;
+                return 2;
+            }
+        };
+        CompletableFuture<JsonObject> retry = CompletableFuture.supplyAsync(() -> call(() -> uploads.writeChunk(id, 0, CHUNK, slowChunk)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<JsonObject> commit = CompletableFuture.supplyAsync(() -> call(() -> uploads.commit(id)));
+        Thread.sleep(200);
+        assertFalse(commit.isDone(), "el commit no debe hashear mientras se escribe un trozo");
+
+        release.countDown();
+        retry.get(5, TimeUnit.SECONDS);
+        commit.get(5, TimeUnit.SECONDS);
+
+        // Lo publicado es exactamente lo que quedó al terminar el reenvío
+        byte[] published = Files.readAllBytes(serverDir.resolve("downloads/mods/test.jar"));
+        byte[] expected = new byte[3 * CHUNK];
+        Arrays.fill(expected, (byte) 1);
+        Arrays.fill(expected, 0, CHUNK, (byte) 2);
+        assertArrayEquals(expected, published);
+    }
+
+    @Test
+    void chunkAfterCommitIsRejectedWithoutTouchingPublishedFile() throws Exception {
+        String id = completeUpload((byte) 1);
+        uploads.commit(id);
+        byte[] before = Files.readAllBytes(serverDir.resolve("downloads/mods/test.jar"));
+
+        ChunkedUploadManager.UploadException error = assertThrows(ChunkedUploadManager.UploadException.class,
+            () -> uploads.writeChunk(id, 0, CHUNK, new ByteArrayInputStream(filled((byte) 9))));
+
+        assertEquals(404, error.statusCode);
+        assertArrayEquals(before, Files.readAllBytes(serverDir.resolve("downloads/mods/test.jar")));
+    }
+
+    @Test
+    void declaredHashIsVerifiedOnCommit() throws Exception {
+        byte[] content = new byte[3 * CHUNK];
+        Arrays.fill(content, (byte) 1);
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        String id = createSession(sha256.toUpperCase());
+        for (int i = 0; i < 3; i++) {
+            uploads.writeChunk(id, (long) i * CHUNK, CHUNK, new ByteArrayInputStream(filled((byte) 1)));
+        }
+
+        assertEquals("ok", uploads.commit(id).get("status").getAsString());
+    }
+
+    private String completeUpload(byte value) throws Exception {
+        String id = createSession(null);
+        for (int i = 0; i < 3; i++) {
+            uploads.writeChunk(id, (long) i * CHUNK, CHUNK, new ByteArrayInputStream(filled(value)));
+        }
+        return id;
+    }
+
+    private String createSession(String sha256) throws Exception {
+        JsonObject request = new JsonObject();
+        request.addProperty("type", "mods");
+        request.addProperty("name", "test.jar");
+        request.addProperty("size", 3 * CHUNK);
+        request.addProperty("chunk_size", CHUNK);
+        if (sha256 != null) {
+            request.addProperty("sha256", sha256);
+        }
+        return uploads.createSession(request).get("id").getAsString();
+    }
+
+    private static byte[] filled(byte value) {
+        byte[] data = new byte[CHUNK];
+        Arrays.fill(data, value);
+        return data;
+    }
+
+    private interface UploadCall {
+        JsonObject run() throws Exception;
+    }
+
+    private static JsonObject call(UploadCall call) {
+        try {
+            return call.run();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.neodiscover.server;
+
+import com.google.gson.JsonObject;
+import com.neodiscover.config.ConfigManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Respuestas de error a HEAD: mismas cabeceras que el GET y sin cuerpo, sin que HttpServer
+ * se queje de un Content-Length en HEAD ni falle al escribir.
+ */
+class HeadResponseTest {
+    private Path serverDir;
+    private String originalUserDir;
+    private FileManager fileManager;
+    private ProfilesHttpServer httpServer;
+    private HttpClient client;
+    private int port;
+    private final List<String> serverWarnings = new CopyOnWriteArrayList<>();
+    private final Handler warningCollector = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            if (record.getLevel().intValue() >= Level.WARNING.intValue()) {
+                serverWarnings.add(record.getMessage());
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @BeforeEach
+    void startServer() throws Exception {
+        serverDir = Files.createTempDirectory("neodiscover-head-test");
+        originalUserDir = System.getProperty("user.dir");
+        System.setProperty("user.dir", serverDir.toString());
+
+        JsonObject http = new JsonObject();
+        http.addProperty("access_log", false);
+        // /metrics con ráfaga de 1 para provocar el 429 en la segunda petición
+        http.addProperty("metrics_requests_per_second", 1);
+        http.addProperty("metrics_burst", 1);
+        JsonObject config = new JsonObject();
+        config.addProperty("api_key", "0123456789abcdef0123456789abcdef");
+        config.addProperty("server_ip", "127.0.0.1");
+        config.add("http", http);
+        Files.writeString(serverDir.resolve("neodiscover_config.txt"), config.toString());
+        Path mods = Files.createDirectories(serverDir.resolve("downloads/mods"));
+        Files.write(mods.resolve("small.jar"), new byte[100]);
+
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        ConfigManager configManager = new ConfigManager();
+        configManager.loadConfig();
+        fileManager = new FileManager(port);
+        ServerInfoCollector collector = new ServerInfoCollector(configManager);
+        collector.setFileManager(fileManager);
+        httpServer = new ProfilesHttpServer(port, new ProfileCache(collector), configManager, fileManager);
+        httpServer.start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        Logger.getLogger("com.sun.net.httpserver").addHandler(warningCollector);
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        Logger.getLogger("com.sun.net.httpserver").removeHandler(warningCollector);
+        httpServer.stop();
+        fileManager.getIndex().stop();
+        System.setProperty("user.dir", originalUserDir);
+        try (Stream<Path> paths = Files.walk(serverDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void headNotFoundHasGetHeadersAndNoBody() throws Exception {
+        HttpResponse<byte[]> get = send("GET", "/profiles/nope.json", null);
+        HttpResponse<byte[]> head = send("HEAD", "/profiles/nope.json", null);
+
+        assertEquals(404, get.statusCode());
+        assertEquals(404, head.statusCode());
+        assertEquals(String.valueOf(get.body().length), head.headers().firstValue("Content-Length").orElse(null));
+        assertEquals(0, head.body().length);
+        assertEquals(List.of(), serverWarnings);
+    }
+
+    @Test
+    void headRangeNotSatisfiableHasContentRange() throws Exception {
+        HttpResponse<byte[]> head = send("HEAD", "/downloads/mods/small.jar", "bytes=500-");
+
+        assertEquals(416, head.statusCode());
+        assertEquals("bytes */100", head.headers().firstValue("Content-Range").orElse(null));
+        assertEquals(0, head.body().length);
+        assertEquals(List.of(), serverWarnings);
+    }
+
+    @Test
+    void connectionStaysUsableAfterHeadError() throws Exception {
+        send("HEAD", "/downloads/mods/nope.jar", null);
+        HttpResponse<byte[]> get = send("GET", "/downloads/mods/small.jar", null);
+
+        assertEquals(200, get.statusCode());
+        assertEquals(100, get.body().length);
+        assertEquals(List.of(), serverWarnings);
+    }
+
+    @Test
+    void headRateLimitedHasRetryAfterAndNoBody() throws Exception {
+        send("HEAD", "/metrics", null);
+        HttpResponse<byte[]> limited = send("HEAD", "/metrics", null);
+
+        assertEquals(429, limited.statusCode());
+        assertEquals(String.valueOf("Too Many Requests".length()), limited.headers().firstValue("Content-Length").orElse(null));
+        assertTrue(limited.headers().firstValue("Retry-After").isPresent());
+        assertEquals(0, limited.body().length);
+        assertEquals(List.of(), serverWarnings);
+    }
+
+    private HttpResponse<byte[]> send(String method, String path, String range) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path))
+            .method(method, HttpRequest.BodyPublishers.noBody());
+        if (range != null) {
+            request.header("Range", range);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
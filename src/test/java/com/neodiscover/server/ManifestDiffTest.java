@@ -0,0 +1,163 @@
+package com.neodiscover.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * ManifestDiff.diff entre un perfil del servidor y el manifiesto local del launcher.
+ */
+class ManifestDiffTest {
+    private static final String SHA_A = "a".repeat(64);
+    private static final String SHA_B = "0123456789abcdef".repeat(4);
+    private static final String SHA_C = "c".repeat(64);
+
+    @Test
+    void comparesByHashIgnoringCase() {
+        JsonObject profile = profile("mods", entry("same.jar", SHA_A), entry("changed.jar", SHA_B));
+        JsonObject manifest = manifest("mods", entry("same.jar", SHA_A.toUpperCase()), entry("changed.jar", SHA_C));
+
+        JsonObject result = ManifestDiff.diff(profile, manifest);
+
+        assertEquals(1, result.get("unchanged").getAsInt());
+        JsonArray replace = result.getAsJsonArray("replace");
+        assertEquals(1, replace.size());
+        JsonObject changed = replace.get(0).getAsJsonObject();
+        assertEquals("mods", changed.get("type").getAsString());
+        assertEquals("changed.jar", changed.get("name").getAsString());
+        assertEquals("/downloads/mods/changed.jar", changed.get("url").getAsString());
+        assertFalse(result.has("pending_hashes"));
+    }
+
+    @Test
+    void comparesBySha1WhenClientHasNoSha256() {
+        JsonObject server = entry("old.jar", SHA_A);
+        server.addProperty("sha1", "ABCDEF0123456789ABCDEF0123456789ABCDEF01");
+        JsonObject client = new JsonObject();
+        client.addProperty("name", "old.jar");
+        client.addProperty("sha1", "abcdef0123456789abcdef0123456789abcdef01");
+
+        JsonObject result = ManifestDiff.diff(profile("mods", server), manifest("mods", client));
+
+        assertEquals(1, result.get("unchanged").getAsInt());
+        assertEquals(0, result.getAsJsonArray("replace").size());
+    }
+
+    @Test
+    void clientEntryWithoutHashIsReplaced() {
+        JsonObject client = new JsonObject();
+        client.addProperty("name", "nohash.jar");
+
+        JsonObject result = ManifestDiff.diff(profile("mods", entry("nohash.jar", SHA_A)), manifest("mods", client));
+
+        assertEquals(0, result.get("unchanged").getAsInt());
+        assertEquals(1, result.getAsJsonArray("replace").size());
+        assertEquals("nohash.jar", result.getAsJsonArray("replace").get(0).getAsJsonObject().get("name").getAsString());
+    }
+
+    @Test
+    void detectsRenameWithUppercaseClientHash() {
+        JsonObject profile = profile("mods", entry("mod-1.1.jar", SHA_B), entry("new.jar", SHA_C));
+        JsonObject manifest = manifest("mods", entry("mod-1.0.jar", SHA_B.toUpperCase()), entry("gone.jar", SHA_A));
+
+        JsonObject result = ManifestDiff.diff(profile, manifest);
+
+        JsonArray rename = result.getAsJsonArray("rename");
+        assertEquals(1, rename.size());
+        assertEquals("mods", rename.get(0).getAsJsonObject().get("type").getAsString());
+        assertEquals("mod-1.0.jar", rename.get(0).getAsJsonObject().get("from").getAsString());
+        assertEquals("mod-1.1.jar", rename.get(0).getAsJsonObject().get("to").getAsString());
+        // El renombrado no se descarga ni se borra
+        JsonArray add = result.getAsJsonArray("add");
+        assertEquals(1, add.size());
+        assertEquals("new.jar", add.get(0).getAsJsonObject().get("name").getAsString());
+        JsonArray delete = result.getAsJsonArray("delete");
+        assertEquals(1, delete.size());
+        assertEquals("gone.jar", delete.get(0).getAsJsonObject().get("name").getAsString());
+    }
+
+    @Test
+    void detectsRenameWithUppercaseServerHash() {
+        JsonObject result = ManifestDiff.diff(
+            profile("mods", entry("mod-1.1.jar", SHA_B.toUpperCase())),
+            manifest("mods", entry("mod-1.0.jar", SHA_B)));
+
+        assertEquals(1, result.getAsJsonArray("rename").size());
+        assertEquals(0, result.getAsJsonArray("add").size());
+        assertEquals(0, result.getAsJsonArray("delete").size());
+    }
+
+    @Test
+    void serverEntryStillHashingCountsAsPending() {
+        JsonObject hashing = new JsonObject();
+        hashing.addProperty("name", "big.jar");
+        hashing.addProperty("url", "/downloads/mods/big.jar");
+
+        JsonObject result = ManifestDiff.diff(
+            profile("mods", hashing, entry("other.jar", SHA_A)),
+            manifest("mods", entry("big.jar", SHA_C), entry("other.jar", SHA_A)));
+
+        assertEquals(1, result.get("pending_hashes").getAsInt());
+        assertEquals(2, result.get("unchanged").getAsInt());
+        assertEquals(0, result.getAsJsonArray("replace").size());
+    }
+
+    @Test
+    void categoryMissingFromManifestIsLeftAlone() {
+        JsonObject profile = profile("mods", entry("mod.jar", SHA_A));
+        profile.add("shaders", array(entry("shader.zip", SHA_B)));
+        profile.add("resourcepacks", array(entry("pack.zip", SHA_C)));
+        JsonObject manifest = manifest("mods", entry("mod.jar", SHA_A));
+        // Una categoría que no es una lista tampoco se compara
+        manifest.addProperty("resourcepacks", "todo");
+
+        JsonObject result = ManifestDiff.diff(profile, manifest);
+
+        assertEquals(1, result.get("unchanged").getAsInt());
+        assertEquals(0, result.getAsJsonArray("add").size());
+        assertEquals(0, result.getAsJsonArray("delete").size());
+    }
+
+    @Test
+    void emptyCategoryInManifestDownloadsEverything() {
+        JsonObject result = ManifestDiff.diff(
+            profile("shaders", entry("shader.zip", SHA_B)), manifest("shaders"));
+
+        JsonArray add = result.getAsJsonArray("add");
+        assertEquals(1, add.size());
+        assertEquals("shaders", add.get(0).getAsJsonObject().get("type").getAsString());
+        assertEquals(SHA_B, add.get(0).getAsJsonObject().get("sha256").getAsString());
+    }
+
+    private static JsonObject entry(String name, String sha256) {
+        JsonObject entry = new JsonObject();
+        entry.addProperty("name", name);
+        entry.addProperty("url", "/downloads/mods/" + name);
+        entry.addProperty("sha256", sha256);
+        return entry;
+    }
+
+    private static JsonObject profile(String category, JsonObject... entries) {
+        JsonObject profile = new JsonObject();
+        profile.addProperty("id", "test");
+        profile.add(category, array(entries));
+        return profile;
+    }
+
+    private static JsonObject manifest(String category, JsonObject... entries) {
+        JsonObject manifest = new JsonObject();
+        manifest.add(category, array(entries));
+        return manifest;
+    }
+
+    private static JsonArray array(JsonObject... entries) {
+        JsonArray array = new JsonArray();
+        for (JsonObject entry : entries) {
+            array.add(entry);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,167 @@
+package com.neodiscover.server;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * ModsToml.parse con descriptores como los que generan el MDK de NeoForge y los mods publicados.
+ */
+class ModsTomlTest {
+    // neoforge.mods.toml del MDK de NeoForge 1.21.1 (con las variables ya expandidas)
+    private static final String NEOFORGE_MDK = """
+        # This is an example neoforge.mods.toml file.
+        modLoader="javafml" #mandatory
+        loaderVersion="[4,)" #mandatory
+        license="All Rights Reserved"
+        # issueTrackerURL="https://change.me.to.your.issue.tracker.example.invalid/" #optional
+
+        [[mods]] #mandatory
+        modId="examplemod" #mandatory
+        version="${file.jarVersion}" #mandatory
+        displayName="Example Mod" #mandatory
+        # logoFile="examplemod.png" #optional
+        authors="YourNameHere, OtherNameHere" #optional
+        description='''This is a long form description of the mod.
+        Here's another line: "quoted" and # not a comment.
+        '''
+
+        [[mixins]]
+        config="examplemod.mixins.json"
+
+        [[accessTransformers]]
+        file="META-INF/accesstransformer.cfg"
+
+        [[dependencies.examplemod]] #optional
+            modId="neoforge" #mandatory
+            type="required" #mandatory
+            versionRange="[21.1.0,)" #mandatory
+            ordering="NONE"
+            side="BOTH"
+
+        [[dependencies.examplemod]]
+            modId="minecraft"
+            type="required"
+            versionRange="[1.21.1,1.22)"
+            ordering="NONE"
+            side="BOTH"
+
+        [[dependencies.examplemod]]
+            modId="jei"
+            type="optional"
+            reason="Recipe viewer integration"
+            versionRange="[19,)"
+            ordering="AFTER"
+            side="CLIENT"
+        """;
+
+    // mods.toml de Forge/NeoForge antiguo: dependencias con mandatory en lugar de type
+    private static final String LEGACY_FORGE = """
+        modLoader = "javafml"
+        loaderVersion = "[47,)"
+        license = 'MIT'
+
+        [[mods]]
+        modId = "legacymod"
+        version = "2.3.1"
+        displayName = "Legacy \\"Quoted\\" Mod"
+        displayTest = "IGNORE_SERVER_VERSION"
+        credits = ["Alice", 'Bob']
+        modproperties = { examplemod = { key = "value" } }
+
+        [[dependencies.legacymod]]
+            modId = "forge"
+            mandatory = true
+            versionRange = "[47,)"
+            ordering = "NONE"
+            side = "BOTH"
+
+        [[dependencies.legacymod]]
+            modId = "curios"
+            mandatory = false
+            versionRange = "[5,)"
+            ordering = "AFTER"
+            side = "SERVER"
+        """;
+
+    @Test
+    void readsNeoForgeDescriptor() {
+        JsonObject info = ModsToml.parse(NEOFORGE_MDK, "1.0.0");
+
+        assertEquals("examplemod", info.get("mod_id").getAsString());
+        assertEquals("1.0.0", info.get("version").getAsString());
+        assertEquals("Example Mod", info.get("display_name").getAsString());
+        assertEquals("both", info.get("side").getAsString());
+
+        JsonArray dependencies = info.getAsJsonArray("dependencies");
+        assertEquals(3, dependencies.size());
+        JsonObject neoforge = dependencies.get(0).getAsJsonObject();
+        assertEquals("neoforge", neoforge.get("mod_id").getAsString());
+        assertEquals("required", neoforge.get("type").getAsString());
+        assertEquals("[21.1.0,)", neoforge.get("version_range").getAsString());
+        assertEquals("both", neoforge.get("side").getAsString());
+        JsonObject jei = dependencies.get(2).getAsJsonObject();
+        assertEquals("jei", jei.get("mod_id").getAsString());
+        assertEquals("optional", jei.get("type").getAsString());
+        assertEquals("client", jei.get("side").getAsString());
+    }
+
+    @Test
+    void keepsJarVersionPlaceholderWithoutManifest() {
+        JsonObject info = ModsToml.parse(NEOFORGE_MDK, null);
+
+        assertEquals("${file.jarVersion}", info.get("version").getAsString());
+    }
+
+    @Test
+    void readsLegacyDescriptor() {
+        JsonObject info = ModsToml.parse(LEGACY_FORGE, null);
+
+        assertEquals("legacymod", info.get("mod_id").getAsString());
+        assertEquals("2.3.1", info.get("version").getAsString());
+        assertEquals("Legacy \"Quoted\" Mod", info.get("display_name").getAsString());
+
+        JsonArray dependencies = info.getAsJsonArray("dependencies");
+        assertEquals(2, dependencies.size());
+        assertEquals("required", dependencies.get(0).getAsJsonObject().get("type").getAsString());
+        JsonObject curios = dependencies.get(1).getAsJsonObject();
+        assertEquals("curios", curios.get("mod_id").getAsString());
+        assertEquals("optional", curios.get("type").getAsString());
+        assertEquals("server", curios.get("side").getAsString());
+    }
+
+    @Test
+    void derivesSideFromDisplayTest() {
+        assertEquals("server", side("IGNORE_SERVER_VERSION"));
+        assertEquals("client", side("IGNORE_ALL_VERSION"));
+        assertEquals("both", side("MATCH_VERSION"));
+        assertEquals("both", side("NONE"));
+    }
+
+    @Test
+    void usesModIdWhenDisplayNameIsMissing() {
+        JsonObject info = ModsToml.parse("""
+            [[mods]]
+            modId='bare'
+            """, null);
+
+        assertEquals("bare", info.get("display_name").getAsString());
+        assertFalse(info.has("version"));
+        assertEquals(0, info.getAsJsonArray("dependencies").size());
+    }
+
+    @Test
+    void returnsNullWithoutMods() {
+        assertNull(ModsToml.parse("modLoader=\"javafml\"\nloaderVersion=\"[4,)\"\n", null));
+        assertNull(ModsToml.parse("[[mods]]\ndisplayName=\"Sin modId\"\n", null));
+    }
+
+    private static String side(String displayTest) {
+        return ModsToml.parse("[[mods]]\nmodId=\"m\"\ndisplayTest=\"" + displayTest + "\"\n", null)
+            .get("side").getAsString();
+    }
+}
@@ -0,0 +1,195 @@
+package com.neodiscover.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * MultipartStreamParser con el cuerpo entregado en lecturas de 1 byte y de tamaño aleatorio, para
+ * que el delimitador quede partido entre lecturas en todas las posiciones posibles.
+ */
+class MultipartStreamParserTest {
+    private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+
+    // Datos de archivo con casi-delimitadores: solo el delimitador completo con CRLF delante cuenta
+    private static final byte[] TRICKY_FILE = concat(
+        "PK\u0003\u0004".getBytes(StandardCharsets.ISO_8859_1),
+        ("\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1) + "X").getBytes(StandardCharsets.ISO_8859_1),
+        ("--" + BOUNDARY + "\r\n").getBytes(StandardCharsets.ISO_8859_1),
+        "\r\n-\r\n--\r\n".getBytes(StandardCharsets.ISO_8859_1),
+        random(5000, 7),
+        ("\r\n--" + BOUNDARY.substring(0, 10)).getBytes(StandardCharsets.ISO_8859_1));
+
+    @Test
+    void parsesFieldsAndFilesWithOneByteReads() throws IOException {
+        List<Parsed> parts = parseAll(new ChoppyInputStream(body(), new Random(1), 1), 0);
+
+        assertBodyParts(parts);
+    }
+
+    @Test
+    void parsesWithRandomReadAndBufferSizes() throws IOException {
+        for (int seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            int bufferSize = 1 + random.nextInt(4096);
+            List<Parsed> parts = parseAll(new ChoppyInputStream(body(), random, 1 + random.nextInt(700)), bufferSize);
+
+            assertBodyParts(parts);
+        }
+    }
+
+    @Test
+    void unreadPartIsSkipped() throws IOException {
+        MultipartStreamParser parser = new MultipartStreamParser(new ChoppyInputStream(body(), new Random(3), 17), BOUNDARY, 0);
+
+        assertEquals("profile_json", parser.nextPart().fieldName);
+        assertEquals("mods_0", parser.nextPart().fieldName);
+        MultipartStreamParser.Part last = parser.nextPart();
+        assertEquals("api_key", last.fieldName);
+        assertEquals("k", MultipartStreamParser.readText(last.body, 100));
+        assertNull(parser.nextPart());
+    }
+
+    @Test
+    void missingClosingBoundaryFails() throws IOException {
+        byte[] full = body();
+        byte[] truncated = new byte[full.length - 60];
+        System.arraycopy(full, 0, truncated, 0, truncated.length);
+
+        assertThrows(IOException.class, () -> parseAll(new ChoppyInputStream(truncated, new Random(5), 1), 0));
+    }
+
+    @Test
+    void bodyOverLimitIsRejected() {
+        // El límite cae en mitad del archivo; el epílogo no cuenta porque no se llega a leer
+        byte[] full = body();
+        InputStream bounded = new MultipartStreamParser.BoundedInputStream(
+            new ChoppyInputStream(full, new Random(9), 64), full.length / 2);
+
+        assertThrows(MultipartStreamParser.PayloadTooLargeException.class, () -> parseAll(bounded, 0));
+    }
+
+    @Test
+    void bodyAtLimitIsAccepted() throws IOException {
+        byte[] full = body();
+        InputStream bounded = new MultipartStreamParser.BoundedInputStream(new ByteArrayInputStream(full), full.length);
+
+        assertBodyParts(parseAll(bounded, 0));
+    }
+
+    @Test
+    void readTextEnforcesLimit() throws IOException {
+        byte[] text = "año 2024".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals("año 2024", MultipartStreamParser.readText(new ByteArrayInputStream(text), text.length));
+        assertThrows(MultipartStreamParser.PayloadTooLargeException.class,
+            () -> MultipartStreamParser.readText(new ByteArrayInputStream(text), text.length - 1));
+    }
+
+    @Test
+    void bodyWithoutDelimiterHasNoParts() throws IOException {
+        byte[] body = "no es multipart".getBytes(StandardCharsets.ISO_8859_1);
+
+        assertEquals(0, parseAll(new ByteArrayInputStream(body), 0).size());
+    }
+
+    private static void assertBodyParts(List<Parsed> parts) {
+        assertEquals(3, parts.size());
+        assertEquals("profile_json", parts.get(0).fieldName);
+        assertNull(parts.get(0).fileName);
+        assertEquals("{\"name\":\"Servidor ñ\"}", new String(parts.get(0).data, StandardCharsets.UTF_8));
+        assertEquals("mods_0", parts.get(1).fieldName);
+        assertEquals("tricky.jar", parts.get(1).fileName);
+        assertEquals("application/java-archive", parts.get(1).contentType);
+        assertArrayEquals(TRICKY_FILE, parts.get(1).data);
+        assertEquals("api_key", parts.get(2).fieldName);
+        assertEquals("k", new String(parts.get(2).data, StandardCharsets.UTF_8));
+    }
+
+    // Preámbulo, campo de texto, archivo con casi-delimitadores, campo final y epílogo
+    private static byte[] body() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes("preámbulo ignorado\r\n".getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(("--" + BOUNDARY + "\r\n"
+            + "Content-Disposition: form-data; name=\"profile_json\"\r\n\r\n"
+            + "{\"name\":\"Servidor ñ\"}").getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(("\r\n--" + BOUNDARY + "\r\n"
+            + "Content-Disposition: form-data; name=\"mods_0\"; filename=\"tricky.jar\"\r\n"
+            + "Content-Type: application/java-archive\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(TRICKY_FILE);
+        out.writeBytes(("\r\n--" + BOUNDARY + "\r\n"
+            + "Content-Disposition: form-data; name=\"api_key\"\r\n\r\n"
+            + "k").getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(("\r\n--" + BOUNDARY + "--\r\nepílogo ignorado").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    private static List<Parsed> parseAll(InputStream in, int bufferSize) throws IOException {
+        MultipartStreamParser parser = new MultipartStreamParser(in, BOUNDARY, bufferSize);
+        List<Parsed> parts = new ArrayList<>();
+        MultipartStreamParser.Part part;
+        while ((part = parser.nextPart()) != null) {
+            parts.add(new Parsed(part.fieldName, part.fileName, part.contentType, part.body.readAllBytes()));
+        }
+        return parts;
+    }
+
+    private record Parsed(String fieldName, String fileName, String contentType, byte[] data) {
+    }
+
+    // Entrega el contenido en lecturas de entre 1 y maxRead bytes
+    private static final class ChoppyInputStream extends InputStream {
+        private final byte[] data;
+        private final Random random;
+        private final int maxRead;
+        private int pos;
+
+        ChoppyInputStream(byte[] data, Random random, int maxRead) {
+            this.data = data;
+            this.random = random;
+            this.maxRead = maxRead;
+        }
+
+        @Override
+        public int read() {
+            return pos < data.length ? data[pos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (pos >= data.length) {
+                return -1;
+            }
+            int count = Math.min(Math.min(len, 1 + random.nextInt(maxRead)), data.length - pos);
+            System.arraycopy(data, pos, b, off, count);
+            pos += count;
+            return count;
+        }
+    }
+
+    private static byte[] random(int length, long seed) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            out.writeBytes(array);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,176 @@
+package com.neodiscover.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PublicIpResolver contra proveedores locales: uno lento, uno que devuelve basura y uno válido.
+ */
+class PublicIpResolverTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private PublicIpResolver resolver;
+    // Retiene las respuestas lentas hasta el final del test
+    private final CountDownLatch releaseSlow = new CountDownLatch(1);
+    private final AtomicInteger validHits = new AtomicInteger();
+    private final AtomicInteger flakyHits = new AtomicInteger();
+
+    @BeforeEach
+    void startProviders() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/slow", exchange -> {
+            awaitRelease();
+            respond(exchange, 200, "192.0.2.1");
+        });
+        server.createContext("/garbage", exchange -> respond(exchange, 200, "<html>no es una IP</html>"));
+        server.createContext("/error", exchange -> respond(exchange, 500, "192.0.2.2"));
+        server.createContext("/valid", exchange -> {
+            validHits.incrementAndGet();
+            respond(exchange, 200, "203.0.113.7\n");
+        });
+        // Responde una vez y después se queda colgado como un proveedor caído
+        server.createContext("/flaky", exchange -> {
+            if (flakyHits.incrementAndGet() > 1) {
+                awaitRelease();
+            }
+            respond(exchange, 200, "198.51.100.4");
+        });
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @AfterEach
+    void stopProviders() {
+        releaseSlow.countDown();
+        if (resolver != null) {
+            resolver.stop();
+        }
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void firstValidIpv4Wins() throws Exception {
+        resolver = new PublicIpResolver(providers("/slow", "/garbage", "/error", "/valid"), Duration.ofMinutes(10), TIMEOUT);
+
+        long started = System.nanoTime();
+        String ip = resolver.refresh().get(5, TimeUnit.SECONDS);
+
+        assertEquals("203.0.113.7", ip);
+        // No espera al proveedor lento, que sigue retenido
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(3));
+        assertEquals("203.0.113.7", resolver.getPublicIp());
+    }
+
+    @Test
+    void noValidProviderKeepsNull() throws Exception {
+        resolver = new PublicIpResolver(providers("/garbage", "/error"), Duration.ofMinutes(10), TIMEOUT);
+
+        assertNull(resolver.refresh().get(5, TimeUnit.SECONDS));
+        assertNull(resolver.getPublicIp());
+    }
+
+    @Test
+    void cachedIpIsServedWithinTtl() throws Exception {
+        resolver = new PublicIpResolver(providers("/valid"), Duration.ofMinutes(10), TIMEOUT);
+        resolver.start();
+        String ip = awaitIp();
+        int hits = validHits.get();
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ip, resolver.getPublicIp());
+        }
+        Thread.sleep(200);
+
+        assertEquals(hits, validHits.get(), "dentro del TTL no se vuelve a consultar a los proveedores");
+    }
+
+    @Test
+    void getPublicIpNeverBlocksBeforeFirstLookup() {
+        resolver = new PublicIpResolver(providers("/slow"), Duration.ofMinutes(10), TIMEOUT);
+        resolver.start();
+
+        long started = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            assertNull(resolver.getPublicIp());
+        }
+
+        assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    void expiredIpIsServedWithoutWaitingForRefresh() throws Exception {
+        resolver = new PublicIpResolver(providers("/flaky"), Duration.ofMillis(300), TIMEOUT);
+        resolver.start();
+        assertEquals("198.51.100.4", awaitIp());
+
+        // Caducado y con el proveedor colgado: sigue devolviendo la última IP al instante
+        Thread.sleep(1500);
+        long started = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            assertEquals("198.51.100.4", resolver.getPublicIp());
+        }
+
+        assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(flakyHits.get() > 1, "el refresco caducado debe haberse lanzado en segundo plano");
+    }
+
+    private String awaitIp() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            String ip = resolver.getPublicIp();
+            if (ip != null) {
+                return ip;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("no se resolvió la IP pública a tiempo");
+    }
+
+    private void awaitRelease() {
+        try {
+            releaseSlow.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<URI> providers(String... paths) {
+        int port = server.getAddress().getPort();
+        return Arrays.stream(paths)
+            .map(path -> URI.create("http://127.0.0.1:" + port + path))
+            .toList();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}